@@ -0,0 +1,153 @@
+package com.example.ToDoApp.build;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.google.javascript.jscomp.CommandLineRunner;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.jscomp.Result;
+import com.google.javascript.jscomp.SourceFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静的ファイル (static/ の .css と .js) をビルド時に最小化し、gzip・brotli で圧縮した版を隣に書き出す
+ *
+ * - JS: Closure Compiler (SIMPLE_OPTIMIZATIONS、構文の変換はしない)
+ * - CSS: コメントと不要な空白を取り除く
+ * - 圧縮版 (style.css.gz / style.css.br) は元より小さい場合だけ書き出す。配信時は EncodedResourceResolver が
+ *   Accept-Encoding に合わせて選ぶ
+ *
+ * ファイル名のハッシュは配信時に Spring の VersionResourceResolver が最小化後の内容から計算する (StaticResourceConfig)
+ * 実行: ビルドの process-classes フェーズで exec-maven-plugin がソースファイルのまま起動する (引数: 元のディレクトリ 出力先ディレクトリ)
+ * コンパイル対象のソースには含めず、依存 (Closure Compiler・Brotli4j) はプラグインの依存として渡される
+ */
+public final class StaticAssetPipeline {
+
+    private StaticAssetPipeline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path sourceDir = Path.of(args[0]);
+        Path targetDir = Path.of(args[1]);
+        Brotli4jLoader.ensureAvailability();
+
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            sources = files.filter(Files::isRegularFile)
+                .filter(path -> path.toString().endsWith(".css") || path.toString().endsWith(".js"))
+                .sorted()
+                .toList();
+        }
+
+        for (Path source : sources) {
+            Path target = targetDir.resolve(sourceDir.relativize(source).toString());
+            String original = Files.readString(source);
+            String minified = source.toString().endsWith(".js")
+                ? minifyJs(source.getFileName().toString(), original)
+                : minifyCss(original);
+            byte[] bytes = minified.getBytes(StandardCharsets.UTF_8);
+
+            Files.createDirectories(target.getParent());
+            Files.write(target, bytes);
+            int gzip = writeIfSmaller(target.resolveSibling(target.getFileName() + ".gz"), gzip(bytes), bytes.length);
+            int brotli = writeIfSmaller(target.resolveSibling(target.getFileName() + ".br"),
+                Encoder.compress(bytes, new Encoder.Parameters().setQuality(11)), bytes.length);
+
+            System.out.printf("[static-assets] %s: %dB -> 最小化 %dB, gzip %dB, brotli %dB%n",
+                sourceDir.relativize(source), original.getBytes(StandardCharsets.UTF_8).length, bytes.length, gzip, brotli);
+        }
+    }
+
+    static String minifyJs(String name, String source) throws IOException {
+        CompilerOptions options = new CompilerOptions();
+        CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(options);
+        options.setLanguageIn(LanguageMode.ECMASCRIPT_NEXT);
+        // ブラウザはES2020以降に対応している前提で、構文の変換とポリフィルの追加はしない
+        options.setLanguageOut(LanguageMode.NO_TRANSPILE);
+        options.setEmitUseStrict(false);
+
+        Compiler compiler = new Compiler(new PrintStream(OutputStream.nullOutputStream()));
+        Result result = compiler.compile(
+            CommandLineRunner.getBuiltinExterns(CompilerOptions.Environment.BROWSER),
+            List.of(SourceFile.fromCode(name, source)),
+            options);
+        if (!result.success) {
+            throw new IllegalStateException(name + " を最小化できません: " + result.errors);
+        }
+        return compiler.toSource();
+    }
+
+    /**
+     * コメントを除き、連続する空白を1つにまとめ、記号の前後の空白を取り除く
+     * (セレクタの子孫結合子になる ":" の前の空白と文字列の中身は残す)
+     */
+    static String minifyCss(String source) {
+        StringBuilder out = new StringBuilder(source.length());
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '*') {
+                int end = source.indexOf("*/", i + 2);
+                i = end < 0 ? source.length() : end + 2;
+            } else if (c == '"' || c == '\'') {
+                int end = i + 1;
+                while (end < source.length() && source.charAt(end) != c) {
+                    end += source.charAt(end) == '\\' ? 2 : 1;
+                }
+                end = Math.min(end + 1, source.length());
+                out.append(source, i, end);
+                i = end;
+            } else if (Character.isWhitespace(c)) {
+                while (i < source.length() && Character.isWhitespace(source.charAt(i))) {
+                    i++;
+                }
+                boolean afterSymbol = out.isEmpty() || "{};:,>".indexOf(out.charAt(out.length() - 1)) >= 0;
+                boolean beforeSymbol = i >= source.length() || "{};,>".indexOf(source.charAt(i)) >= 0;
+                if (!afterSymbol && !beforeSymbol) {
+                    out.append(' ');
+                }
+            } else if (c == '}' && !out.isEmpty() && out.charAt(out.length() - 1) == ';') {
+                out.setCharAt(out.length() - 1, '}');
+                i++;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static int writeIfSmaller(Path path, byte[] compressed, int originalLength) throws IOException {
+        if (compressed.length >= originalLength) {
+            Files.deleteIfExists(path);
+            return originalLength;
+        }
+        Files.write(path, compressed);
+        return compressed.length;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.ToDoApp.benchmark;
+
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.dto.TodoViewSerializer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Todo一覧レスポンスのシリアライズ
+ * GET /api/todos と同じ ObjectMapper 経由の書き出し (TodoViewSerializer) と、GET /api/todos/stream と同じ
+ * JsonGenerator への直接の書き出しを測る。比較用に、TodoViewSerializer の導入前と同じく1行ごとに
+ * HashMap と日時の文字列を作る書き出しも測る
+ * 1回あたりの割り当て量は -prof gc (benchmark プロファイルの既定) の gc.alloc.rate.norm で確認する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TodoSerializationBenchmark {
+
+    @Param({"20", "1000", "10000"})
+    private int rows;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<TodoView> views;
+
+    @Setup
+    public void setUp() {
+        views = new ArrayList<>(rows);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0, 0, 500_000_000);
+        for (int i = 0; i < rows; i++) {
+            views.add(new TodoView((long) i, "タスク " + i, i % 3 == 0, base.plusMinutes(i),
+                i % 2 == 0 ? base.plusMinutes(i + 1) : null,
+                i % 4 == 0 ? LocalDate.of(2025, 2, 1).plusDays(i % 30) : null));
+        }
+    }
+
+    /**
+     * 変更前: 1行ごとに HashMap に詰め替え、日時を toString した文字列で持つ
+     */
+    @Benchmark
+    public byte[] hashMapPerRow() throws Exception {
+        List<Map<String, Object>> todos = new ArrayList<>(views.size());
+        for (TodoView todo : views) {
+            Map<String, Object> todoMap = new HashMap<>();
+            todoMap.put("id", todo.id());
+            todoMap.put("text", todo.text());
+            todoMap.put("completed", todo.completed());
+            todoMap.put("createdAt", todo.createdAt().toString());
+            if (todo.updatedAt() != null) {
+                todoMap.put("updatedAt", todo.updatedAt().toString());
+            }
+            if (todo.dueDate() != null) {
+                todoMap.put("dueDate", todo.dueDate().toString());
+            }
+            todos.add(todoMap);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("todos", todos);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        objectMapper.writeValue(out, response);
+        return out.toByteArray();
+    }
+
+    /**
+     * 変更後: TodoView を TodoViewSerializer でそのまま書き出す
+     */
+    @Benchmark
+    public byte[] objectMapperResponse() throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("todos", views);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        objectMapper.writeValue(out, response);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] streamingGenerator() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeArrayFieldStart("todos");
+            for (TodoView todo : views) {
+                TodoViewSerializer.writeTodo(todo, generator);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+}
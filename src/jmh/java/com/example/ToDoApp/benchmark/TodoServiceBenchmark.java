@@ -0,0 +1,94 @@
+package com.example.ToDoApp.benchmark;
+
+import com.example.ToDoApp.dto.TodoUpdate;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.entity.Todo;
+import com.example.ToDoApp.entity.User;
+import com.example.ToDoApp.service.TodoService;
+import com.example.ToDoApp.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TodoService の作成・完了切り替え・一覧取得 (組み込みH2)
+ * 一覧取得は todos 件数を変えて測る。作成で件数が増えないよう、一覧用と作成用でユーザーを分ける
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TodoServiceBenchmark {
+
+    @Param({"10", "1000"})
+    private int todosPerUser;
+
+    private ConfigurableApplicationContext context;
+    private TodoService todoService;
+    private Long listUserId;
+    private Long writeUserId;
+    private List<Long> toggleIds;
+    private int toggleIndex;
+    private boolean completed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("todo-service-" + todosPerUser);
+        todoService = context.getBean(TodoService.class);
+        UserService userService = context.getBean(UserService.class);
+
+        User listUser = userService.registerUser("bench-list", "benchmark");
+        User writeUser = userService.registerUser("bench-write", "benchmark");
+        listUserId = listUser.getId();
+        writeUserId = writeUser.getId();
+
+        toggleIds = new ArrayList<>(todosPerUser);
+        for (int i = 0; i < todosPerUser; i++) {
+            Todo todo = todoService.createTodo("ベンチマーク " + i, listUserId);
+            toggleIds.add(todo.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Todo create() {
+        return todoService.createTodo("ベンチマーク作成", writeUserId);
+    }
+
+    @Benchmark
+    public Optional<TodoView> toggle() {
+        Long id = toggleIds.get(toggleIndex);
+        toggleIndex = (toggleIndex + 1) % toggleIds.size();
+        if (toggleIndex == 0) {
+            completed = !completed;
+        }
+        return todoService.updateOwnedTodo(id, listUserId, new TodoUpdate(null, false, null, !completed));
+    }
+
+    @Benchmark
+    public List<TodoView> list() {
+        return todoService.getTodosByUser(listUserId);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.DueTodo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NotificationService#createNotificationMessage (package-private のため同じパッケージに置く)
+ * 1ユーザーあたり5件、ユーザーID順に並んだ期限前日Todoでメッセージを組み立てる
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationMessageBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int rows;
+
+    private final NotificationService notificationService = new NotificationService();
+    private List<DueTodo> tasks;
+
+    @Setup
+    public void setUp() {
+        LocalDate tomorrow = LocalDate.of(2025, 1, 2);
+        tasks = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long userId = i / 5;
+            tasks.add(new DueTodo((long) i, userId, "user" + userId, "期限前日のタスク " + i, tomorrow));
+        }
+    }
+
+    @Benchmark
+    public String createNotificationMessage() {
+        return notificationService.createNotificationMessage(tasks);
+    }
+}
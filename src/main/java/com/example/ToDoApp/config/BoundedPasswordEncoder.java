@@ -0,0 +1,119 @@
+package com.example.ToDoApp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * パスワードのハッシュ計算・照合を専用のスレッドプールで実行する
+ *
+ * BCryptはリクエストスレッドで実行するとログインが集中したときに全コアを使い切り、/api/todos まで遅くなる。
+ * 同時に計算するのはスレッド数まで、待てるのは待ち行列の長さまでとし、溢れた分と待ち時間の上限を超えた分は
+ * PasswordHashingRejectedException ですぐに断る (呼び出し元は結果が出るまでブロックする)
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration maxWait;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration maxWait,
+            MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxWait = maxWait;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("todoapp.password.hash.queue", executor, e -> e.getQueue().size())
+            .description("ハッシュ計算の待ち行列の長さ")
+            .register(meterRegistry);
+        Gauge.builder("todoapp.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("ハッシュ計算中のスレッド数")
+            .register(meterRegistry);
+        this.queueFullRejections = rejections(meterRegistry, "queue_full");
+        this.timeoutRejections = rejections(meterRegistry, "timeout");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // ハッシュの形式を見るだけなので呼び出し元のスレッドで判定する
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * コンテキスト終了時に呼ばれる (@Bean の destroy メソッドの推定)
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            queueFullRejections.increment();
+            throw new PasswordHashingRejectedException("ログイン処理が混み合っています");
+        }
+
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // まだ待ち行列にあれば取り除き、後続のために枠を空ける
+            future.cancel(true);
+            executor.remove((Runnable) future);
+            timeoutRejections.increment();
+            throw new PasswordHashingRejectedException("ログイン処理が混み合っています");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException("ログイン処理が中断されました");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("todoapp.password.hash.rejected")
+            .description("受け付けなかったハッシュ計算の数")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.service.CustomUserDetails;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * セッション属性のバイナリ表現
+ *
+ * セッションの大半はログイン状態 (SecurityContext) だけを持つため、これをユーザーID・ユーザー名・権限だけの
+ * 固定レイアウトで書き出す。Javaシリアライズではクラス記述子を含めて1KB以上になるものが100バイト前後に収まり、
+ * セッションストアへの読み書き量とクラスのバージョン違いによる復元失敗を減らせる。
+ * 文字列はUTF-8のまま、それ以外の属性 (保存されたリクエストなど) はJavaシリアライズで書き出す
+ */
+public class CompactSessionSerializer {
+
+    private static final byte JAVA = 0;
+    private static final byte STRING = 1;
+    private static final byte SECURITY_CONTEXT = 2;
+
+    private static final byte NO_DETAILS = 0;
+    private static final byte WEB_DETAILS = 1;
+
+    private final DefaultSerializer javaSerializer = new DefaultSerializer();
+    private final DefaultDeserializer javaDeserializer;
+
+    public CompactSessionSerializer(ClassLoader classLoader) {
+        this.javaDeserializer = new DefaultDeserializer(classLoader);
+    }
+
+    public byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (value instanceof String text) {
+                out.writeByte(STRING);
+                out.writeUTF(text);
+            } else if (isCompactSecurityContext(value)) {
+                out.writeByte(SECURITY_CONTEXT);
+                writeSecurityContext(out, (SecurityContextImpl) value);
+            } else {
+                out.writeByte(JAVA);
+                javaSerializer.serialize(value, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("セッション属性を書き出せません: " + value.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Object deserialize(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte type = in.readByte();
+            return switch (type) {
+                case STRING -> in.readUTF();
+                case SECURITY_CONTEXT -> readSecurityContext(in);
+                case JAVA -> javaDeserializer.deserialize(in);
+                default -> throw new IOException("不明なセッション属性の形式です: " + type);
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("セッション属性を読み込めません", e);
+        }
+    }
+
+    /**
+     * 固定レイアウトで失われる情報がないログイン状態か
+     * (フォームログインで作られたもの以外はJavaシリアライズに任せる)
+     */
+    private static boolean isCompactSecurityContext(Object value) {
+        if (value == null || value.getClass() != SecurityContextImpl.class) {
+            return false;
+        }
+        if (!(((SecurityContextImpl) value).getAuthentication() instanceof UsernamePasswordAuthenticationToken token)) {
+            return false;
+        }
+        return token.getClass() == UsernamePasswordAuthenticationToken.class
+            && token.isAuthenticated()
+            && token.getCredentials() == null
+            && token.getPrincipal() instanceof CustomUserDetails user
+            && user.getPassword() == null
+            && (token.getDetails() == null || token.getDetails().getClass() == WebAuthenticationDetails.class);
+    }
+
+    private static void writeSecurityContext(DataOutputStream out, SecurityContextImpl context) throws IOException {
+        UsernamePasswordAuthenticationToken token = (UsernamePasswordAuthenticationToken) context.getAuthentication();
+        CustomUserDetails user = (CustomUserDetails) token.getPrincipal();
+        out.writeLong(user.getUserId());
+        out.writeUTF(user.getUsername());
+        out.writeShort(token.getAuthorities().size());
+        for (GrantedAuthority authority : token.getAuthorities()) {
+            out.writeUTF(authority.getAuthority());
+        }
+        if (token.getDetails() instanceof WebAuthenticationDetails details) {
+            out.writeByte(WEB_DETAILS);
+            writeNullableUTF(out, details.getRemoteAddress());
+            writeNullableUTF(out, details.getSessionId());
+        } else {
+            out.writeByte(NO_DETAILS);
+        }
+    }
+
+    private static SecurityContextImpl readSecurityContext(DataInputStream in) throws IOException {
+        long userId = in.readLong();
+        String username = in.readUTF();
+        int authorityCount = in.readShort();
+        List<GrantedAuthority> authorities = new ArrayList<>(authorityCount);
+        for (int i = 0; i < authorityCount; i++) {
+            authorities.add(new SimpleGrantedAuthority(in.readUTF()));
+        }
+        CustomUserDetails user = new CustomUserDetails(userId, username, authorities);
+        UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(user, null, authorities);
+        if (in.readByte() == WEB_DETAILS) {
+            token.setDetails(new WebAuthenticationDetails(readNullableUTF(in), readNullableUTF(in)));
+        }
+        return new SecurityContextImpl(token);
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
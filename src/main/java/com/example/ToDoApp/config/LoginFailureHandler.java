@@ -0,0 +1,38 @@
+package com.example.ToDoApp.config;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * ログイン失敗時の応答
+ * パスワードの照合を受け付けられなかった場合は 503 と Retry-After を返し、それ以外は従来どおりログイン画面に戻す
+ */
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private final Duration retryAfter;
+
+    public LoginFailureHandler(String failureUrl, Duration retryAfter) {
+        super(failureUrl);
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
+            AuthenticationException exception) throws IOException, ServletException {
+        // ユーザーが存在しない場合の照合 (タイミング攻撃対策) で断られた場合は別の例外に包まれている
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PasswordHashingRejectedException) {
+                LoginThrottleFilter.reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, retryAfter,
+                    "ログイン処理が混み合っています。しばらくしてから再度お試しください");
+                return;
+            }
+        }
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
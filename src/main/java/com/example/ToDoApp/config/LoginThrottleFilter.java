@@ -0,0 +1,54 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.service.LoginThrottle;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * POST /login と POST /register の試行回数を LoginThrottle で判定し、上限を超えた場合は
+ * パスワードのハッシュ計算をせずに 429 Too Many Requests を返す
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private final LoginThrottle loginThrottle;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !"POST".equals(request.getMethod()) || !("/login".equals(path) || "/register".equals(path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String username = "/login".equals(request.getServletPath()) ? request.getParameter("username") : null;
+        Duration retryAfter = loginThrottle.tryAcquire(request.getRemoteAddr(), username);
+        if (!retryAfter.isZero()) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS.value(), retryAfter,
+                "試行回数が多すぎます。しばらくしてから再度お試しください");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 画面遷移せずに状態コードと再試行までの秒数を返す (ログイン画面・登録画面のフォームから送られる)
+     */
+    static void reject(HttpServletResponse response, int status, Duration retryAfter, String message) throws IOException {
+        response.setStatus(status);
+        response.setHeader("Retry-After", Long.toString(Math.max(1, retryAfter.toSeconds())));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(message);
+    }
+}
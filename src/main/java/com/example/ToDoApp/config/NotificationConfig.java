@@ -0,0 +1,77 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.service.NotificationDeadLetterStore;
+import com.example.ToDoApp.service.NotificationDispatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+@Configuration
+@ConditionalOnProperty(name = "notification.enabled", havingValue = "true", matchIfMissing = false)
+public class NotificationConfig {
+
+    @Value("${notification.dispatcher.connect-timeout:3s}")
+    private Duration connectTimeout;
+
+    @Value("${notification.dispatcher.request-timeout:10s}")
+    private Duration requestTimeout;
+
+    @Value("${notification.dispatcher.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${notification.dispatcher.batch-max-chars:3500}")
+    private int batchMaxChars;
+
+    @Value("${notification.dispatcher.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${notification.dispatcher.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${notification.dispatcher.initial-backoff:1s}")
+    private Duration initialBackoff;
+
+    @Value("${notification.dispatcher.max-backoff:60s}")
+    private Duration maxBackoff;
+
+    // virtual プロファイルでは送信経路も仮想スレッドで動かす
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Slack Webhook 用のHTTPクライアント
+     * 接続はクライアント内でプールされ、同じホストへのリクエストで再利用される
+     */
+    @Bean
+    public HttpClient notificationHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .connectTimeout(connectTimeout);
+        if (virtualThreads) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return builder.build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public NotificationDispatcher notificationDispatcher(HttpClient notificationHttpClient, ObjectMapper objectMapper,
+                                                         NotificationDeadLetterStore deadLetterStore) {
+        NotificationDispatcher.Settings settings = new NotificationDispatcher.Settings(
+            queueCapacity,
+            batchMaxChars,
+            maxInFlight,
+            maxAttempts,
+            initialBackoff,
+            maxBackoff,
+            requestTimeout);
+        if (virtualThreads) {
+            return new NotificationDispatcher(notificationHttpClient, objectMapper, settings, deadLetterStore, Thread.ofVirtual().factory());
+        }
+        return new NotificationDispatcher(notificationHttpClient, objectMapper, settings, deadLetterStore);
+    }
+}
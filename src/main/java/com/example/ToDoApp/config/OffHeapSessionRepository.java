@@ -0,0 +1,250 @@
+package com.example.ToDoApp.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.PrincipalNameIndexResolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ヒープ外メモリに置くセッションストア (todoapp.session.store=offheap)
+ *
+ * セッションは保存のたびに CompactSessionSerializer でバイト列にし、ヒープ外メモリ (OffHeapSlabArena) の
+ * ブロックに格納する。ブロックはまとめて確保したスラブから切り出して使い回すため、保存のたびにダイレクトバッファを
+ * 確保しない。ヒープ外メモリが max-bytes に達して空きがない場合はヒープに置く。
+ * ヒープに残るのはIDと索引だけなので、ログイン中のユーザーが多くてもGCの対象が増えない。
+ * プロセス内のストアのため複数台構成では共有されない (その場合は jdbc を使う)
+ */
+public class OffHeapSessionRepository implements FindByIndexNameSessionRepository<MapSession>, MeterBinder {
+
+    /**
+     * 格納済みのセッション (期限切れの判定と索引の更新のために一部の値はヒープにも持つ)
+     * block はヒープ外のブロック (ヒープに置いた場合は null)。data はその中の使用部分
+     */
+    private record StoredSession(ByteBuffer data, OffHeapSlabArena.Block block, String principalName, Instant expiresAt) {
+    }
+
+    private final CompactSessionSerializer serializer;
+    private final Duration defaultMaxInactiveInterval;
+    private final OffHeapSlabArena arena;
+    private final PrincipalNameIndexResolver<MapSession> principalNameResolver = new PrincipalNameIndexResolver<>();
+
+    private final Map<String, StoredSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionIdsByPrincipal = new ConcurrentHashMap<>();
+    private final AtomicLong heapSessions = new AtomicLong();
+
+    /**
+     * @param slabSize ヒープ外メモリをまとめて確保する単位 (2のべき乗。これより大きいセッションはヒープに置く)
+     * @param maxBytes ヒープ外メモリの上限
+     */
+    public OffHeapSessionRepository(CompactSessionSerializer serializer, Duration defaultMaxInactiveInterval,
+                                    int slabSize, long maxBytes) {
+        this.serializer = serializer;
+        this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
+        this.arena = new OffHeapSlabArena(slabSize, maxBytes);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("todoapp.session.offheap.sessions", sessions, Map::size)
+            .description("ヒープ外のセッションストアに格納しているセッション数")
+            .register(registry);
+        Gauge.builder("todoapp.session.offheap.bytes", arena, OffHeapSlabArena::reservedBytes)
+            .description("ヒープ外のセッションストアが確保しているメモリ")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("todoapp.session.offheap.used.bytes", arena, OffHeapSlabArena::usedBytes)
+            .description("ヒープ外のセッションストアのうちセッションに割り当て中のメモリ")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("todoapp.session.offheap.heap.sessions", heapSessions, AtomicLong::get)
+            .description("ヒープ外メモリに空きがなくヒープに置いたセッション数")
+            .register(registry);
+    }
+
+    @Override
+    public MapSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(defaultMaxInactiveInterval);
+        return session;
+    }
+
+    @Override
+    public void save(MapSession session) {
+        // セッションIDの変更 (ログイン時のセッション固定化対策) では古いIDを消す
+        if (!session.getId().equals(session.getOriginalId())) {
+            deleteById(session.getOriginalId());
+        }
+
+        String principalName = principalNameResolver.resolveIndexValueFor(session);
+        StoredSession stored = store(encode(session), principalName,
+            session.getLastAccessedTime().plus(session.getMaxInactiveInterval()));
+
+        StoredSession previous = sessions.put(session.getId(), stored);
+        if (previous != null) {
+            release(previous);
+            if (previous.principalName() != null && !previous.principalName().equals(principalName)) {
+                unindex(previous.principalName(), session.getId());
+            }
+        }
+        if (principalName != null) {
+            sessionIdsByPrincipal.computeIfAbsent(principalName, key -> ConcurrentHashMap.newKeySet()).add(session.getId());
+        }
+    }
+
+    /**
+     * 読み込み中に同じセッションが保存・削除されると、ブロックは解放されて別のセッションに再利用されている可能性がある。
+     * そのためバイト列を写した後に格納済みのセッションが変わっていないことを確かめ、変わっていれば読み直す
+     */
+    @Override
+    public MapSession findById(String id) {
+        while (true) {
+            StoredSession stored = sessions.get(id);
+            if (stored == null) {
+                return null;
+            }
+            if (!stored.expiresAt().isAfter(Instant.now())) {
+                remove(id, stored);
+                return null;
+            }
+            byte[] data = new byte[stored.data().remaining()];
+            stored.data().duplicate().get(data);
+            if (sessions.get(id) == stored) {
+                return decode(id, data);
+            }
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        StoredSession removed = sessions.remove(id);
+        if (removed != null) {
+            release(removed);
+            if (removed.principalName() != null) {
+                unindex(removed.principalName(), id);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, MapSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        if (!PRINCIPAL_NAME_INDEX_NAME.equals(indexName)) {
+            return Map.of();
+        }
+        Map<String, MapSession> result = new HashMap<>();
+        for (String id : sessionIdsByPrincipal.getOrDefault(indexValue, Set.of())) {
+            MapSession session = findById(id);
+            if (session != null) {
+                result.put(id, session);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 期限切れのセッションを解放する (アクセスされないまま期限が切れたもの)
+     */
+    @Scheduled(fixedDelayString = "${todoapp.session.offheap.cleanup-interval-ms:60000}")
+    public void purgeExpiredSessions() {
+        Instant now = Instant.now();
+        sessions.forEach((id, stored) -> {
+            if (!stored.expiresAt().isAfter(now)) {
+                remove(id, stored);
+            }
+        });
+    }
+
+    /**
+     * stored がまだ格納されている場合だけ削除する (確認の後に保存し直された新しいセッションは消さない)
+     */
+    private void remove(String id, StoredSession stored) {
+        if (sessions.remove(id, stored)) {
+            release(stored);
+            if (stored.principalName() != null) {
+                unindex(stored.principalName(), id);
+            }
+        }
+    }
+
+    /**
+     * ヒープ外のブロックに書き込む (割り当てられなければヒープに置く)
+     */
+    private StoredSession store(byte[] encoded, String principalName, Instant expiresAt) {
+        OffHeapSlabArena.Block block = arena.allocate(encoded.length);
+        if (block == null) {
+            heapSessions.incrementAndGet();
+            return new StoredSession(ByteBuffer.wrap(encoded), null, principalName, expiresAt);
+        }
+        ByteBuffer data = block.buffer().slice(0, encoded.length).put(encoded).flip();
+        return new StoredSession(data, block, principalName, expiresAt);
+    }
+
+    private void release(StoredSession stored) {
+        if (stored.block() != null) {
+            arena.free(stored.block());
+        } else {
+            heapSessions.decrementAndGet();
+        }
+    }
+
+    private void unindex(String principalName, String id) {
+        sessionIdsByPrincipal.computeIfPresent(principalName, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private byte[] encode(MapSession session) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(session.getCreationTime().toEpochMilli());
+            out.writeLong(session.getLastAccessedTime().toEpochMilli());
+            out.writeLong(session.getMaxInactiveInterval().toSeconds());
+            out.writeInt(session.getAttributeNames().size());
+            for (String name : session.getAttributeNames()) {
+                byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+                byte[] value = serializer.serialize(session.getAttribute(name));
+                out.writeShort(encodedName.length);
+                out.write(encodedName);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private MapSession decode(String id, byte[] stored) {
+        ByteBuffer data = ByteBuffer.wrap(stored);
+        MapSession session = new MapSession(id);
+        session.setCreationTime(Instant.ofEpochMilli(data.getLong()));
+        session.setLastAccessedTime(Instant.ofEpochMilli(data.getLong()));
+        session.setMaxInactiveInterval(Duration.ofSeconds(data.getLong()));
+        int attributeCount = data.getInt();
+        for (int i = 0; i < attributeCount; i++) {
+            byte[] name = new byte[data.getShort() & 0xFFFF];
+            data.get(name);
+            byte[] value = new byte[data.getInt()];
+            data.get(value);
+            session.setAttribute(new String(name, StandardCharsets.UTF_8), serializer.deserialize(value));
+        }
+        return session;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.ToDoApp.config;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OffHeapSessionRepository がセッションを格納するヒープ外メモリ
+ *
+ * ダイレクトバッファは slab-size ごとにまとめて確保し、サイズクラス (128B から2倍ずつ slab-size まで) の
+ * ブロックに切り分けて使い回す。解放したブロックは同じサイズクラスの空きリストに戻るため、保存のたびに
+ * ダイレクトバッファを確保することはない。確保した合計が max-bytes に達した後は新しいスラブを確保せず、
+ * 空きブロックがなければ null を返す (呼び出し側はヒープに置く)
+ */
+class OffHeapSlabArena {
+
+    static final int MIN_BLOCK_SIZE = 128;
+
+    /**
+     * 切り分けたブロック (buffer はスラブの一部分を指す)
+     */
+    record Block(ByteBuffer buffer, int sizeClass) {
+    }
+
+    private final int slabSize;
+    private final long maxBytes;
+    private final List<ArrayDeque<Block>> freeBlocks = new ArrayList<>();
+    private long reservedBytes;
+    private long usedBytes;
+
+    OffHeapSlabArena(int slabSize, long maxBytes) {
+        if (slabSize < MIN_BLOCK_SIZE || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException("slab-size は " + MIN_BLOCK_SIZE + " 以上の2のべき乗にしてください: " + slabSize);
+        }
+        this.slabSize = slabSize;
+        this.maxBytes = maxBytes;
+        for (int size = MIN_BLOCK_SIZE; size <= slabSize; size <<= 1) {
+            freeBlocks.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * length バイト以上のブロックを割り当てる (空きがなく、max-bytes に達している場合は null)
+     * 同じサイズクラスに空きがなければ、新しいスラブを確保するか、より大きいサイズクラスの空きを使う
+     */
+    synchronized Block allocate(int length) {
+        if (length > slabSize) {
+            return null;
+        }
+        int sizeClass = sizeClass(length);
+        if (freeBlocks.get(sizeClass).isEmpty() && reservedBytes + slabSize <= maxBytes) {
+            carveSlab(sizeClass);
+        }
+        for (int i = sizeClass; i < freeBlocks.size(); i++) {
+            Block block = freeBlocks.get(i).poll();
+            if (block != null) {
+                usedBytes += block.buffer().capacity();
+                return block;
+            }
+        }
+        return null;
+    }
+
+    synchronized void free(Block block) {
+        usedBytes -= block.buffer().capacity();
+        freeBlocks.get(block.sizeClass()).push(block);
+    }
+
+    /**
+     * 確保済みのダイレクトバッファの合計
+     */
+    synchronized long reservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * 割り当て中のブロックの合計
+     */
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    private void carveSlab(int sizeClass) {
+        ByteBuffer slab = ByteBuffer.allocateDirect(slabSize);
+        reservedBytes += slabSize;
+        int blockSize = MIN_BLOCK_SIZE << sizeClass;
+        for (int offset = 0; offset < slabSize; offset += blockSize) {
+            freeBlocks.get(sizeClass).add(new Block(slab.slice(offset, blockSize), sizeClass));
+        }
+    }
+
+    private static int sizeClass(int length) {
+        int blocks = Math.max(1, (length + MIN_BLOCK_SIZE - 1) / MIN_BLOCK_SIZE);
+        return 32 - Integer.numberOfLeadingZeros(blocks - 1);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.ToDoApp.config;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * パスワードのハッシュ計算を受け付けられなかった (待ち行列が満杯、または待ち時間の上限を超えた)
+ * ログイン・登録は 503 と Retry-After で応答し、BCryptの計算で他のリクエストのCPUを奪わないようにする
+ */
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.ToDoApp.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QueryPlanChecker 用: capture の実行中に同じスレッドから送られたSQLとパラメータを記録する
+ * (Hibernate が生成したSQLをそのまま EXPLAIN するため)
+ *
+ * プロキシを通すのは capture の実行中に取得したコネクションだけで、それ以外 (チェックの後のリクエストなど) は
+ * 元の DataSource のコネクションをそのまま返す
+ */
+@Component
+@ConditionalOnProperty(name = "todoapp.query-plan-check.enabled", havingValue = "true", matchIfMissing = false)
+class QueryCapture implements BeanPostProcessor, Ordered, QueryExecutionListener {
+
+    /**
+     * 送られたSQL (プレースホルダのまま) と、最初の実行で設定されたパラメータ (位置の順)
+     */
+    record CapturedQuery(String sql, List<Object> parameters) {
+    }
+
+    private final ThreadLocal<Map<String, CapturedQuery>> active = new ThreadLocal<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        DataSource proxy = ProxyDataSourceBuilder.create(beanName, dataSource)
+            .listener(this)
+            .build();
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return active.get() != null ? proxy.getConnection() : super.getConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return active.get() != null ? proxy.getConnection(username, password) : super.getConnection(username, password);
+            }
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 200;
+    }
+
+    /**
+     * action を実行し、その間に送られたSQLを返す (同じSQLは1件にまとめる)
+     * コネクションは action の中で取得したものだけが対象のため、トランザクションの開始も action に含める
+     */
+    List<CapturedQuery> capture(Runnable action) {
+        Map<String, CapturedQuery> captured = new LinkedHashMap<>();
+        active.set(captured);
+        try {
+            action.run();
+        } finally {
+            active.remove();
+        }
+        return List.copyOf(captured.values());
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Map<String, CapturedQuery> captured = active.get();
+        if (captured == null) {
+            return;
+        }
+        for (QueryInfo query : queryInfoList) {
+            captured.computeIfAbsent(query.getQuery(), sql -> new CapturedQuery(sql, parameters(query)));
+        }
+    }
+
+    private static List<Object> parameters(QueryInfo query) {
+        if (query.getParametersList().isEmpty()) {
+            return List.of();
+        }
+        List<ParameterSetOperation> operations = new ArrayList<>(query.getParametersList().get(0));
+        operations.sort(Comparator.comparingInt(operation -> ((Number) operation.getArgs()[0]).intValue()));
+        List<Object> parameters = new ArrayList<>(operations.size());
+        for (ParameterSetOperation operation : operations) {
+            parameters.add(ParameterSetOperation.isSetNullParameterOperation(operation) ? null : operation.getArgs()[1]);
+        }
+        return parameters;
+    }
+}
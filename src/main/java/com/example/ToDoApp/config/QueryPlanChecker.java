@@ -0,0 +1,184 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.config.QueryCapture.CapturedQuery;
+import com.example.ToDoApp.repository.TodoArchiveRepository;
+import com.example.ToDoApp.repository.TodoRepository;
+import com.example.ToDoApp.repository.TodoTombstoneRepository;
+import com.example.ToDoApp.repository.UserRepository;
+import com.example.ToDoApp.repository.UserTodoStatsRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 起動時に主要なリポジトリメソッドを見本の引数で実行し、Hibernate が送ったSQLをそのまま EXPLAIN して
+ * フルテーブルスキャンになるものを警告する (実行はロールバックするトランザクション内で行う)
+ * MySQL以外のDBでは実行しない
+ */
+@Component
+@ConditionalOnProperty(name = "todoapp.query-plan-check.enabled", havingValue = "true", matchIfMissing = false)
+public class QueryPlanChecker {
+
+    // 見本の引数 (存在しない値でも計画は変わらない)
+    private static final Long USER_ID = 1L;
+    private static final List<Long> IDS = List.of(1L, 2L, 3L);
+    private static final Limit PAGE = Limit.of(51);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private QueryCapture queryCapture;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private TodoArchiveRepository archiveRepository;
+
+    @Autowired
+    private TodoTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private UserTodoStatsRepository statsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // 行数の少ないテーブルではオプティマイザがあえてフルスキャンを選ぶため、この件数未満は警告しない
+    @Value("${todoapp.query-plan-check.min-rows:1000}")
+    private long minRows;
+
+    private TransactionTemplate rollbackTransaction;
+
+    @PostConstruct
+    public void init() {
+        rollbackTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 確認するリポジトリメソッド (キーはメソッド名、値は見本の引数での呼び出し)
+     * 書き込み・整合チェック用 (countGroupByUserIdIn など) のメソッドは対象外
+     */
+    private Map<String, Runnable> checkedQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = LocalDate.now();
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("TodoRepository.findViewsByUserId", () -> todoRepository.findViewsByUserId(USER_ID));
+        queries.put("TodoRepository.findViewsByUserIdAndCompleted",
+            () -> todoRepository.findViewsByUserIdAndCompleted(USER_ID, false));
+        queries.put("TodoRepository.findFirstPageByUserId", () -> todoRepository.findFirstPageByUserId(USER_ID, PAGE));
+        queries.put("TodoRepository.findPageByUserIdAfter",
+            () -> todoRepository.findPageByUserIdAfter(USER_ID, now, 1L, PAGE));
+        queries.put("TodoRepository.findPageByUserIdAndCompletedAfter",
+            () -> todoRepository.findPageByUserIdAndCompletedAfter(USER_ID, false, now, 1L, PAGE));
+        queries.put("TodoRepository.findViewsChangedSince", () -> todoRepository.findViewsChangedSince(USER_ID, now));
+        queries.put("TodoRepository.findViewByIdAndUserId", () -> todoRepository.findViewByIdAndUserId(1L, USER_ID));
+        queries.put("TodoRepository.findOwnedByIdIn", () -> todoRepository.findOwnedByIdIn(IDS, USER_ID));
+        queries.put("TodoRepository.findViewsByIdIn", () -> todoRepository.findViewsByIdIn(IDS, USER_ID));
+        queries.put("TodoRepository.findSearchSourcesAfter", () -> todoRepository.findSearchSourcesAfter(1L, Limit.of(1000)));
+        queries.put("TodoRepository.countOverdueByUserId", () -> todoRepository.countOverdueByUserId(USER_ID, today));
+        queries.put("TodoRepository.countAllByUserId", () -> todoRepository.countAllByUserId(USER_ID, today));
+        queries.put("TodoRepository.findDueChunkAfter",
+            () -> todoRepository.findDueChunkAfter(today, 1, 0, USER_ID, 1L, Limit.of(500)));
+        queries.put("TodoRepository.findArchivable", () -> todoRepository.findArchivable(now, Limit.of(500)));
+        queries.put("TodoArchiveRepository.findPageByUserIdAfter",
+            () -> archiveRepository.findPageByUserIdAfter(USER_ID, now, 1L, PAGE));
+        queries.put("TodoArchiveRepository.findOwnedIdsIn", () -> archiveRepository.findOwnedIdsIn(IDS, USER_ID));
+        queries.put("TodoTombstoneRepository.findDeletedIdsSince", () -> tombstoneRepository.findDeletedIdsSince(USER_ID, now));
+        queries.put("UserTodoStatsRepository.findVersionByUserId", () -> statsRepository.findVersionByUserId(USER_ID));
+        queries.put("UserRepository.findByUsername", () -> userRepository.findByUsername("user"));
+        return queries;
+    }
+
+    /**
+     * 各メソッドを実行して、送られたSELECT文を集める (実行したトランザクションはロールバックする)
+     */
+    Map<String, List<CapturedQuery>> captureQueries() {
+        Map<String, List<CapturedQuery>> captured = new LinkedHashMap<>();
+        checkedQueries().forEach((name, query) -> {
+            try {
+                List<CapturedQuery> statements = queryCapture.capture(() -> rollbackTransaction.executeWithoutResult(status -> {
+                    status.setRollbackOnly();
+                    query.run();
+                }));
+                captured.put(name, statements.stream()
+                    .filter(statement -> statement.sql().stripLeading().regionMatches(true, 0, "select", 0, 6))
+                    .toList());
+            } catch (Exception e) {
+                System.err.println("クエリプランチェック: " + name + " の実行に失敗しました: " + e.getMessage());
+            }
+        });
+        return captured;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkQueryPlans() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+            if (!"MySQL".equalsIgnoreCase(product)) {
+                System.out.println("クエリプランチェック: " + product + " は対象外のためスキップします");
+                return;
+            }
+        } catch (Exception e) {
+            System.err.println("クエリプランチェック: DBに接続できないためスキップします: " + e.getMessage());
+            return;
+        }
+
+        Map<String, List<CapturedQuery>> captured = captureQueries();
+        int warnings = 0;
+        for (Map.Entry<String, List<CapturedQuery>> query : captured.entrySet()) {
+            for (CapturedQuery statement : query.getValue()) {
+                try {
+                    List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + statement.sql(),
+                        statement.parameters().toArray());
+                    for (Map<String, Object> row : plan) {
+                        if (isFullScan(row)) {
+                            warnings++;
+                            System.err.println("[警告] フルテーブルスキャンが計画されています: " + query.getKey()
+                                + " table=" + row.get("table")
+                                + " rows=" + row.get("rows")
+                                + " possible_keys=" + row.get("possible_keys")
+                                + " sql=" + statement.sql());
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("クエリプランチェック: " + query.getKey() + " の EXPLAIN に失敗しました: " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.println("クエリプランチェック完了: " + captured.size() + "件中 " + warnings + "件の警告");
+    }
+
+    private boolean isFullScan(Map<String, Object> row) {
+        if (!"ALL".equals(row.get("type"))) {
+            return false;
+        }
+        // 使えるインデックスがない場合はテーブルの大きさに関係なく警告する
+        if (row.get("possible_keys") == null) {
+            return true;
+        }
+        Object rows = row.get("rows");
+        return rows instanceof Number && ((Number) rows).longValue() >= minRows;
+    }
+}
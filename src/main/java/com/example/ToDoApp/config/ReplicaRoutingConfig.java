@@ -0,0 +1,126 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.service.RecentWriteTracker;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * todoapp.datasource.replicas.urls を設定したとき、読み取り専用トランザクションをレプリカに振り分ける
+ * (ReplicaRoutingDataSource)。レプリカのプールはプライマリの Hikari の設定を引き継ぎ、URL・ユーザー・
+ * プールサイズだけを置き換える
+ */
+@Configuration
+@ConditionalOnProperty(name = "todoapp.datasource.replicas.urls")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    public static ReplicaRoutingPostProcessor replicaRoutingPostProcessor(Environment environment,
+                                                                         ObjectProvider<RecentWriteTracker> recentWriteTracker) {
+        return new ReplicaRoutingPostProcessor(environment, recentWriteTracker);
+    }
+
+    @Bean
+    public MeterBinder replicaRoutingMetrics(DataSource dataSource) throws SQLException {
+        ReplicaRoutingDataSource router = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        return router::bindTo;
+    }
+
+    /**
+     * スロークエリログのプロキシの内側で包む (SQLの集計はレプリカで実行した分も含む)
+     */
+    static class ReplicaRoutingPostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+
+        private final Environment environment;
+        private final ObjectProvider<RecentWriteTracker> recentWriteTracker;
+        private final List<ReplicaRoutingDataSource> routers = new ArrayList<>();
+        private final List<HikariDataSource> primaryPools = new ArrayList<>();
+
+        ReplicaRoutingPostProcessor(Environment environment, ObjectProvider<RecentWriteTracker> recentWriteTracker) {
+            this.environment = environment;
+            this.recentWriteTracker = recentWriteTracker;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource primary)) {
+                return bean;
+            }
+            HikariDataSource primaryPool;
+            try {
+                primaryPool = primary.unwrap(HikariDataSource.class);
+            } catch (SQLException e) {
+                throw new IllegalStateException("レプリカの振り分けにはプライマリが Hikari のプールである必要があります", e);
+            }
+
+            String[] urls = StringUtils.commaDelimitedListToStringArray(
+                environment.getRequiredProperty("todoapp.datasource.replicas.urls"));
+            List<HikariDataSource> replicaPools = new ArrayList<>();
+            for (int i = 0; i < urls.length; i++) {
+                replicaPools.add(replicaPool(primaryPool, urls[i].trim(), i + 1));
+            }
+
+            String lagQuery = environment.getProperty("todoapp.datasource.replicas.lag-query", "");
+            ReplicaRoutingDataSource.Settings settings = new ReplicaRoutingDataSource.Settings(
+                ReplicaRoutingDataSource.Selection.valueOf(environment.getProperty(
+                    "todoapp.datasource.replicas.selection", "round-robin").toUpperCase(Locale.ROOT).replace('-', '_')),
+                environment.getProperty("todoapp.datasource.replicas.health-check-interval", Duration.class, Duration.ofSeconds(2)),
+                lagQuery.isBlank() ? null : lagQuery,
+                environment.getProperty("todoapp.datasource.replicas.max-lag", Duration.class, Duration.ofSeconds(2)));
+            System.out.println("読み取りレプリカ: " + urls.length + "台, 選択 " + settings.selection()
+                + ", 許容遅延 " + settings.maxLag().toSeconds() + "秒"
+                + (settings.lagQuery() == null ? " (遅延は確認しない)" : ""));
+
+            ReplicaRoutingDataSource router = new ReplicaRoutingDataSource(primary, replicaPools, settings,
+                () -> recentWriteTracker.getObject().currentUserWroteRecently());
+            routers.add(router);
+            primaryPools.add(primaryPool);
+            return new LazyConnectionDataSourceProxy(router);
+        }
+
+        private HikariDataSource replicaPool(HikariDataSource primaryPool, String url, int index) {
+            HikariDataSource replica = new HikariDataSource();
+            primaryPool.copyStateTo(replica);
+            replica.setPoolName("replica-" + index);
+            replica.setJdbcUrl(url);
+            replica.setUsername(environment.getProperty("todoapp.datasource.replicas.username", primaryPool.getUsername()));
+            replica.setPassword(environment.getProperty("todoapp.datasource.replicas.password", primaryPool.getPassword()));
+            replica.setMaximumPoolSize(environment.getProperty("todoapp.datasource.replicas.maximum-pool-size",
+                Integer.class, primaryPool.getMaximumPoolSize()));
+            replica.setReadOnly(true);
+            return replica;
+        }
+
+        /**
+         * レプリカとプライマリのプールを閉じる
+         * 包んだ後の DataSource (LazyConnectionDataSourceProxy) には close がなく、コンテキストの終了時に
+         * プライマリのプールが閉じられないため、ここで閉じる
+         */
+        @Override
+        public void destroy() {
+            routers.forEach(ReplicaRoutingDataSource::close);
+            primaryPools.forEach(HikariDataSource::close);
+        }
+
+        @Override
+        public int getOrder() {
+            return 10;
+        }
+    }
+}
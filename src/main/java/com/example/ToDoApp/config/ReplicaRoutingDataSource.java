@@ -0,0 +1,215 @@
+package com.example.ToDoApp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 読み取り専用トランザクションのコネクションをレプリカから取得するDataSource
+ *
+ * - readOnly = true のトランザクション: 正常なレプリカを round-robin / least-connections で選ぶ
+ *   (直前に変更したユーザーのリクエスト (readYourWrites) と、正常なレプリカがない場合はプライマリ)
+ * - それ以外 (書き込み、トランザクション外、セッションストア、Flyway): プライマリ
+ *
+ * 判定はコネクションの取得時に行うため、LazyConnectionDataSourceProxy で包んで最初のSQL実行まで取得を遅らせる
+ * (JpaTransactionManager はトランザクション開始時、readOnly の状態を設定する前にコネクションを要求する)
+ * レプリカの状態は healthCheckInterval ごとに確認し、接続できないもの・遅延が maxLag を超えたものは外す
+ */
+public class ReplicaRoutingDataSource extends DelegatingDataSource {
+
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_CONNECTIONS
+    }
+
+    /**
+     * @param lagQuery 遅延 (秒) を返すSQL。null の場合は接続の確認だけを行う
+     */
+    public record Settings(Selection selection, Duration healthCheckInterval, String lagQuery, Duration maxLag) {
+    }
+
+    static final class Replica {
+
+        final String name;
+        final HikariDataSource pool;
+        volatile boolean healthy;
+
+        Replica(String name, HikariDataSource pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+
+        int activeConnections() {
+            HikariPoolMXBean mxBean = pool.getHikariPoolMXBean();
+            return mxBean == null ? 0 : mxBean.getActiveConnections() + mxBean.getThreadsAwaitingConnection();
+        }
+    }
+
+    private final List<Replica> replicas;
+    private final Settings settings;
+    private final BooleanSupplier readYourWrites;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    private Counter replicaReads;
+    private Counter stickyReads;
+    private Counter fallbackReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools, Settings settings,
+                                    BooleanSupplier readYourWrites) {
+        super(primary);
+        this.replicas = replicaPools.stream().map(pool -> new Replica(pool.getPoolName(), pool)).toList();
+        this.settings = settings;
+        this.readYourWrites = readYourWrites;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 最初の確認が済むまでは全てプライマリから読む (起動時にレプリカが落ちていても起動を止めない)
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0,
+            settings.healthCheckInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return super.getConnection();
+        }
+        if (readYourWrites.getAsBoolean()) {
+            count(stickyReads);
+            return super.getConnection();
+        }
+
+        Replica replica = select();
+        if (replica != null) {
+            try {
+                Connection connection = replica.pool.getConnection();
+                count(replicaReads);
+                return connection;
+            } catch (SQLException e) {
+                markHealthy(replica, false, e.getMessage());
+            }
+        }
+        count(fallbackReads);
+        return super.getConnection();
+    }
+
+    /**
+     * 各レプリカに接続し、遅延が maxLag 以下なら振り分け先に戻す (定期実行。テストからも呼ぶ)
+     */
+    public synchronized void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection()) {
+                if (settings.lagQuery() == null) {
+                    markHealthy(replica, connection.isValid(5), "接続を確認できません");
+                    continue;
+                }
+                Duration lag = queryLag(connection);
+                markHealthy(replica, lag != null && lag.compareTo(settings.maxLag()) <= 0,
+                    lag == null ? "遅延を取得できません (レプリケーション停止)" : "遅延 " + lag.toSeconds() + "秒");
+            } catch (SQLException | RuntimeException e) {
+                markHealthy(replica, false, e.getMessage());
+            }
+        }
+    }
+
+    public int getHealthyReplicaCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    public void close() {
+        healthChecker.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        replicaReads = reads(registry, "replica");
+        stickyReads = reads(registry, "primary-read-your-writes");
+        fallbackReads = reads(registry, "primary-fallback");
+        for (Replica replica : replicas) {
+            Gauge.builder("todoapp.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                .description("レプリカが振り分け先に入っているか (1/0)")
+                .tag("replica", replica.name)
+                .register(registry);
+        }
+    }
+
+    private Replica select() {
+        List<Replica> healthy = replicas.stream().filter(replica -> replica.healthy).toList();
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        if (settings.selection() == Selection.LEAST_CONNECTIONS) {
+            return healthy.stream().min(Comparator.comparingInt(Replica::activeConnections)).orElseThrow();
+        }
+        return healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size()));
+    }
+
+    /**
+     * lagQuery の結果の秒数 (MySQL の SHOW REPLICA STATUS の場合は Seconds_Behind_Source 列)
+     * 結果がない・NULL の場合はレプリケーションが動いていないとみなして null を返す
+     */
+    private Duration queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(settings.lagQuery())) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            int column = 1;
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String label = metaData.getColumnLabel(i);
+                if ("Seconds_Behind_Source".equalsIgnoreCase(label) || "Seconds_Behind_Master".equalsIgnoreCase(label)) {
+                    column = i;
+                }
+            }
+            long seconds = resultSet.getLong(column);
+            return resultSet.wasNull() ? null : Duration.ofSeconds(seconds);
+        }
+    }
+
+    private void markHealthy(Replica replica, boolean healthy, String reason) {
+        if (replica.healthy == healthy) {
+            return;
+        }
+        replica.healthy = healthy;
+        if (healthy) {
+            System.out.println("レプリカ " + replica.name + " を振り分け先に戻しました");
+        } else {
+            System.err.println("レプリカ " + replica.name + " を振り分け先から外しました: " + reason);
+        }
+    }
+
+    private static void count(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static Counter reads(MeterRegistry registry, String target) {
+        return Counter.builder("todoapp.datasource.read.connections")
+            .description("読み取り専用トランザクションのコネクションの取得先")
+            .tag("target", target)
+            .register(registry);
+    }
+}
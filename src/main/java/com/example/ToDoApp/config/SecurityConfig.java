@@ -1,25 +1,75 @@
 package com.example.ToDoApp.config;
 
+import com.example.ToDoApp.service.LoginThrottle;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+import java.time.Duration;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    /**
+     * BCryptの計算は専用のスレッドプール (BoundedPasswordEncoder) で行い、リクエストスレッドのCPUを奪わない
+     * bcrypt-strength を上げた場合、既存のハッシュは次回ログイン成功時に新しい強度で保存し直す
+     * (CustomUserDetailsService.updatePassword)
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+            @Value("${todoapp.password-hash.bcrypt-strength:10}") int strength,
+            @Value("${todoapp.password-hash.threads:0}") int threads,
+            @Value("${todoapp.password-hash.queue-capacity:16}") int queueCapacity,
+            @Value("${todoapp.password-hash.max-wait:2s}") Duration maxWait) {
+        // 既定ではコア数の半分 (最低1) までにして、残りのコアをAPIの処理に残す
+        int hashThreads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        System.out.println("パスワードハッシュ: BCrypt 強度 " + strength + ", スレッド " + hashThreads
+            + ", 待ち行列 " + queueCapacity + ", 待ち時間上限 " + maxWait);
+        return new BoundedPasswordEncoder(
+            new TimedPasswordEncoder(new BCryptPasswordEncoder(strength), meterRegistry),
+            hashThreads, queueCapacity, maxWait, meterRegistry);
+    }
+
+    /**
+     * Actuator (management.server.port) 用
+     * 公開しているのは health と prometheus だけで、管理ポートは内部ネットワークからのみ到達できる前提
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        http
+            .securityMatcher(EndpointRequest.toAnyEndpoint())
+            .authorizeHttpRequests(authz -> authz.anyRequest().permitAll())
+            .csrf(csrf -> csrf.disable())
+            .requestCache(cache -> cache.disable())
+            .securityContext(context -> context.disable())
+            .sessionManagement(session -> session.disable());
+
+        return http.build();
     }
 
+    /**
+     * 同時ログインは1セッションまで (新しくログインすると古いセッションは無効になる)
+     * sessionRegistry はセッションストアを参照するため、別のインスタンスのセッションも対象になる (SessionConfig)
+     */
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    @Order(2)
+    public SecurityFilterChain filterChain(HttpSecurity http, SessionRegistry sessionRegistry, LoginThrottle loginThrottle,
+            @Value("${todoapp.password-hash.retry-after:5s}") Duration retryAfter) throws Exception {
         http
+            // 試行回数の上限を超えたログイン・登録はハッシュ計算の前に断る
+            .addFilterBefore(new LoginThrottleFilter(loginThrottle), UsernamePasswordAuthenticationFilter.class)
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/login", "/register", "/css/**", "/js/**").permitAll()
                 .requestMatchers("/api/**").authenticated()
@@ -28,7 +78,7 @@ public class SecurityConfig {
             .formLogin(form -> form
                 .loginPage("/login")
                 .defaultSuccessUrl("/", true)
-                .failureUrl("/login?error=true")
+                .failureHandler(new LoginFailureHandler("/login?error=true", retryAfter))
                 .usernameParameter("username")
                 .passwordParameter("password")
                 .permitAll()
@@ -43,6 +93,7 @@ public class SecurityConfig {
             .sessionManagement(session -> session
                 .maximumSessions(1)
                 .maxSessionsPreventsLogin(false)
+                .sessionRegistry(sessionRegistry)
             )
             .csrf(csrf -> csrf
                 .csrfTokenRepository(org.springframework.security.web.csrf.CookieCsrfTokenRepository.withHttpOnlyFalse())
@@ -0,0 +1,68 @@
+package com.example.ToDoApp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.security.SpringSessionBackedSessionRegistry;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * HTTPセッションの保存先 (todoapp.session.store)
+ *
+ * - jdbc (既定): 既存のDBの SPRING_SESSION テーブル。複数台でセッションを共有でき、ロードバランサーのスティッキーセッションが不要になる
+ * - offheap: プロセス内のヒープ外メモリ (OffHeapSessionRepository)。1台構成向け
+ *
+ * どちらもセッション属性は CompactSessionSerializer で書き出す。
+ * 同時ログイン数の制限 (maximumSessions) はセッションストアを引く SessionRegistry で判定するため、
+ * jdbc では別のインスタンスでログインした古いセッションも無効になる
+ */
+@Configuration
+public class SessionConfig {
+
+    @Bean
+    public CompactSessionSerializer compactSessionSerializer() {
+        return new CompactSessionSerializer(SessionConfig.class.getClassLoader());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "todoapp.session.store", havingValue = "jdbc", matchIfMissing = true)
+    public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> compactJdbcSessionAttributes(CompactSessionSerializer serializer) {
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, serializer::serialize);
+        conversionService.addConverter(byte[].class, Object.class, serializer::deserialize);
+        return repository -> repository.setConversionService(conversionService);
+    }
+
+    @Bean
+    public <S extends Session> SessionRegistry sessionRegistry(FindByIndexNameSessionRepository<S> sessionRepository) {
+        return new SpringSessionBackedSessionRegistry<>(sessionRepository);
+    }
+
+    /**
+     * offheap の場合は SessionRepository を自前で定義する (Spring Boot の jdbc の自動構成は無効になる)
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "todoapp.session.store", havingValue = "offheap")
+    @EnableSpringHttpSession
+    static class OffHeapSessionConfig {
+
+        @Bean
+        public OffHeapSessionRepository sessionRepository(CompactSessionSerializer serializer,
+                @Value("${server.servlet.session.timeout:30m}") Duration timeout,
+                @Value("${todoapp.session.offheap.slab-size:1MB}") DataSize slabSize,
+                @Value("${todoapp.session.offheap.max-size:64MB}") DataSize maxSize) {
+            System.out.println("セッションストア: offheap (タイムアウト " + timeout + ", 上限 " + maxSize.toMegabytes() + "MB)");
+            return new OffHeapSessionRepository(serializer, timeout, (int) slabSize.toBytes(), maxSize.toBytes());
+        }
+    }
+}
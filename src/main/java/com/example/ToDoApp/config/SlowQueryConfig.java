@@ -0,0 +1,85 @@
+package com.example.ToDoApp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * DataSource をプロキシで包み、SlowQueryLog で全SQL文の実行時間を集計する
+ * 集計結果は管理ポートの /actuator/slowqueries で確認できる
+ */
+@Configuration
+@ConditionalOnProperty(name = "todoapp.slow-query.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryConfig {
+
+    @Value("${todoapp.slow-query.threshold:200ms}")
+    private Duration threshold;
+
+    @Value("${todoapp.slow-query.sample-rate:1.0}")
+    private double sampleRate;
+
+    // redact: 型名だけを出力する / show: 値も出力する (個人情報を含むため開発環境のみ)
+    @Value("${todoapp.slow-query.parameters:redact}")
+    private String parameters;
+
+    @Value("${todoapp.slow-query.max-shapes:500}")
+    private int maxShapes;
+
+    @Bean
+    public SlowQueryLog slowQueryLog(ObjectMapper objectMapper) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalStateException("todoapp.slow-query.sample-rate は0から1の範囲で指定してください");
+        }
+        SlowQueryLog.ParameterMode parameterMode = SlowQueryLog.ParameterMode.valueOf(parameters.toUpperCase(Locale.ROOT));
+        System.out.println("スロークエリログ: 閾値 " + threshold.toMillis() + "ms, 出力割合 " + sampleRate
+            + ", パラメータ " + parameterMode);
+        return new SlowQueryLog(new SlowQueryLog.Settings(threshold, sampleRate, parameterMode, maxShapes), objectMapper);
+    }
+
+    @Bean
+    public SlowQueryEndpoint slowQueryEndpoint(SlowQueryLog slowQueryLog) {
+        return new SlowQueryEndpoint(slowQueryLog);
+    }
+
+    @Bean
+    public static SlowQueryPostProcessor slowQueryPostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new SlowQueryPostProcessor(slowQueryLog);
+    }
+
+    /**
+     * 読み取りレプリカの振り分け (ReplicaRoutingDataSource) などの外側で包み、SQLの実行時間だけを測る
+     */
+    static class SlowQueryPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final ObjectProvider<SlowQueryLog> slowQueryLog;
+
+        SlowQueryPostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+            this.slowQueryLog = slowQueryLog;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return ProxyDataSourceBuilder.create(beanName, dataSource)
+                .listener(slowQueryLog.getObject())
+                .build();
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE - 100;
+        }
+    }
+}
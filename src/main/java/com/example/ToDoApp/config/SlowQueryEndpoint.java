@@ -0,0 +1,44 @@
+package com.example.ToDoApp.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/slowqueries
+ * GET ?limit=20&sort=total|max|count|slow でクエリの形ごとの集計の上位を返し、DELETE で集計をリセットする
+ */
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryEndpoint(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public Map<String, Object> top(@Nullable Integer limit, @Nullable String sort) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("since", slowQueryLog.getSince());
+        response.put("thresholdMs", slowQueryLog.getSettings().threshold().toMillis());
+        response.put("sort", sort != null ? sort : "total");
+        response.put("shapeCount", slowQueryLog.getShapeCount());
+        response.put("suppressedLogs", slowQueryLog.getSuppressedLogs());
+        response.put("shapes", slowQueryLog.top(
+            limit != null && limit > 0 ? limit : DEFAULT_LIMIT,
+            sort != null ? sort : "total"));
+        return response;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        slowQueryLog.reset();
+    }
+}
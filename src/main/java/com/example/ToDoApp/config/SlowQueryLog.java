@@ -0,0 +1,247 @@
+package com.example.ToDoApp.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 実行されたSQL文をクエリの形 (リテラルとIN句の要素数を除いたSQL) ごとに集計し、
+ * 閾値を超えた文だけを1行のJSONでログに出す
+ * - バインドパラメータは既定では型名だけを出力する (parameters=show で値も出力)
+ * - 遅い文が多いときにログが溢れないよう、sample-rate の割合だけ出力する (集計は全件)
+ * SlowQueryConfig で DataSource のプロキシに登録する
+ */
+public class SlowQueryLog implements QueryExecutionListener {
+
+    private static final String START_NANOS = "slowQueryLog.startNanos";
+    // 形の種類が max-shapes を超えた後の新しい形はここにまとめる
+    private static final String OTHER_SHAPE = "(other)";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public enum ParameterMode {
+        REDACT, SHOW
+    }
+
+    /**
+     * 動作設定
+     */
+    public record Settings(Duration threshold,
+                           double sampleRate,
+                           ParameterMode parameterMode,
+                           int maxShapes) {
+    }
+
+    /**
+     * クエリの形ごとの集計結果
+     */
+    public record ShapeStats(String shape,
+                             long count,
+                             double totalMs,
+                             double meanMs,
+                             double maxMs,
+                             long slowCount) {
+    }
+
+    private static class Aggregate {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder slowCount = new LongAdder();
+
+        void record(long nanos, boolean slow) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            if (slow) {
+                slowCount.increment();
+            }
+        }
+
+        ShapeStats toStats(String shape) {
+            long n = count.sum();
+            double totalMs = totalNanos.sum() / 1_000_000.0;
+            return new ShapeStats(shape, n, totalMs, n > 0 ? totalMs / n : 0, maxNanos.get() / 1_000_000.0, slowCount.sum());
+        }
+    }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper;
+    private final long thresholdNanos;
+
+    // 生のSQL → 形 (Hibernateが生成するSQLは種類が限られるため、正規化の結果を使い回す)
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private final AtomicLong suppressedLogs = new AtomicLong();
+
+    private volatile LocalDateTime since = LocalDateTime.now();
+
+    public SlowQueryLog(Settings settings, ObjectMapper objectMapper) {
+        this.settings = settings;
+        this.objectMapper = objectMapper;
+        this.thresholdNanos = settings.threshold().toNanos();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long startNanos = execInfo.getCustomValue(START_NANOS, Long.class);
+        if (startNanos == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        boolean slow = elapsed >= thresholdNanos;
+
+        String shape = shapeOf(queryInfoList);
+        aggregateFor(shape).record(elapsed, slow);
+
+        if (slow) {
+            if (settings.sampleRate() >= 1.0 || ThreadLocalRandom.current().nextDouble() < settings.sampleRate()) {
+                log(execInfo, queryInfoList, shape, elapsed);
+            } else {
+                suppressedLogs.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 合計時間・最大時間・実行回数・遅い文の数のいずれかで並べた上位 limit 件
+     */
+    public List<ShapeStats> top(int limit, String sort) {
+        Comparator<ShapeStats> order = switch (sort) {
+            case "max" -> Comparator.comparingDouble(ShapeStats::maxMs);
+            case "count" -> Comparator.comparingLong(ShapeStats::count);
+            case "slow" -> Comparator.comparingLong(ShapeStats::slowCount);
+            default -> Comparator.comparingDouble(ShapeStats::totalMs);
+        };
+        return aggregates.entrySet().stream()
+            .map(entry -> entry.getValue().toStats(entry.getKey()))
+            .sorted(order.reversed())
+            .limit(limit)
+            .toList();
+    }
+
+    public int getShapeCount() {
+        return aggregates.size();
+    }
+
+    public long getSuppressedLogs() {
+        return suppressedLogs.get();
+    }
+
+    public LocalDateTime getSince() {
+        return since;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public void reset() {
+        aggregates.clear();
+        suppressedLogs.set(0);
+        since = LocalDateTime.now();
+    }
+
+    private Aggregate aggregateFor(String shape) {
+        Aggregate aggregate = aggregates.get(shape);
+        if (aggregate != null) {
+            return aggregate;
+        }
+        if (aggregates.size() >= settings.maxShapes()) {
+            return aggregates.computeIfAbsent(OTHER_SHAPE, key -> new Aggregate());
+        }
+        return aggregates.computeIfAbsent(shape, key -> new Aggregate());
+    }
+
+    private String shapeOf(List<QueryInfo> queryInfoList) {
+        String sql = queryInfoList.size() == 1
+            ? queryInfoList.get(0).getQuery()
+            : queryInfoList.stream().map(QueryInfo::getQuery).distinct().collect(Collectors.joining("; "));
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            // IN句の要素数などで生のSQLの種類が増え続けないよう、キャッシュは形の上限の数倍までにする
+            if (shapeCache.size() < settings.maxShapes() * 4) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * リテラルを ? に置き換え、IN句の要素数と空白の違いをまとめる
+     */
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        return IN_LIST.matcher(shape).replaceAll("in (?...)");
+    }
+
+    private void log(ExecutionInfo execInfo, List<QueryInfo> queryInfoList, String shape, long elapsed) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("elapsedMs", Math.round(elapsed / 10_000.0) / 100.0);
+        entry.put("thresholdMs", settings.threshold().toMillis());
+        entry.put("shape", shape);
+        entry.put("statementType", String.valueOf(execInfo.getStatementType()));
+        if (execInfo.isBatch()) {
+            entry.put("batchSize", execInfo.getBatchSize());
+        }
+        entry.put("success", execInfo.isSuccess());
+        entry.put("thread", Thread.currentThread().getName());
+        entry.put("parameters", parameters(queryInfoList.get(0)));
+        try {
+            System.err.println("[slow-query] " + objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            System.err.println("[slow-query] " + elapsed / 1_000_000 + "ms " + shape);
+        }
+    }
+
+    /**
+     * 最初のパラメータセットを出力用に変換する (バッチの2件目以降は出さない)
+     * REDACT の場合は値の代わりに型名だけを出す
+     */
+    private List<String> parameters(QueryInfo queryInfo) {
+        List<String> values = new ArrayList<>();
+        if (queryInfo.getParametersList().isEmpty()) {
+            return values;
+        }
+        for (ParameterSetOperation operation : queryInfo.getParametersList().get(0)) {
+            Object[] args = operation.getArgs();
+            if (ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2 || args[1] == null) {
+                values.add("null");
+            } else if (settings.parameterMode() == ParameterMode.SHOW) {
+                values.add(String.valueOf(args[1]));
+            } else {
+                values.add(args[1].getClass().getSimpleName());
+            }
+        }
+        return values;
+    }
+}
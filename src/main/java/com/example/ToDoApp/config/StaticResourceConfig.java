@@ -0,0 +1,46 @@
+package com.example.ToDoApp.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
+
+/**
+ * /css/** と /js/** の配信設定
+ *
+ * テンプレートの @{/css/style.css} は ResourceUrlEncodingFilter で内容のハッシュ付きの名前
+ * (/css/style-{md5}.css) に書き換わるため、ファイルが変われば URL も変わる。そのためブラウザには1年間
+ * 再検証せずに使わせる (Cache-Control: immutable)。
+ * ビルド時に作った圧縮版 (StaticAssetPipeline の .br / .gz) があれば Accept-Encoding に合わせてそれを返す
+ */
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+    private static final Duration MAX_AGE = Duration.ofDays(365);
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        for (String directory : new String[] {"css", "js"}) {
+            registry.addResourceHandler("/" + directory + "/**")
+                .addResourceLocations("classpath:/static/" + directory + "/")
+                .setCacheControl(CacheControl.maxAge(MAX_AGE).cachePublic().immutable())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+        }
+    }
+
+    /**
+     * テンプレートが出力するリンクをハッシュ付きの名前に書き換える
+     */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.ToDoApp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * 仮想スレッド (spring.threads.virtual.enabled=true) のとき、Hikari のプールサイズとコネクション取得の待ち時間に上限を掛ける
+ * 仮想スレッドにはTomcatのスレッド数の上限がなく、リクエスト数だけスレッドがコネクション待ちに並ぶ。
+ * 待ち時間を短く抑え、プールが埋まったときは並び続けずに SQLTransientConnectionException ですぐに失敗させる
+ * 設定がこの上限を超えている場合は上限に下げる (virtual プロファイル以外の設定を持ち込んでも待ちが伸びない)
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPoolGuardConfig {
+
+    @Bean
+    public static PoolCeilingPostProcessor poolCeilingPostProcessor(Environment environment) {
+        int maxPoolSize = environment.getProperty("todoapp.datasource.virtual.max-pool-size", Integer.class, 20);
+        Duration maxConnectionTimeout = environment.getProperty("todoapp.datasource.virtual.max-connection-timeout",
+            Duration.class, Duration.ofSeconds(1));
+        return new PoolCeilingPostProcessor(maxPoolSize, maxConnectionTimeout);
+    }
+
+    /**
+     * 他のDataSourceラッパーより先に Hikari 本体の設定を変える
+     * (レプリカのプールはプライマリの設定を引き継ぐため、同じ上限になる)
+     */
+    static class PoolCeilingPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final int maxPoolSize;
+        private final Duration maxConnectionTimeout;
+
+        PoolCeilingPostProcessor(int maxPoolSize, Duration maxConnectionTimeout) {
+            this.maxPoolSize = maxPoolSize;
+            this.maxConnectionTimeout = maxConnectionTimeout;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof HikariDataSource hikari)) {
+                return bean;
+            }
+            if (hikari.getMaximumPoolSize() > maxPoolSize) {
+                System.out.println("仮想スレッド: プールサイズ " + hikari.getMaximumPoolSize() + " を上限 " + maxPoolSize + " に下げます");
+                hikari.setMaximumPoolSize(maxPoolSize);
+            }
+            // 0 は Hikari では無期限の待ちになる
+            if (hikari.getConnectionTimeout() == 0 || hikari.getConnectionTimeout() > maxConnectionTimeout.toMillis()) {
+                System.out.println("仮想スレッド: コネクション取得の待ち " + hikari.getConnectionTimeout() + "ms を上限 "
+                    + maxConnectionTimeout.toMillis() + "ms に下げます");
+                hikari.setConnectionTimeout(maxConnectionTimeout.toMillis());
+            }
+            return hikari;
+        }
+
+        @Override
+        public int getOrder() {
+            return 0;
+        }
+    }
+}
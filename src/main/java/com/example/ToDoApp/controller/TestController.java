@@ -1,6 +1,11 @@
 package com.example.ToDoApp.controller;
 
+import com.example.ToDoApp.dto.StatsReconciliationReport;
+import com.example.ToDoApp.dto.TodoArchiveReport;
+import com.example.ToDoApp.service.NotificationDispatcher;
 import com.example.ToDoApp.service.ScheduledService;
+import com.example.ToDoApp.service.TodoArchiver;
+import com.example.ToDoApp.service.TodoStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,6 +21,15 @@ public class TestController {
     @Autowired(required = false)
     private ScheduledService scheduledService;
     
+    @Autowired
+    private TodoStatsService todoStatsService;
+    
+    @Autowired
+    private TodoArchiver todoArchiver;
+    
+    @Autowired(required = false)
+    private NotificationDispatcher notificationDispatcher;
+    
     /**
      * Slack通知のテストエンドポイント
      * ブラウザで http://localhost:8081/api/test/notification にアクセス
@@ -65,4 +79,64 @@ public class TestController {
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Todo件数の整合チェックを手動実行するテストエンドポイント
+     * ブラウザで http://localhost:8081/api/test/reconcile-stats にアクセス
+     */
+    @GetMapping("/reconcile-stats")
+    public ResponseEntity<Map<String, Object>> testReconcileStats() {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            StatsReconciliationReport report = todoStatsService.reconcile();
+            response.put("success", true);
+            response.put("report", report);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "エラーが発生しました: " + e.getMessage());
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 完了済みTodoのアーカイブを手動実行するテストエンドポイント
+     * ブラウザで http://localhost:8081/api/test/archive にアクセス
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<Map<String, Object>> testArchive() {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            TodoArchiveReport report = todoArchiver.archive();
+            response.put("success", true);
+            response.put("report", report);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "エラーが発生しました: " + e.getMessage());
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 通知ディスパッチャの送信状況とデッドレターを確認するテストエンドポイント
+     * ブラウザで http://localhost:8081/api/test/notification-stats にアクセス
+     */
+    @GetMapping("/notification-stats")
+    public ResponseEntity<Map<String, Object>> testNotificationStats() {
+        Map<String, Object> response = new HashMap<>();
+        
+        if (notificationDispatcher != null) {
+            response.put("success", true);
+            response.put("stats", notificationDispatcher.getStats());
+            response.put("deadLetters", notificationDispatcher.getDeadLetters(100));
+        } else {
+            response.put("success", false);
+            response.put("message", "NotificationDispatcherが利用できません（通知機能が無効になっている可能性があります）");
+        }
+        
+        return ResponseEntity.ok(response);
+    }
 }
\ No newline at end of file
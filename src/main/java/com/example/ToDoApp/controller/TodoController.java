@@ -1,20 +1,46 @@
 package com.example.ToDoApp.controller;
 
+import com.example.ToDoApp.dto.TodoBatch;
+import com.example.ToDoApp.dto.TodoBatchResult;
+import com.example.ToDoApp.dto.TodoDelta;
+import com.example.ToDoApp.dto.TodoDraft;
+import com.example.ToDoApp.dto.TodoSearchResult;
+import com.example.ToDoApp.dto.TodoUpdate;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.dto.TodoViewSerializer;
 import com.example.ToDoApp.entity.Todo;
-import com.example.ToDoApp.entity.User;
+import com.example.ToDoApp.service.CustomUserDetails;
+import com.example.ToDoApp.service.TodoBatchException;
+import com.example.ToDoApp.service.TodoChangeFeed;
+import com.example.ToDoApp.service.TodoCursor;
+import com.example.ToDoApp.service.TodoPage;
 import com.example.ToDoApp.service.TodoService;
-import com.example.ToDoApp.service.UserService;
+import com.example.ToDoApp.service.TodoStatsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/todos")
@@ -24,66 +50,236 @@ public class TodoController {
     private TodoService todoService;
     
     @Autowired
-    private UserService userService;
+    private TodoStatsService todoStatsService;
     
+    @Autowired
+    private TodoChangeFeed todoChangeFeed;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private TransactionTemplate readOnlyTransaction;
+    
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Todo一覧取得
+     * limit または after を指定した場合は (createdAt, id) のキーセットでページングし、
+     * レスポンスの nextCursor を次回の after に渡すことで続きを取得できる
+     * 
+     * updatedSince を指定した場合は、その時刻より後に作成・更新されたTodoと削除されたTodoのIDだけを返す
+     * (前回のレスポンスの syncedAt を渡す)。
+     * ETag は一覧のバージョンで、If-None-Match が一致すれば todos を読まずに 304 を返す
+     * バージョンと一覧は1つの読み取り専用トランザクションで読む (レプリカ使用時も同じコネクションから読むため、
+     * 遅れているレプリカの一覧が新しいバージョンの ETag で返ることはない)
+     */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getTodos(
             @RequestParam(required = false) String filter,
-            Authentication authentication) {
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String updatedSince,
+            @AuthenticationPrincipal CustomUserDetails principal,
+            WebRequest webRequest) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userService.findByUsername(username);
-            
-            if (!userOpt.isPresent()) {
-                response.put("success", false);
-                response.put("message", "ユーザーが見つかりません");
-                return ResponseEntity.status(404).body(response);
-            }
-            
-            User user = userOpt.get();
-            List<Todo> todos;
-            
-            if ("completed".equals(filter)) {
-                todos = todoService.getTodosByUserAndStatus(user, true);
-            } else if ("pending".equals(filter)) {
-                todos = todoService.getTodosByUserAndStatus(user, false);
-            } else {
-                todos = todoService.getTodosByUser(user);
-            }
+            Long userId = principal.getUserId();
+            return readOnlyTransaction.execute(status -> listTodos(userId, filter, limit, after, updatedSince, webRequest));
+        } catch (DateTimeParseException e) {
+            response.put("success", false);
+            response.put("message", "無効な日時形式です");
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Todo取得中にエラーが発生しました");
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    private ResponseEntity<Map<String, Object>> listTodos(Long userId, String filter, Integer limit, String after,
+                                                          String updatedSince, WebRequest webRequest) {
+        Map<String, Object> response = new HashMap<>();
+        
+        // ユーザーIDを含めて、同じブラウザで別のユーザーがログインした場合に他人の一覧を 304 で返さないようにする
+        String etag = "\"" + userId + "-" + todoStatsService.getListVersion(userId) + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        
+        if (updatedSince != null) {
+            LocalDateTime since = LocalDateTime.parse(updatedSince);
+            LocalDateTime syncedAt = todoService.nextSyncPoint();
+            TodoDelta delta = todoService.getChangesSince(userId, since);
             
-            List<Map<String, Object>> todoList = todos.stream()
-                .map(this::convertTodoToMap)
-                .collect(Collectors.toList());
+            response.put("success", true);
+            response.put("todos", delta.todos());
+            response.put("deleted", delta.deleted());
+            response.put("full", delta.full());
+            response.put("syncedAt", syncedAt.toString());
+            return listResponse(etag, response);
+        }
+        
+        if (limit != null || after != null) {
+            TodoCursor cursor = after != null ? TodoCursor.decode(after) : null;
+            int pageSize = limit != null ? limit : TodoService.MAX_PAGE_SIZE;
+            TodoPage<TodoView> page = todoService.getTodoPage(userId, completedFilter(filter), cursor, pageSize);
             
             response.put("success", true);
-            response.put("todos", todoList);
+            response.put("todos", page.items());
+            response.put("hasMore", page.hasMore());
+            response.put("nextCursor", page.hasMore() ? page.nextCursor().encode() : null);
+            return listResponse(etag, response);
+        }
+        
+        // 一覧を読む前の配信位置と時刻。/changes?since= や updatedSince に渡すと、以降の変更だけを受け取れる
+        String feedPosition = todoChangeFeed.position(userId);
+        LocalDateTime syncedAt = todoService.nextSyncPoint();
+        List<TodoView> todos;
+        
+        if ("completed".equals(filter)) {
+            todos = todoService.getTodosByUserAndStatus(userId, true);
+        } else if ("pending".equals(filter)) {
+            todos = todoService.getTodosByUserAndStatus(userId, false);
+        } else {
+            todos = todoService.getTodosByUser(userId);
+        }
+        
+        response.put("success", true);
+        response.put("todos", todos);
+        response.put("feedPosition", feedPosition);
+        response.put("syncedAt", syncedAt.toString());
+        return listResponse(etag, response);
+    }
+    
+    /**
+     * 一覧のレスポンス (ブラウザには毎回 If-None-Match で確認させる)
+     */
+    private ResponseEntity<Map<String, Object>> listResponse(String etag, Map<String, Object> response) {
+        return ResponseEntity.ok()
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(response);
+    }
+    
+    /**
+     * Todo本文の検索
+     * 空白で区切った語をすべて含むTodoを新しい順に返す (英数字は前方一致、漢字かなは部分一致)
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchTodos(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal CustomUserDetails principal) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            int pageSize = limit != null ? limit : TodoService.DEFAULT_SEARCH_LIMIT;
+            TodoSearchResult result = todoService.searchTodos(principal.getUserId(), q, pageSize);
+            response.put("success", true);
+            response.put("todos", result.todos());
+            response.put("hasMore", result.hasMore());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
         } catch (Exception e) {
             response.put("success", false);
-            response.put("message", "Todo取得中にエラーが発生しました");
+            response.put("message", "Todo検索中にエラーが発生しました");
         }
         
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Todoの変更通知 (Server-Sent Events)
+     * 作成・更新は変更後のTodo、削除はIDだけを "todo" イベントで送る。
+     * 再接続時はブラウザが送る Last-Event-ID (初回は since) の続きから送り直し、
+     * 続きを送れない場合は "reset" イベントを送る (クライアントは一覧を取得し直す)
+     */
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) String since,
+            @AuthenticationPrincipal CustomUserDetails principal) {
+        
+        return todoChangeFeed.subscribe(principal.getUserId(), lastEventId != null ? lastEventId : since);
+    }
+    
+    /**
+     * Todo件数 (全体・完了・未完了・期限切れ)
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats(
+            @AuthenticationPrincipal CustomUserDetails principal) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            response.put("success", true);
+            response.put("stats", todoStatsService.getStats(principal.getUserId()));
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Todo件数の取得中にエラーが発生しました");
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Todo一覧をストリーミングで返す
+     * 一覧全体をメモリに載せず、DBから読んだ行を順にJSONとして書き出す
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamTodos(
+            @RequestParam(required = false) String filter,
+            @AuthenticationPrincipal CustomUserDetails principal) {
+        
+        Long userId = principal.getUserId();
+        Boolean completed = completedFilter(filter);
+        
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeBooleanField("success", true);
+                generator.writeArrayFieldStart("todos");
+                todoService.streamTodos(userId, completed, todo -> {
+                    try {
+                        TodoViewSerializer.writeTodo(todo, generator);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        };
+        
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+    
     @PostMapping
     public ResponseEntity<Map<String, Object>> createTodo(
             @RequestBody Map<String, String> todoRequest,
-            Authentication authentication) {
+            @AuthenticationPrincipal CustomUserDetails principal) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userService.findByUsername(username);
-            
-            if (!userOpt.isPresent()) {
-                response.put("success", false);
-                response.put("message", "ユーザーが見つかりません");
-                return ResponseEntity.status(404).body(response);
-            }
+            Long userId = principal.getUserId();
             
             String text = todoRequest.get("text");
             String dueDateStr = todoRequest.get("dueDate");
@@ -93,7 +289,7 @@ public class TodoController {
                 // 日付のみの場合
                 try {
                     LocalDate dueDate = LocalDate.parse(dueDateStr);
-                    todo = todoService.createTodoWithDueDate(text, userOpt.get(), dueDate);
+                    todo = todoService.createTodoWithDueDate(text, userId, dueDate);
                 } catch (DateTimeParseException e) {
                     response.put("success", false);
                     response.put("message", "無効な日付形式です");
@@ -101,11 +297,11 @@ public class TodoController {
                 }
             } else {
                 // 期日なしの場合
-                todo = todoService.createTodo(text, userOpt.get());
+                todo = todoService.createTodo(text, userId);
             }
             
             response.put("success", true);
-            response.put("todo", convertTodoToMap(todo));
+            response.put("todo", TodoView.from(todo));
         } catch (IllegalArgumentException e) {
             response.put("success", false);
             response.put("message", e.getMessage());
@@ -121,71 +317,31 @@ public class TodoController {
     public ResponseEntity<Map<String, Object>> updateTodo(
             @PathVariable Long id,
             @RequestBody Map<String, Object> updateRequest,
-            Authentication authentication) {
+            @AuthenticationPrincipal CustomUserDetails principal) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userService.findByUsername(username);
-            Optional<Todo> todoOpt = todoService.findById(id);
-            
-            if (!userOpt.isPresent()) {
-                response.put("success", false);
-                response.put("message", "ユーザーが見つかりません");
-                return ResponseEntity.status(404).body(response);
-            }
+            Long userId = principal.getUserId();
             
-            if (!todoOpt.isPresent()) {
+            TodoUpdate update;
+            try {
+                update = toTodoUpdate(updateRequest);
+            } catch (DateTimeParseException e) {
                 response.put("success", false);
-                response.put("message", "Todoが見つかりません");
-                return ResponseEntity.status(404).body(response);
+                response.put("message", "無効な日付形式です");
+                return ResponseEntity.ok(response);
             }
             
-            Todo todo = todoOpt.get();
-            User user = userOpt.get();
-            
-            if (!todoService.isTodoOwnedByUser(todo, user)) {
-                response.put("success", false);
-                response.put("message", "このTodoを変更する権限がありません");
-                return ResponseEntity.status(403).body(response);
-            }
+            // 所有者チェックを含めて1回のUPDATE文で反映する
+            Optional<TodoView> updated = todoService.updateOwnedTodo(id, userId, update);
             
-            if (updateRequest.containsKey("text")) {
-                String newText = (String) updateRequest.get("text");
-                todo = todoService.updateTodo(todo, newText);
-            }
-            
-            // 期日の更新処理
-            if (updateRequest.containsKey("dueDate")) {
-                String dueDateStr = (String) updateRequest.get("dueDate");
-                
-                try {
-                    LocalDate dueDate = null;
-                    
-                    if (dueDateStr != null && !dueDateStr.trim().isEmpty()) {
-                        // 日付のみの場合
-                        dueDate = LocalDate.parse(dueDateStr);
-                    }
-                    // nullの場合はdueDateはnullのまま
-                    
-                    todo = todoService.updateTodoDueDate(todo, dueDate);
-                } catch (DateTimeParseException e) {
-                    response.put("success", false);
-                    response.put("message", "無効な日付形式です");
-                    return ResponseEntity.ok(response);
-                }
-            }
-            
-            if (updateRequest.containsKey("completed")) {
-                Boolean completed = (Boolean) updateRequest.get("completed");
-                if (!completed.equals(todo.getCompleted())) {
-                    todo = todoService.toggleTodoStatus(todo);
-                }
+            if (!updated.isPresent()) {
+                return ownershipFailure(id, "このTodoを変更する権限がありません", response);
             }
             
             response.put("success", true);
-            response.put("todo", convertTodoToMap(todo));
+            response.put("todo", updated.get());
         } catch (IllegalArgumentException e) {
             response.put("success", false);
             response.put("message", e.getMessage());
@@ -200,59 +356,173 @@ public class TodoController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, Object>> deleteTodo(
             @PathVariable Long id,
-            Authentication authentication) {
+            @AuthenticationPrincipal CustomUserDetails principal) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userService.findByUsername(username);
-            Optional<Todo> todoOpt = todoService.findById(id);
+            Long userId = principal.getUserId();
             
-            if (!userOpt.isPresent()) {
-                response.put("success", false);
-                response.put("message", "ユーザーが見つかりません");
-                return ResponseEntity.status(404).body(response);
+            // 所有者チェックを含めて1回のDELETE文で削除する
+            if (!todoService.deleteOwnedTodo(id, userId)) {
+                return ownershipFailure(id, "このTodoを削除する権限がありません", response);
             }
             
-            if (!todoOpt.isPresent()) {
-                response.put("success", false);
-                response.put("message", "Todoが見つかりません");
-                return ResponseEntity.status(404).body(response);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Todo削除中にエラーが発生しました");
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Todoの一括作成
+     * {"todos": [{"text": ..., "dueDate": ...}, ...]} を1リクエスト・1トランザクションで登録する
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> createTodos(
+            @RequestBody Map<String, Object> batchRequest,
+            @AuthenticationPrincipal CustomUserDetails principal) {
+        
+        Map<String, Object> request = new HashMap<>();
+        request.put("creates", batchRequest.get("todos"));
+        return applyBatch(request, principal);
+    }
+    
+    /**
+     * Todoの一括作成・更新・削除
+     * {"creates": [...], "updates": [{"id": 1, "completed": true}, ...], "deletes": [2, 3]} を
+     * まとめて検証し、1トランザクションで実行する。1件でも誤りがあれば何も変更しない
+     */
+    @PatchMapping("/batch")
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<Map<String, Object>> applyBatch(
+            @RequestBody Map<String, Object> batchRequest,
+            @AuthenticationPrincipal CustomUserDetails principal) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            Long userId = principal.getUserId();
+            
+            List<Map<String, Object>> createRequests = (List<Map<String, Object>>) batchRequest.getOrDefault("creates", List.of());
+            List<Map<String, Object>> updateRequests = (List<Map<String, Object>>) batchRequest.getOrDefault("updates", List.of());
+            List<Number> deleteRequests = (List<Number>) batchRequest.getOrDefault("deletes", List.of());
+            
+            List<String> errors = new ArrayList<>();
+            
+            List<TodoDraft> creates = new ArrayList<>(createRequests.size());
+            for (int i = 0; i < createRequests.size(); i++) {
+                Map<String, Object> createRequest = createRequests.get(i);
+                String dueDateStr = (String) createRequest.get("dueDate");
+                try {
+                    LocalDate dueDate = dueDateStr != null && !dueDateStr.trim().isEmpty()
+                        ? LocalDate.parse(dueDateStr) : null;
+                    creates.add(new TodoDraft((String) createRequest.get("text"), dueDate));
+                } catch (DateTimeParseException e) {
+                    errors.add("creates[" + i + "]: 無効な日付形式です");
+                }
             }
             
-            Todo todo = todoOpt.get();
-            User user = userOpt.get();
+            Map<Long, TodoUpdate> updates = new LinkedHashMap<>();
+            for (int i = 0; i < updateRequests.size(); i++) {
+                Map<String, Object> updateRequest = updateRequests.get(i);
+                Number id = (Number) updateRequest.get("id");
+                if (id == null) {
+                    errors.add("updates[" + i + "]: idは必須です");
+                    continue;
+                }
+                try {
+                    if (updates.put(id.longValue(), toTodoUpdate(updateRequest)) != null) {
+                        errors.add("updates[" + i + "]: 同じTodoが複数回指定されています");
+                    }
+                } catch (DateTimeParseException e) {
+                    errors.add("updates[" + i + "]: 無効な日付形式です");
+                } catch (IllegalArgumentException e) {
+                    errors.add("updates[" + i + "]: " + e.getMessage());
+                }
+            }
             
-            if (!todoService.isTodoOwnedByUser(todo, user)) {
-                response.put("success", false);
-                response.put("message", "このTodoを削除する権限がありません");
-                return ResponseEntity.status(403).body(response);
+            List<Long> deletes = deleteRequests.stream().map(Number::longValue).toList();
+            
+            if (!errors.isEmpty()) {
+                throw new TodoBatchException(errors);
             }
             
-            todoService.deleteTodo(todo);
+            TodoBatchResult result = todoService.applyBatch(userId, new TodoBatch(creates, updates, deletes));
             
             response.put("success", true);
+            response.put("created", result.created());
+            response.put("updated", result.updated());
+            response.put("deleted", result.deleted());
+        } catch (TodoBatchException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("errors", e.getErrors());
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
         } catch (Exception e) {
             response.put("success", false);
-            response.put("message", "Todo削除中にエラーが発生しました");
+            response.put("message", "Todo一括処理中にエラーが発生しました");
         }
         
         return ResponseEntity.ok(response);
     }
     
-    private Map<String, Object> convertTodoToMap(Todo todo) {
-        Map<String, Object> todoMap = new HashMap<>();
-        todoMap.put("id", todo.getId());
-        todoMap.put("text", todo.getText());
-        todoMap.put("completed", todo.getCompleted());
-        todoMap.put("createdAt", todo.getCreatedAt().toString());
-        if (todo.getUpdatedAt() != null) {
-            todoMap.put("updatedAt", todo.getUpdatedAt().toString());
+    /**
+     * リクエストに含まれる項目だけを変更対象とする TodoUpdate を組み立てる
+     */
+    private TodoUpdate toTodoUpdate(Map<String, Object> updateRequest) {
+        String text = null;
+        if (updateRequest.containsKey("text")) {
+            text = (String) updateRequest.get("text");
+            if (text == null) {
+                throw new IllegalArgumentException("ToDoの内容は必須です");
+            }
+        }
+        
+        // 期日の更新処理
+        boolean dueDateSet = updateRequest.containsKey("dueDate");
+        LocalDate dueDate = null;
+        if (dueDateSet) {
+            String dueDateStr = (String) updateRequest.get("dueDate");
+            if (dueDateStr != null && !dueDateStr.trim().isEmpty()) {
+                // 日付のみの場合
+                dueDate = LocalDate.parse(dueDateStr);
+            }
+            // nullの場合はdueDateはnullのまま
+        }
+        
+        Boolean completed = null;
+        if (updateRequest.containsKey("completed")) {
+            completed = (Boolean) updateRequest.get("completed");
+        }
+        
+        return new TodoUpdate(text, dueDateSet, dueDate, completed);
+    }
+    
+    /**
+     * 更新・削除の対象行がなかった場合に、存在しないのか(404)所有者が異なるのか(403)を判別する
+     */
+    private ResponseEntity<Map<String, Object>> ownershipFailure(Long id, String forbiddenMessage, Map<String, Object> response) {
+        response.put("success", false);
+        if (!todoService.existsById(id)) {
+            response.put("message", "Todoが見つかりません");
+            return ResponseEntity.status(404).body(response);
         }
-        if (todo.getDueDate() != null) {
-            todoMap.put("dueDate", todo.getDueDate().toString());
+        response.put("message", forbiddenMessage);
+        return ResponseEntity.status(403).body(response);
+    }
+    
+    private Boolean completedFilter(String filter) {
+        if ("completed".equals(filter)) {
+            return true;
+        } else if ("pending".equals(filter)) {
+            return false;
         }
-        return todoMap;
+        return null;
     }
 }
\ No newline at end of file
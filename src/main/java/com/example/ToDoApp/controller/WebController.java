@@ -1,22 +1,76 @@
 package com.example.ToDoApp.controller;
 
+import com.example.ToDoApp.config.PasswordHashingRejectedException;
+import com.example.ToDoApp.dto.RenderedTodoPage;
 import com.example.ToDoApp.entity.User;
+import com.example.ToDoApp.service.CustomUserDetails;
+import com.example.ToDoApp.service.LoginThrottle;
+import com.example.ToDoApp.service.TodoChangeFeed;
+import com.example.ToDoApp.service.TodoFirstPageRenderer;
 import com.example.ToDoApp.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.time.Duration;
+
 @Controller
 public class WebController {
     
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private TodoFirstPageRenderer todoFirstPageRenderer;
+    
+    @Autowired
+    private TodoChangeFeed todoChangeFeed;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private LoginThrottle loginThrottle;
+    
+    @Value("${todoapp.password-hash.retry-after:5s}")
+    private Duration retryAfter;
+    
+    /**
+     * トップページ
+     * Todo一覧の先頭ページと件数を描画済みで返し、画面は /api/todos を待たずに表示する。
+     * 画面の初期化に使う状態 (先頭ページ、変更通知の配信位置、差分取得の時刻) は initialState にJSONで埋め込む。
+     * 描画に失敗した場合は埋め込まずに返し、画面は従来どおり /api/todos から取得する
+     */
     @GetMapping("/")
-    public String index() {
+    public String index(@AuthenticationPrincipal CustomUserDetails principal, Model model) {
+        try {
+            Long userId = principal.getUserId();
+            // 配信位置は一覧を読む前に取る (間に起きた変更は変更通知で重複して届くだけで、取りこぼさない)
+            // 差分取得の時刻は描画結果と一緒にキャッシュした、その一覧を読む前の時刻を使う
+            String feedPosition = todoChangeFeed.position(userId);
+            RenderedTodoPage page = todoFirstPageRenderer.render(userId);
+            
+            ObjectNode state = objectMapper.createObjectNode();
+            state.putRawValue("todos", new RawValue(page.todosJson()));
+            state.put("hasMore", page.hasMore());
+            state.put("feedPosition", feedPosition);
+            state.put("syncedAt", page.syncedAt().toString());
+            model.addAttribute("initialTodos", page);
+            // <script> の中に置くため "<" をエスケープする ("</script>" を含む本文で要素が終わらないように)
+            model.addAttribute("initialState", objectMapper.writeValueAsString(state).replace("<", "\\u003c"));
+        } catch (Exception e) {
+            System.err.println("Todo一覧の描画に失敗しました: " + e.getMessage());
+        }
         return "index";
     }
     
@@ -35,10 +89,13 @@ public class WebController {
             @RequestParam String username,
             @RequestParam String password,
             @RequestParam String confirmPassword,
-            Model model) {
+            Model model,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         
         try {
             if (!password.equals(confirmPassword)) {
+                loginThrottle.recordFailure(request.getRemoteAddr());
                 model.addAttribute("error", "パスワードが一致しません");
                 model.addAttribute("username", username);
                 return "register";
@@ -47,7 +104,16 @@ public class WebController {
             userService.registerUser(username, password);
             return "redirect:/login?registered=true";
             
+        } catch (PasswordHashingRejectedException e) {
+            // ハッシュ計算の待ち行列が満杯: 入力内容を残したまま 503 で返す
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", Long.toString(retryAfter.toSeconds()));
+            model.addAttribute("error", "登録処理が混み合っています。しばらくしてから再度お試しください");
+            model.addAttribute("username", username);
+            return "register";
         } catch (IllegalArgumentException e) {
+            // 既存のユーザー名などの入力エラーはIPアドレスの失敗に数える (ユーザー名の探索を抑える)
+            loginThrottle.recordFailure(request.getRemoteAddr());
             model.addAttribute("error", e.getMessage());
             model.addAttribute("username", username);
             return "register";
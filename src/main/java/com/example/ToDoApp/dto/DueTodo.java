@@ -0,0 +1,10 @@
+package com.example.ToDoApp.dto;
+
+import java.time.LocalDate;
+
+/**
+ * 期限前日通知の対象Todo
+ * 通知メッセージに必要な列だけをユーザー名と合わせて取得する
+ */
+public record DueTodo(Long id, Long userId, String username, String text, LocalDate dueDate) {
+}
@@ -0,0 +1,18 @@
+package com.example.ToDoApp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 画面に埋め込むTodo一覧の先頭ページ (描画済みのHTMLと、画面の初期化に使うJSON)
+ *
+ * @param listHtml  todo-list の中身 (li要素)
+ * @param todosJson 先頭ページのTodoの配列 (GET /api/todos と同じ形式)
+ * @param hasMore   先頭ページより後にTodoがあるか (ある場合、画面は残りを /api/todos から取得する)
+ * @param syncedAt  先頭ページを読んだ時点の差分取得の時刻 (画面が次の updatedSince に渡す)
+ */
+public record RenderedTodoPage(String listHtml, String todosJson, boolean hasMore, LocalDateTime syncedAt, TodoStats stats) {
+
+    public boolean isEmpty() {
+        return stats.total() == 0;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.ToDoApp.dto;
+
+/**
+ * 件数の整合チェック結果
+ * drift は補正した件数のずれ (絶対値) の合計
+ */
+public record StatsReconciliationReport(int usersChecked, int rowsRepaired, int rowsCreated, long drift) {
+}
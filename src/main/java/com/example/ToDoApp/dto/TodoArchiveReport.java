@@ -0,0 +1,8 @@
+package com.example.ToDoApp.dto;
+
+/**
+ * アーカイブの実行結果
+ * hasMore は1回の実行の上限 (todoapp.archive.max-chunks-per-run) に達して対象が残っている場合 true
+ */
+public record TodoArchiveReport(long archived, int chunks, int users, long elapsedMillis, boolean hasMore) {
+}
@@ -0,0 +1,14 @@
+package com.example.ToDoApp.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一括処理の入力 (作成・ID別の更新・削除)
+ */
+public record TodoBatch(List<TodoDraft> creates, Map<Long, TodoUpdate> updates, List<Long> deletes) {
+
+    public int size() {
+        return creates.size() + updates.size() + deletes.size();
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.ToDoApp.dto;
+
+import java.util.List;
+
+/**
+ * 一括処理の結果
+ */
+public record TodoBatchResult(List<TodoView> created, List<TodoView> updated, List<Long> deleted) {
+}
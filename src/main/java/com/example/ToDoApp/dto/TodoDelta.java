@@ -0,0 +1,10 @@
+package com.example.ToDoApp.dto;
+
+import java.util.List;
+
+/**
+ * 指定時刻より後に作成・更新されたTodoと、削除されたTodoのID
+ * full が true の場合は差分を求められなかったため todos は全件 (クライアントは一覧を置き換える)
+ */
+public record TodoDelta(List<TodoView> todos, List<Long> deleted, boolean full) {
+}
@@ -0,0 +1,9 @@
+package com.example.ToDoApp.dto;
+
+import java.time.LocalDate;
+
+/**
+ * 一括作成する1件分のTodo
+ */
+public record TodoDraft(String text, LocalDate dueDate) {
+}
@@ -0,0 +1,10 @@
+package com.example.ToDoApp.dto;
+
+import java.util.List;
+
+/**
+ * 本文検索の結果 (新しい順)
+ * hasMore が true の場合は limit を超えて一致するTodoがある
+ */
+public record TodoSearchResult(List<TodoView> todos, boolean hasMore) {
+}
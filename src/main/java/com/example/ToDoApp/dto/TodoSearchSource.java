@@ -0,0 +1,7 @@
+package com.example.ToDoApp.dto;
+
+/**
+ * 検索インデックスの構築用に読むTodoの本文
+ */
+public record TodoSearchSource(Long id, Long userId, String text) {
+}
@@ -0,0 +1,7 @@
+package com.example.ToDoApp.dto;
+
+/**
+ * ユーザーのTodo件数
+ */
+public record TodoStats(long total, long completed, long pending, long overdue) {
+}
@@ -0,0 +1,10 @@
+package com.example.ToDoApp.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Todoの部分更新内容
+ * text / completed は null の場合は変更しない。dueDate は dueDateSet が true の場合のみ反映し、null なら期日をクリアする
+ */
+public record TodoUpdate(String text, boolean dueDateSet, LocalDate dueDate, Boolean completed) {
+}
@@ -0,0 +1,30 @@
+package com.example.ToDoApp.dto;
+
+import com.example.ToDoApp.entity.Todo;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Todoのレスポンス用プロジェクション
+ * リポジトリからコンストラクタ式で直接取得するため、エンティティの管理やダーティチェックが発生しない
+ */
+@JsonSerialize(using = TodoViewSerializer.class)
+public record TodoView(
+        Long id,
+        String text,
+        Boolean completed,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        LocalDate dueDate) {
+
+    public static TodoView from(Todo todo) {
+        return new TodoView(
+            todo.getId(),
+            todo.getText(),
+            todo.getCompleted(),
+            todo.getCreatedAt(),
+            todo.getUpdatedAt(),
+            todo.getDueDate());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.ToDoApp.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * TodoView用のJSONシリアライザ
+ * フィールド名は事前にエンコード済みの SerializedString を使い、
+ * 日時はスレッドごとのバッファに直接書き込むことで1行あたりのオブジェクト生成を抑える
+ * 出力形式は LocalDateTime#toString / LocalDate#toString と同じ
+ */
+public class TodoViewSerializer extends StdSerializer<TodoView> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString TEXT = new SerializedString("text");
+    private static final SerializedString COMPLETED = new SerializedString("completed");
+    private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializedString UPDATED_AT = new SerializedString("updatedAt");
+    private static final SerializedString DUE_DATE = new SerializedString("dueDate");
+
+    // yyyy-MM-ddTHH:mm:ss.nnnnnnnnn が収まる長さ
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[29]);
+
+    public TodoViewSerializer() {
+        super(TodoView.class);
+    }
+
+    @Override
+    public void serialize(TodoView todo, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        writeTodo(todo, generator);
+    }
+
+    public static void writeTodo(TodoView todo, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeNumber(todo.id());
+        generator.writeFieldName(TEXT);
+        generator.writeString(todo.text());
+        generator.writeFieldName(COMPLETED);
+        generator.writeBoolean(Boolean.TRUE.equals(todo.completed()));
+        generator.writeFieldName(CREATED_AT);
+        writeDateTime(todo.createdAt(), generator);
+        if (todo.updatedAt() != null) {
+            generator.writeFieldName(UPDATED_AT);
+            writeDateTime(todo.updatedAt(), generator);
+        }
+        if (todo.dueDate() != null) {
+            generator.writeFieldName(DUE_DATE);
+            writeDate(todo.dueDate(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeDateTime(LocalDateTime value, JsonGenerator generator) throws IOException {
+        if (value.getYear() < 0 || value.getYear() > 9999) {
+            generator.writeString(value.toString());
+            return;
+        }
+        char[] buffer = BUFFER.get();
+        int pos = putDate(buffer, value.getYear(), value.getMonthValue(), value.getDayOfMonth());
+        buffer[pos++] = 'T';
+        pos = put2(buffer, pos, value.getHour());
+        buffer[pos++] = ':';
+        pos = put2(buffer, pos, value.getMinute());
+        int second = value.getSecond();
+        int nano = value.getNano();
+        if (second > 0 || nano > 0) {
+            buffer[pos++] = ':';
+            pos = put2(buffer, pos, second);
+            if (nano > 0) {
+                buffer[pos++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    pos = putDigits(buffer, pos, nano / 1_000_000, 3);
+                } else if (nano % 1_000 == 0) {
+                    pos = putDigits(buffer, pos, nano / 1_000, 6);
+                } else {
+                    pos = putDigits(buffer, pos, nano, 9);
+                }
+            }
+        }
+        generator.writeString(buffer, 0, pos);
+    }
+
+    private static void writeDate(LocalDate value, JsonGenerator generator) throws IOException {
+        if (value.getYear() < 0 || value.getYear() > 9999) {
+            generator.writeString(value.toString());
+            return;
+        }
+        char[] buffer = BUFFER.get();
+        int pos = putDate(buffer, value.getYear(), value.getMonthValue(), value.getDayOfMonth());
+        generator.writeString(buffer, 0, pos);
+    }
+
+    private static int putDate(char[] buffer, int year, int month, int day) {
+        int pos = putDigits(buffer, 0, year, 4);
+        buffer[pos++] = '-';
+        pos = put2(buffer, pos, month);
+        buffer[pos++] = '-';
+        return put2(buffer, pos, day);
+    }
+
+    private static int put2(char[] buffer, int pos, int value) {
+        buffer[pos] = (char) ('0' + value / 10);
+        buffer[pos + 1] = (char) ('0' + value % 10);
+        return pos + 2;
+    }
+
+    private static int putDigits(char[] buffer, int pos, int value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            buffer[pos + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
+}
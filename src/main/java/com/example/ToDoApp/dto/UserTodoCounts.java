@@ -0,0 +1,11 @@
+package com.example.ToDoApp.dto;
+
+/**
+ * todosテーブル (と todos_archive) から集計したユーザーごとの実件数
+ */
+public record UserTodoCounts(Long userId, Long total, Long completed, Long overdue) {
+
+    public UserTodoCounts plus(UserTodoCounts other) {
+        return new UserTodoCounts(userId, total + other.total(), completed + other.completed(), overdue + other.overdue());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.ToDoApp.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * アーカイブしたTodo (todos_archive)
+ * 完了してから一定期間が過ぎたTodoを TodoArchiver が todos から移す。列と主キーは Todo と同じ
+ */
+@Entity
+@Table(name = "todos_archive")
+public class ArchivedTodo implements Persistable<Long> {
+    
+    // 主キーは移動元のTodoのID (採番しない)
+    @Id
+    private Long id;
+    
+    @Column(nullable = false)
+    private String text;
+    
+    @Column(nullable = false)
+    private Boolean completed;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "due_date")
+    private LocalDate dueDate;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+    
+    // IDを指定して作成した行を save で SELECT せずに INSERT するための印
+    @Transient
+    private boolean isNew = true;
+    
+    public ArchivedTodo() {
+    }
+    
+    public ArchivedTodo(Todo todo, LocalDateTime archivedAt) {
+        this.id = todo.getId();
+        this.text = todo.getText();
+        this.completed = todo.getCompleted();
+        this.createdAt = todo.getCreatedAt();
+        this.updatedAt = todo.getUpdatedAt();
+        this.dueDate = todo.getDueDate();
+        this.user = todo.getUser();
+        this.archivedAt = archivedAt;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+    
+    @Override
+    public Long getId() {
+        return id;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    // Getters
+    public String getText() {
+        return text;
+    }
+    
+    public Boolean getCompleted() {
+        return completed;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+    
+    public User getUser() {
+        return user;
+    }
+    
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+}
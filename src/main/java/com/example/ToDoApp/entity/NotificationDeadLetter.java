@@ -0,0 +1,78 @@
+package com.example.ToDoApp.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 送信を諦めたSlack通知 (notification_dead_letters)
+ * NotificationDispatcher がデッドレターにしたものを NotificationDeadLetterStore が保存する
+ */
+@Entity
+@Table(name = "notification_dead_letters")
+public class NotificationDeadLetter {
+    
+    // 書き込みはまれなため、採番テーブルではなく AUTO_INCREMENT を使う
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, length = 1024)
+    private String destination;
+    
+    @Column(nullable = false, length = 65535)
+    private String text;
+    
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount;
+    
+    @Column(nullable = false)
+    private Integer attempts;
+    
+    @Column(nullable = false, length = 1024)
+    private String reason;
+    
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+    
+    public NotificationDeadLetter() {
+    }
+    
+    public NotificationDeadLetter(String destination, String text, Integer messageCount, Integer attempts,
+                                  String reason, LocalDateTime failedAt) {
+        this.destination = destination;
+        this.text = text;
+        this.messageCount = messageCount;
+        this.attempts = attempts;
+        this.reason = reason;
+        this.failedAt = failedAt;
+    }
+    
+    // Getters
+    public Long getId() {
+        return id;
+    }
+    
+    public String getDestination() {
+        return destination;
+    }
+    
+    public String getText() {
+        return text;
+    }
+    
+    public Integer getMessageCount() {
+        return messageCount;
+    }
+    
+    public Integer getAttempts() {
+        return attempts;
+    }
+    
+    public String getReason() {
+        return reason;
+    }
+    
+    public LocalDateTime getFailedAt() {
+        return failedAt;
+    }
+}
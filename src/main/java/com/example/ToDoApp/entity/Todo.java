@@ -10,8 +10,12 @@ import java.time.LocalDate;
 @Table(name = "todos")
 public class Todo {
     
+    // IDENTITYではJDBCバッチINSERTが無効になるため、採番テーブルからまとめて払い出す
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "todo_id")
+    @TableGenerator(name = "todo_id", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "todos", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "ToDoの内容は必須です")
@@ -46,6 +50,16 @@ public class Todo {
         this.user = user;
     }
     
+    /**
+     * 作成時も updatedAt を入れる (差分取得は updated_at だけで判定する)
+     */
+    @PrePersist
+    public void prePersist() {
+        if (this.updatedAt == null) {
+            this.updatedAt = this.createdAt;
+        }
+    }
+    
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -0,0 +1,67 @@
+package com.example.ToDoApp.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDateTime;
+
+/**
+ * 削除したTodoの記録
+ * updatedSince を指定した一覧取得で、前回の取得以降に削除されたTodoのIDを返すために使う
+ */
+@Entity
+@Table(name = "todo_tombstones")
+public class TodoTombstone implements Persistable<Long> {
+    
+    // 主キーは削除したTodoのID (採番しない)
+    @Id
+    @Column(name = "todo_id")
+    private Long todoId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+    
+    // IDを指定して作成した記録を save で SELECT せずに INSERT するための印
+    @Transient
+    private boolean isNew = true;
+    
+    public TodoTombstone() {
+    }
+    
+    public TodoTombstone(Long todoId, Long userId, LocalDateTime deletedAt) {
+        this.todoId = todoId;
+        this.userId = userId;
+        this.deletedAt = deletedAt;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+    
+    @Override
+    public Long getId() {
+        return todoId;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    // Getters
+    public Long getTodoId() {
+        return todoId;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+}
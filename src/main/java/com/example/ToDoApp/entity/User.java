@@ -11,8 +11,12 @@ import java.util.List;
 @Table(name = "users")
 public class User {
     
+    // IDENTITYではJDBCバッチINSERTが無効になるため、採番テーブルからまとめて払い出す
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_id")
+    @TableGenerator(name = "user_id", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "users", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "ユーザー名は必須です")
@@ -0,0 +1,94 @@
+package com.example.ToDoApp.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import java.time.LocalDate;
+
+/**
+ * ユーザーごとのTodo件数
+ * TodoService の作成・更新・削除で差分更新し、COUNTクエリを使わずに件数を返す
+ * エンティティを変更して保存するときは変更した列だけを更新し、同時に加算された件数を古い値で上書きしない
+ */
+@Entity
+@DynamicUpdate
+@Table(name = "user_todo_stats")
+public class UserTodoStats {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+    
+    @Column(name = "completed_count", nullable = false)
+    private long completedCount;
+    
+    // overdueDate 時点での期限切れ件数 (日付が変わったら再集計する)
+    @Column(name = "overdue_count", nullable = false)
+    private long overdueCount;
+    
+    @Column(name = "overdue_date")
+    private LocalDate overdueDate;
+    
+    // 一覧のバージョン (ETag)。applyDelta のUPDATE文でだけ増やし、
+    // 件数の補正などでエンティティを保存したときに古い値で上書きしないよう更新対象から外す
+    @Column(name = "version", nullable = false, updatable = false)
+    private long version;
+    
+    public UserTodoStats() {
+    }
+    
+    public UserTodoStats(Long userId) {
+        this.userId = userId;
+    }
+    
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public long getTotalCount() {
+        return totalCount;
+    }
+    
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+    
+    public long getCompletedCount() {
+        return completedCount;
+    }
+    
+    public void setCompletedCount(long completedCount) {
+        this.completedCount = completedCount;
+    }
+    
+    public long getOverdueCount() {
+        return overdueCount;
+    }
+    
+    public void setOverdueCount(long overdueCount) {
+        this.overdueCount = overdueCount;
+    }
+    
+    public LocalDate getOverdueDate() {
+        return overdueDate;
+    }
+    
+    public void setOverdueDate(LocalDate overdueDate) {
+        this.overdueDate = overdueDate;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
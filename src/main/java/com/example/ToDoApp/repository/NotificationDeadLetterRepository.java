@@ -0,0 +1,25 @@
+package com.example.ToDoApp.repository;
+
+import com.example.ToDoApp.entity.NotificationDeadLetter;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationDeadLetterRepository extends JpaRepository<NotificationDeadLetter, Long> {
+    
+    // 新しい順
+    List<NotificationDeadLetter> findByOrderByIdDesc(Limit limit);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM NotificationDeadLetter d WHERE d.failedAt < :before")
+    int deleteFailedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,77 @@
+package com.example.ToDoApp.repository;
+
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.dto.UserTodoCounts;
+import com.example.ToDoApp.entity.ArchivedTodo;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * アーカイブしたTodo (todos_archive)
+ * 一覧系の並びと条件は TodoRepository の完了フィルタと同じにし、TodoService で todos の結果と併合する
+ * (アーカイブしたTodoはすべて完了済みのため completed では絞らない)
+ */
+@Repository
+public interface TodoArchiveRepository extends JpaRepository<ArchivedTodo, Long> {
+
+    String SELECT_ARCHIVED_VIEW = "SELECT new com.example.ToDoApp.dto.TodoView("
+            + "a.id, a.text, a.completed, a.createdAt, a.updatedAt, a.dueDate) FROM ArchivedTodo a ";
+
+    @Query(SELECT_ARCHIVED_VIEW + "WHERE a.user.id = :userId ORDER BY a.createdAt DESC, a.id DESC")
+    List<TodoView> findViewsByUserId(@Param("userId") Long userId);
+
+    @Query(SELECT_ARCHIVED_VIEW + "WHERE a.user.id = :userId ORDER BY a.createdAt DESC, a.id DESC")
+    List<TodoView> findFirstPageByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query(SELECT_ARCHIVED_VIEW + "WHERE a.user.id = :userId"
+            + " AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id))"
+            + " ORDER BY a.createdAt DESC, a.id DESC")
+    List<TodoView> findPageByUserIdAfter(@Param("userId") Long userId,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id,
+                                         Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_ARCHIVED_VIEW + "WHERE a.user.id = :userId ORDER BY a.createdAt DESC, a.id DESC")
+    Stream<TodoView> streamByUserId(@Param("userId") Long userId);
+
+    // 復元の対象: 所有者が一致するアーカイブ済みのID
+    @Query("SELECT a.id FROM ArchivedTodo a WHERE a.id IN :ids AND a.user.id = :userId")
+    List<Long> findOwnedIdsIn(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+
+    /**
+     * 同じIDのまま todos に戻す
+     * Todo の主キーは採番されるため、エンティティの保存ではなく INSERT ... SELECT で戻す
+     */
+    @Modifying
+    @Query("INSERT INTO Todo (id, text, completed, createdAt, updatedAt, dueDate, user)"
+            + " SELECT a.id, a.text, a.completed, a.createdAt, a.updatedAt, a.dueDate, a.user"
+            + " FROM ArchivedTodo a WHERE a.id IN :ids")
+    int copyToTodos(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM ArchivedTodo a WHERE a.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 件数の集計用 (TodoStatsService)。アーカイブしたTodoは完了済みのため期限切れには数えない
+    String SELECT_ARCHIVED_COUNTS = "SELECT new com.example.ToDoApp.dto.UserTodoCounts(a.user.id, COUNT(a), COUNT(a), 0L)"
+            + " FROM ArchivedTodo a ";
+
+    @Query(SELECT_ARCHIVED_COUNTS + "WHERE a.user.id = :userId GROUP BY a.user.id")
+    Optional<UserTodoCounts> countAllByUserId(@Param("userId") Long userId);
+
+    @Query(SELECT_ARCHIVED_COUNTS + "WHERE a.user.id IN :userIds GROUP BY a.user.id")
+    List<UserTodoCounts> countGroupByUserIdIn(@Param("userIds") Collection<Long> userIds);
+}
@@ -1,27 +1,141 @@
 package com.example.ToDoApp.repository;
 
+import com.example.ToDoApp.dto.DueTodo;
+import com.example.ToDoApp.dto.TodoSearchSource;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.dto.UserTodoCounts;
 import com.example.ToDoApp.entity.Todo;
-import com.example.ToDoApp.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface TodoRepository extends JpaRepository<Todo, Long> {
+public interface TodoRepository extends JpaRepository<Todo, Long>, TodoRepositoryCustom {
     
-    List<Todo> findByUserOrderByCreatedAtDesc(User user);
+    // 一覧系はエンティティではなくTodoViewとして直接取得する
+    String SELECT_TODO_VIEW = "SELECT new com.example.ToDoApp.dto.TodoView("
+            + "t.id, t.text, t.completed, t.createdAt, t.updatedAt, t.dueDate) FROM Todo t ";
     
-    List<Todo> findByUserAndCompletedOrderByCreatedAtDesc(User user, Boolean completed);
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId ORDER BY t.createdAt DESC, t.id DESC")
+    List<TodoView> findViewsByUserId(@Param("userId") Long userId);
     
-    @Query("SELECT COUNT(t) FROM Todo t WHERE t.user = :user")
-    long countByUser(@Param("user") User user);
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId AND t.completed = :completed ORDER BY t.createdAt DESC, t.id DESC")
+    List<TodoView> findViewsByUserIdAndCompleted(@Param("userId") Long userId, @Param("completed") Boolean completed);
     
-    @Query("SELECT COUNT(t) FROM Todo t WHERE t.user = :user AND t.completed = :completed")
-    long countByUserAndCompleted(@Param("user") User user, @Param("completed") Boolean completed);
+    // 差分取得 (updatedSince)。updatedAt は作成時にも入るため updated_at だけを (user_id, updated_at) の索引で読む
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId AND t.updatedAt > :since"
+            + " ORDER BY t.createdAt DESC, t.id DESC")
+    List<TodoView> findViewsChangedSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
     
-    @Query("SELECT t FROM Todo t JOIN FETCH t.user WHERE t.dueDate = :dueDate AND t.completed = false")
-    List<Todo> findByDueDateAndCompletedFalse(@Param("dueDate") LocalDate dueDate);
+    // キーセットページング: 先頭ページ
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId ORDER BY t.createdAt DESC, t.id DESC")
+    List<TodoView> findFirstPageByUserId(@Param("userId") Long userId, Limit limit);
+    
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId AND t.completed = :completed ORDER BY t.createdAt DESC, t.id DESC")
+    List<TodoView> findFirstPageByUserIdAndCompleted(@Param("userId") Long userId, @Param("completed") Boolean completed, Limit limit);
+    
+    // キーセットページング: カーソル (createdAt, id) より後ろのページ
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId"
+            + " AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id))"
+            + " ORDER BY t.createdAt DESC, t.id DESC")
+    List<TodoView> findPageByUserIdAfter(@Param("userId") Long userId,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id,
+                                         Limit limit);
+    
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId AND t.completed = :completed"
+            + " AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id))"
+            + " ORDER BY t.createdAt DESC, t.id DESC")
+    List<TodoView> findPageByUserIdAndCompletedAfter(@Param("userId") Long userId,
+                                                     @Param("completed") Boolean completed,
+                                                     @Param("createdAt") LocalDateTime createdAt,
+                                                     @Param("id") Long id,
+                                                     Limit limit);
+    
+    // ストリーミング取得 (トランザクション内で消費すること)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId ORDER BY t.createdAt DESC, t.id DESC")
+    Stream<TodoView> streamByUserId(@Param("userId") Long userId);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_TODO_VIEW + "WHERE t.user.id = :userId AND t.completed = :completed ORDER BY t.createdAt DESC, t.id DESC")
+    Stream<TodoView> streamByUserIdAndCompleted(@Param("userId") Long userId, @Param("completed") Boolean completed);
+    
+    // 検索結果の取得用 (IDは検索インデックスから得る)
+    @Query(SELECT_TODO_VIEW + "WHERE t.id IN :ids AND t.user.id = :userId")
+    List<TodoView> findViewsByIdIn(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+    
+    // 検索インデックスの構築用: 主キーのキーセットで全ユーザーのTodoを少しずつ読む
+    @Query("SELECT new com.example.ToDoApp.dto.TodoSearchSource(t.id, t.user.id, t.text) FROM Todo t"
+            + " WHERE t.id > :id ORDER BY t.id")
+    List<TodoSearchSource> findSearchSourcesAfter(@Param("id") Long id, Limit limit);
+    
+    // 更新・削除前の内容 (件数の差分用)
+    @Query(SELECT_TODO_VIEW + "WHERE t.id = :id AND t.user.id = :userId")
+    Optional<TodoView> findViewByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+    
+    // 所有者が一致する場合のみ削除する (0 の場合はTodoが存在しないか所有者が異なる)
+    @Modifying
+    @Query("DELETE FROM Todo t WHERE t.id = :id AND t.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+    
+    // 一括処理用: 所有者が一致するTodoのみを取得する
+    @Query("SELECT t FROM Todo t WHERE t.id IN :ids AND t.user.id = :userId")
+    List<Todo> findOwnedByIdIn(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+    
+    // アーカイブ対象 (TodoArchiver): 完了後 cutoff より前に更新されていない古い順
+    // 移動した行は消えるため、毎回先頭から読めばよい (idx_todos_completed_updated)
+    // 移動中に同じTodoが更新されないよう行ロックを取る
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Todo t WHERE t.completed = true AND t.updatedAt < :cutoff ORDER BY t.updatedAt, t.id")
+    List<Todo> findArchivable(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+    
+    @Query("SELECT COUNT(t) FROM Todo t WHERE t.user.id = :userId AND t.completed = false AND t.dueDate < :today")
+    long countOverdueByUserId(@Param("userId") Long userId, @Param("today") LocalDate today);
+    
+    // 件数の整合チェック用の集計
+    String SELECT_USER_TODO_COUNTS = "SELECT new com.example.ToDoApp.dto.UserTodoCounts(t.user.id, COUNT(t),"
+            + " SUM(CASE WHEN t.completed = true THEN 1 ELSE 0 END),"
+            + " SUM(CASE WHEN t.completed = false AND t.dueDate < :today THEN 1 ELSE 0 END)) FROM Todo t ";
+    
+    @Query(SELECT_USER_TODO_COUNTS + "WHERE t.user.id = :userId GROUP BY t.user.id")
+    Optional<UserTodoCounts> countAllByUserId(@Param("userId") Long userId, @Param("today") LocalDate today);
+    
+    // 整合チェック用: ユーザーIDのチャンクごとに集計する
+    @Query(SELECT_USER_TODO_COUNTS + "WHERE t.user.id IN :userIds GROUP BY t.user.id")
+    List<UserTodoCounts> countGroupByUserIdIn(@Param("userIds") Collection<Long> userIds, @Param("today") LocalDate today);
+    
+    // 期限前日通知用: (userId, id) のキーセットで少しずつ読み、ユーザーIDの剰余で担当分だけに絞る
+    // 条件と並び順は todos.user_id を使い、idx_todos_due_completed_user だけで絞り込めるようにする
+    String SELECT_DUE_TODO = "SELECT new com.example.ToDoApp.dto.DueTodo(t.id, t.user.id, u.username, t.text, t.dueDate)"
+            + " FROM Todo t JOIN t.user u WHERE t.dueDate = :dueDate AND t.completed = false"
+            + " AND MOD(t.user.id, :shardCount) = :shardIndex ";
+    
+    @Query(SELECT_DUE_TODO + "ORDER BY t.user.id, t.id")
+    List<DueTodo> findFirstDueChunk(@Param("dueDate") LocalDate dueDate,
+                                    @Param("shardCount") int shardCount,
+                                    @Param("shardIndex") int shardIndex,
+                                    Limit limit);
+    
+    @Query(SELECT_DUE_TODO + "AND (t.user.id > :userId OR (t.user.id = :userId AND t.id > :id)) ORDER BY t.user.id, t.id")
+    List<DueTodo> findDueChunkAfter(@Param("dueDate") LocalDate dueDate,
+                                    @Param("shardCount") int shardCount,
+                                    @Param("shardIndex") int shardIndex,
+                                    @Param("userId") Long userId,
+                                    @Param("id") Long id,
+                                    Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.ToDoApp.repository;
+
+import com.example.ToDoApp.dto.TodoUpdate;
+import java.time.LocalDateTime;
+
+public interface TodoRepositoryCustom {
+    
+    /**
+     * 所有者が一致する場合のみ、変更のあった項目を1回のUPDATE文で更新する
+     * @return 更新された行数 (0 の場合はTodoが存在しないか所有者が異なる)
+     */
+    int updateOwnedTodo(Long id, Long userId, TodoUpdate update, LocalDateTime updatedAt);
+}
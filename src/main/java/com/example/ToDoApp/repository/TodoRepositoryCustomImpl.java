@@ -0,0 +1,42 @@
+package com.example.ToDoApp.repository;
+
+import com.example.ToDoApp.dto.TodoUpdate;
+import com.example.ToDoApp.entity.Todo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public class TodoRepositoryCustomImpl implements TodoRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public int updateOwnedTodo(Long id, Long userId, TodoUpdate update, LocalDateTime updatedAt) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Todo> criteria = cb.createCriteriaUpdate(Todo.class);
+        Root<Todo> todo = criteria.from(Todo.class);
+        
+        if (update.text() != null) {
+            criteria.set(todo.<String>get("text"), update.text());
+        }
+        if (update.dueDateSet()) {
+            criteria.set(todo.<LocalDate>get("dueDate"), update.dueDate());
+        }
+        if (update.completed() != null) {
+            criteria.set(todo.<Boolean>get("completed"), update.completed());
+        }
+        // 一括更新では @PreUpdate が呼ばれないため明示的に設定する
+        criteria.set(todo.<LocalDateTime>get("updatedAt"), updatedAt);
+        
+        criteria.where(
+            cb.equal(todo.get("id"), id),
+            cb.equal(todo.get("user").get("id"), userId));
+        
+        return entityManager.createQuery(criteria).executeUpdate();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.ToDoApp.repository;
+
+import com.example.ToDoApp.entity.TodoTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TodoTombstoneRepository extends JpaRepository<TodoTombstone, Long> {
+    
+    @Query("SELECT t.todoId FROM TodoTombstone t WHERE t.userId = :userId AND t.deletedAt > :since")
+    List<Long> findDeletedIdsSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    @Modifying
+    @Query("DELETE FROM TodoTombstone t WHERE t.deletedAt < :before")
+    int deleteDeletedBefore(@Param("before") LocalDateTime before);
+}
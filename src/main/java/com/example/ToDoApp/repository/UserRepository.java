@@ -1,14 +1,28 @@
 package com.example.ToDoApp.repository;
 
 import com.example.ToDoApp.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     
+    /**
+     * ログイン時の検索。登録直後・ハッシュの再計算直後でも最新の行を読むよう、読み取りレプリカを使う構成でも
+     * プライマリから読む (読み取り専用にしない)
+     */
+    @Transactional
     Optional<User> findByUsername(String username);
     
     boolean existsByUsername(String username);
+    
+    // 整合チェック用: IDのキーセットで少しずつ読む
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.example.ToDoApp.repository;
+
+import com.example.ToDoApp.entity.UserTodoStats;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserTodoStatsRepository extends JpaRepository<UserTodoStats, Long> {
+    
+    // 件数の差分を加算し、一覧のバージョンを1増やす (0 の場合は集計行がまだない)
+    @Modifying
+    @Query("UPDATE UserTodoStats s SET s.totalCount = s.totalCount + :total,"
+            + " s.completedCount = s.completedCount + :completed,"
+            + " s.overdueCount = s.overdueCount + :overdue,"
+            + " s.version = s.version + 1"
+            + " WHERE s.userId = :userId")
+    int applyDelta(@Param("userId") Long userId,
+                   @Param("total") long total,
+                   @Param("completed") long completed,
+                   @Param("overdue") long overdue);
+    
+    /**
+     * 集計行がなければ実件数 (total, completed, overdue) とバージョン1で作成し、同時に別のトランザクションが
+     * 作成済みだった場合は差分 (deltaTotal, ...) を加算する (1文のため、最初の変更が同時に来ても一意制約違反にならない)
+     * 対象のテーブルを指定し、実行前に Hibernate が関係のないエンティティまでフラッシュしないようにする
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_todo_stats"))
+    @Query(value = "INSERT INTO user_todo_stats (user_id, total_count, completed_count, overdue_count, overdue_date, version)"
+            + " VALUES (:userId, :total, :completed, :overdue, :today, 1)"
+            + " ON DUPLICATE KEY UPDATE total_count = total_count + :deltaTotal,"
+            + " completed_count = completed_count + :deltaCompleted,"
+            + " overdue_count = overdue_count + :deltaOverdue,"
+            + " version = version + 1", nativeQuery = true)
+    int insertOrApplyDelta(@Param("userId") Long userId,
+                           @Param("total") long total,
+                           @Param("completed") long completed,
+                           @Param("overdue") long overdue,
+                           @Param("today") LocalDate today,
+                           @Param("deltaTotal") long deltaTotal,
+                           @Param("deltaCompleted") long deltaCompleted,
+                           @Param("deltaOverdue") long deltaOverdue);
+    
+    /**
+     * 集計行がなければ実件数で作成する (既にあれば何もしない。バージョンは 0 のまま)
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_todo_stats"))
+    @Query(value = "INSERT INTO user_todo_stats (user_id, total_count, completed_count, overdue_count, overdue_date, version)"
+            + " VALUES (:userId, :total, :completed, :overdue, :today, 0)"
+            + " ON DUPLICATE KEY UPDATE version = version", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId,
+                       @Param("total") long total,
+                       @Param("completed") long completed,
+                       @Param("overdue") long overdue,
+                       @Param("today") LocalDate today);
+    
+    // 整合チェック用: 数え直す間に差分の加算が割り込まないよう、チャンク分の集計行をロックして読む
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserTodoStats s WHERE s.userId IN :userIds ORDER BY s.userId")
+    List<UserTodoStats> findAllByUserIdInForUpdate(@Param("userIds") Collection<Long> userIds);
+    
+    @Query("SELECT s.version FROM UserTodoStats s WHERE s.userId = :userId")
+    Optional<Long> findVersionByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,34 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * ユーザーIDを保持する認証済みプリンシパル
+ * コントローラーはここからユーザーIDを取得し、リクエストごとのusers検索を行わない
+ */
+public class CustomUserDetails extends org.springframework.security.core.userdetails.User {
+
+    private final Long userId;
+
+    public CustomUserDetails(User user) {
+        super(user.getUsername(), user.getPassword(), new ArrayList<>());
+        this.userId = user.getId();
+    }
+
+    /**
+     * セッションから復元する場合 (パスワードは保持しない)
+     */
+    public CustomUserDetails(Long userId, String username, Collection<? extends GrantedAuthority> authorities) {
+        super(username, "", authorities);
+        this.userId = userId;
+        eraseCredentials();
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
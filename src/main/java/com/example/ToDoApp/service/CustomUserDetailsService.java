@@ -4,27 +4,39 @@ import com.example.ToDoApp.entity.User;
 import com.example.ToDoApp.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-
+/**
+ * ログイン時のユーザー取得
+ * UserDetailsPasswordService も実装しているため、ログイン成功時にハッシュの強度が設定より低ければ
+ * Spring Security が新しい強度で計算し直したハッシュを updatePassword に渡す
+ */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserService userService;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // ログイン時だけ呼ばれる (以降のリクエストはセッションのプリンシパルが持つユーザーIDを使い、usersを読まない)
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("ユーザーが見つかりません: " + username));
 
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .authorities(new ArrayList<>())
-                .build();
+        return new CustomUserDetails(user);
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Long userId = ((CustomUserDetails) user).getUserId();
+        return userService.updatePasswordHash(userId, newPassword)
+                .<UserDetails>map(CustomUserDetails::new)
+                .orElse(user);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,195 @@
+package com.example.ToDoApp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ログイン・登録の失敗回数による制限
+ *
+ * - IPアドレスごと: 時間枠 (ip-window) 内の失敗 (ログインの認証失敗・登録の入力エラー) が max-failures-per-ip を超えたら断る
+ *   成功した試行は数えないため、同じIPアドレスから多数のユーザーがログインする環境 (NAT・プロキシ) でも断らない
+ * - ユーザー名ごと: free-failures-per-username 回を超えたログイン失敗のたびに、次の試行まで待つ時間を
+ *   failure-delay から2倍ずつ (max-failure-delay まで) 延ばす。締め出しはしないため、第三者が失敗を重ねても
+ *   本人は待ち時間の後にログインできる。最後の失敗から username-window が過ぎるか、ログインに成功すると0に戻す
+ *
+ * 判定はBCryptの計算より前に行うため、断る場合のコストはキャッシュの参照だけで済む
+ */
+@Service
+public class LoginThrottle implements MeterBinder {
+
+    /**
+     * 時間枠内の回数 (枠は最初の失敗から始まり、キャッシュの有効期限で終わる)
+     */
+    private record Window(long startNanos, AtomicInteger count) {
+    }
+
+    /**
+     * ユーザー名ごとの連続した失敗 (最後の失敗の時刻から待ち時間を測る)
+     */
+    private record Failures(int count, long lastFailureNanos) {
+    }
+
+    @Value("${todoapp.login-throttle.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${todoapp.login-throttle.max-failures-per-ip:60}")
+    private int maxFailuresPerIp = 60;
+
+    @Value("${todoapp.login-throttle.ip-window:1m}")
+    private Duration ipWindow = Duration.ofMinutes(1);
+
+    @Value("${todoapp.login-throttle.free-failures-per-username:3}")
+    private int freeFailuresPerUsername = 3;
+
+    @Value("${todoapp.login-throttle.failure-delay:1s}")
+    private Duration failureDelay = Duration.ofSeconds(1);
+
+    @Value("${todoapp.login-throttle.max-failure-delay:1m}")
+    private Duration maxFailureDelay = Duration.ofMinutes(1);
+
+    @Value("${todoapp.login-throttle.username-window:15m}")
+    private Duration usernameWindow = Duration.ofMinutes(15);
+
+    private Cache<String, Window> failuresByIp;
+    private Cache<String, Failures> failuresByUsername;
+
+    private Counter ipRejections;
+    private Counter usernameRejections;
+
+    @PostConstruct
+    public void init() {
+        failuresByIp = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(ipWindow)
+            .build();
+        // 失敗のたびに置き換えるため、最後の失敗から username-window で消える
+        failuresByUsername = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(usernameWindow)
+            .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ipRejections = rejections(registry, "ip");
+        usernameRejections = rejections(registry, "username");
+    }
+
+    /**
+     * ログイン・登録を受け付けてよいか判定する (試行そのものは数えない)
+     *
+     * @param username ログインの場合のユーザー名 (登録の場合は null)
+     * @return 断る場合は再試行までの時間、受け付ける場合は Duration.ZERO
+     */
+    public Duration tryAcquire(String ip, String username) {
+        if (!enabled) {
+            return Duration.ZERO;
+        }
+
+        Window ipFailures = failuresByIp.getIfPresent(ip);
+        if (ipFailures != null && ipFailures.count().get() >= maxFailuresPerIp) {
+            count(ipRejections);
+            return atLeastOneSecond(ipWindow.minus(Duration.ofNanos(System.nanoTime() - ipFailures.startNanos())));
+        }
+
+        if (username != null) {
+            Duration wait = usernameWait(username.trim());
+            if (wait.isPositive()) {
+                count(usernameRejections);
+                return atLeastOneSecond(wait);
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    /**
+     * IPアドレスの失敗を数える (ログインの認証失敗は onFailure から、登録の入力エラーは WebController から呼ぶ)
+     */
+    public void recordFailure(String ip) {
+        if (enabled && ip != null) {
+            failuresByIp.get(ip, key -> new Window(System.nanoTime(), new AtomicInteger())).count().incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onFailure(AuthenticationFailureBadCredentialsEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.getAuthentication().getDetails() instanceof WebAuthenticationDetails details) {
+            recordFailure(details.getRemoteAddress());
+        }
+        String username = event.getAuthentication().getName();
+        if (username != null) {
+            failuresByUsername.asMap().compute(username.trim(), (key, previous) ->
+                new Failures(previous == null ? 1 : previous.count() + 1, System.nanoTime()));
+        }
+    }
+
+    @EventListener
+    public void onSuccess(AuthenticationSuccessEvent event) {
+        String username = event.getAuthentication().getName();
+        if (username != null) {
+            failuresByUsername.invalidate(username.trim());
+        }
+    }
+
+    /**
+     * ユーザー名の待ち時間の残り (待ち時間が必要な場合、過ぎた後に通すのは1回だけで、その結果が出るまでの同時の試行は断る)
+     */
+    private Duration usernameWait(String username) {
+        Duration[] wait = {Duration.ZERO};
+        failuresByUsername.asMap().computeIfPresent(username, (key, failures) -> {
+            long now = System.nanoTime();
+            Duration delay = delay(failures.count());
+            if (delay.isZero()) {
+                return failures;
+            }
+            wait[0] = delay.minus(Duration.ofNanos(now - failures.lastFailureNanos()));
+            return wait[0].isPositive() ? failures : new Failures(failures.count(), now);
+        });
+        return wait[0];
+    }
+
+    /**
+     * failures 回失敗した後、次の試行まで待つ時間 (free-failures-per-username 回までは待たない)
+     */
+    private Duration delay(int failures) {
+        int exponent = failures - freeFailuresPerUsername - 1;
+        if (exponent < 0) {
+            return Duration.ZERO;
+        }
+        Duration delay = failureDelay.multipliedBy(1L << Math.min(exponent, 20));
+        return delay.compareTo(maxFailureDelay) > 0 ? maxFailureDelay : delay;
+    }
+
+    private static Duration atLeastOneSecond(Duration remaining) {
+        return remaining.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : remaining;
+    }
+
+    private static void count(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("todoapp.login.throttled")
+            .description("失敗回数の制限で断ったログイン・登録の数")
+            .tag("reason", reason)
+            .register(registry);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.entity.NotificationDeadLetter;
+import com.example.ToDoApp.repository.NotificationDeadLetterRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * NotificationDispatcher のデッドレターを notification_dead_letters テーブルに保存する
+ * 保持期間 (dead-letter-retention) を過ぎた行は毎日消す
+ */
+@Service
+@ConditionalOnProperty(name = "notification.enabled", havingValue = "true", matchIfMissing = false)
+public class NotificationDeadLetterStore implements NotificationDispatcher.DeadLetterStore {
+    
+    @Autowired
+    private NotificationDeadLetterRepository deadLetterRepository;
+    
+    @Value("${notification.dispatcher.dead-letter-retention:30d}")
+    private Duration retention = Duration.ofDays(30);
+    
+    @Override
+    public void save(NotificationDispatcher.DeadLetter deadLetter) {
+        deadLetterRepository.save(new NotificationDeadLetter(
+            deadLetter.destination(),
+            deadLetter.text(),
+            deadLetter.messageCount(),
+            deadLetter.attempts(),
+            deadLetter.reason(),
+            deadLetter.failedAt()));
+    }
+    
+    @Override
+    public List<NotificationDispatcher.DeadLetter> findRecent(int limit) {
+        return deadLetterRepository.findByOrderByIdDesc(Limit.of(limit)).stream()
+            .map(row -> new NotificationDispatcher.DeadLetter(
+                row.getDestination(),
+                row.getText(),
+                row.getMessageCount(),
+                row.getAttempts(),
+                row.getReason(),
+                row.getFailedAt()))
+            .toList();
+    }
+    
+    /**
+     * 保持期間を過ぎたデッドレターを消す
+     */
+    @Scheduled(cron = "${notification.dispatcher.dead-letter-purge-cron:0 50 3 * * *}")
+    public void purge() {
+        int purged = deadLetterRepository.deleteFailedBefore(LocalDateTime.now().minus(retention));
+        System.out.println("通知のデッドレターを整理しました: " + purged + "件");
+    }
+}
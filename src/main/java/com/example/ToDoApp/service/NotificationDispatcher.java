@@ -0,0 +1,445 @@
+package com.example.ToDoApp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slack Webhook への通知を非同期に送信するディスパッチャ
+ * - submit は上限付きキューに積むだけで、呼び出し元 (スケジューラのスレッド) を待たせない
+ * - キューに溜まったメッセージは宛先ごとにまとめて1リクエストで送る
+ * - batchMaxChars を超えるメッセージはキューに積む前に行の区切りで分割し、分割後の1つずつを1件の通知として数える
+ * - 通信エラー・5xx・429 はジッター付き指数バックオフで再送し、諦めたものはデッドレターとして DeadLetterStore に保存する
+ * NotificationConfig でBeanとして作成する
+ * MeterBinder として登録されると、Webhookリクエストごとの応答時間と通知の件数をメトリクスに出力する
+ */
+public class NotificationDispatcher implements AutoCloseable, MeterBinder {
+
+    // まとめて送るときのメッセージ間の区切り
+    private static final String SEPARATOR = "\n\n";
+
+    /**
+     * 動作設定
+     * maxInFlight は再送待ちを含めて同時に抱えるリクエスト数の上限
+     */
+    public record Settings(int queueCapacity,
+                           int batchMaxChars,
+                           int maxInFlight,
+                           int maxAttempts,
+                           Duration initialBackoff,
+                           Duration maxBackoff,
+                           Duration requestTimeout) {
+    }
+
+    public record Stats(long submitted,
+                        long dropped,
+                        long deliveredMessages,
+                        long deliveredRequests,
+                        long retries,
+                        long deadLettered,
+                        int pending) {
+    }
+
+    /**
+     * 送信を諦めた通知
+     */
+    public record DeadLetter(String destination,
+                             String text,
+                             int messageCount,
+                             int attempts,
+                             String reason,
+                             LocalDateTime failedAt) {
+    }
+
+    /**
+     * デッドレターの保存先 (NotificationDeadLetterStore がテーブルに保存する)
+     * save は送信結果を受け取ったスレッドで呼ぶ
+     */
+    public interface DeadLetterStore {
+
+        void save(DeadLetter deadLetter);
+
+        /**
+         * 新しい順に limit 件
+         */
+        List<DeadLetter> findRecent(int limit);
+    }
+
+    private record Message(String destination, String text) {
+    }
+
+    private record Batch(String destination, String text, int messageCount) {
+    }
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Settings settings;
+    private final DeadLetterStore deadLetterStore;
+
+    private final BlockingQueue<Message> queue;
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService retryScheduler;
+    private final Thread worker;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deliveredMessages = new AtomicLong();
+    private final AtomicLong deliveredRequests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    // キューに積まれてから送信完了またはデッドレターになるまでのメッセージ数
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile boolean running = true;
+    private volatile MeterRegistry meterRegistry;
+
+    public NotificationDispatcher(HttpClient httpClient, ObjectMapper objectMapper, Settings settings,
+                                  DeadLetterStore deadLetterStore) {
+        this(httpClient, objectMapper, settings, deadLetterStore, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * threadFactory で送信スレッドと再送スケジューラのスレッドを作る (仮想スレッドを使う場合など)
+     */
+    public NotificationDispatcher(HttpClient httpClient, ObjectMapper objectMapper, Settings settings,
+                                  DeadLetterStore deadLetterStore, ThreadFactory threadFactory) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.settings = settings;
+        this.deadLetterStore = deadLetterStore;
+        this.queue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.inFlight = new Semaphore(settings.maxInFlight());
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = threadFactory.newThread(runnable);
+            thread.setName("notification-retry");
+            return thread;
+        });
+        this.worker = threadFactory.newThread(this::runWorker);
+        this.worker.setName("notification-dispatcher");
+        this.worker.start();
+    }
+
+    /**
+     * 通知を送信キューに追加する
+     * キューが満杯 (分割した場合はすべてが入らない)、または停止中の場合は破棄して false を返す
+     */
+    public boolean submit(String destination, String text) {
+        List<String> parts = split(text);
+        submitted.addAndGet(parts.size());
+        pending.addAndGet(parts.size());
+        int queued = 0;
+        if (running && queue.remainingCapacity() >= parts.size()) {
+            while (queued < parts.size() && queue.offer(new Message(destination, parts.get(queued)))) {
+                queued++;
+            }
+        }
+        if (queued < parts.size()) {
+            pending.addAndGet(queued - parts.size());
+            dropped.addAndGet(parts.size() - queued);
+            System.err.println("通知キューが満杯、または停止中のため通知を破棄しました (宛先: " + destination + ")");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * batchMaxChars 以下に分割する
+     * 後半に改行があればその位置で、なければ文字数で区切る (サロゲートペアは分けない)
+     */
+    private List<String> split(String text) {
+        int max = settings.batchMaxChars();
+        if (text.length() <= max) {
+            return List.of(text);
+        }
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > max) {
+            int newline = text.lastIndexOf('\n', start + max);
+            if (newline > start + max / 2) {
+                parts.add(text.substring(start, newline));
+                start = newline + 1;
+            } else {
+                int end = start + max;
+                if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end--;
+                }
+                parts.add(text.substring(start, end));
+                start = end;
+            }
+        }
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    public Stats getStats() {
+        return new Stats(
+            submitted.get(),
+            dropped.get(),
+            deliveredMessages.get(),
+            deliveredRequests.get(),
+            retries.get(),
+            deadLettered.get(),
+            pending.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("todoapp.notification.messages", submitted, AtomicLong::get)
+            .description("送信キューに追加しようとした通知数")
+            .tag("result", "submitted")
+            .register(registry);
+        FunctionCounter.builder("todoapp.notification.messages", dropped, AtomicLong::get)
+            .tag("result", "dropped")
+            .register(registry);
+        FunctionCounter.builder("todoapp.notification.messages", deliveredMessages, AtomicLong::get)
+            .tag("result", "delivered")
+            .register(registry);
+        FunctionCounter.builder("todoapp.notification.messages", deadLettered, AtomicLong::get)
+            .tag("result", "dead_lettered")
+            .register(registry);
+        FunctionCounter.builder("todoapp.notification.retries", retries, AtomicLong::get)
+            .description("Webhookリクエストの再送回数")
+            .register(registry);
+        Gauge.builder("todoapp.notification.pending", pending, AtomicInteger::get)
+            .description("キュー内と送信中の通知数")
+            .register(registry);
+        this.meterRegistry = registry;
+    }
+
+    /**
+     * 保存済みのデッドレター (新しい順に limit 件)
+     */
+    public List<DeadLetter> getDeadLetters(int limit) {
+        return deadLetterStore.findRecent(limit);
+    }
+
+    /**
+     * キュー内と送信中の通知がすべて片付くまで待つ
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * 新しい通知の受け付けを止め、残りを送り切ってから停止する
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        if (!awaitIdle(settings.requestTimeout().plus(settings.maxBackoff()))) {
+            System.err.println("通知の送信が完了しないまま停止します (未送信: " + pending.get() + "件)");
+        }
+        worker.interrupt();
+        retryScheduler.shutdownNow();
+    }
+
+    private void runWorker() {
+        List<Message> drained = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Message first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                queue.drainTo(drained, settings.queueCapacity());
+
+                for (Batch batch : coalesce(drained)) {
+                    // 送信中・再送待ちが上限に達している間はここで待ち、その間に届いた通知は次回まとめて送る
+                    inFlight.acquire();
+                    send(batch, 1);
+                }
+                drained.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("通知ディスパッチャでエラーが発生しました: " + e.getMessage());
+                drained.clear();
+            }
+        }
+    }
+
+    /**
+     * 宛先ごとにメッセージを連結する
+     * batchMaxChars を超える場合は複数のリクエストに分ける
+     */
+    private List<Batch> coalesce(List<Message> messages) {
+        Map<String, List<Message>> byDestination = new LinkedHashMap<>();
+        for (Message message : messages) {
+            byDestination.computeIfAbsent(message.destination(), key -> new ArrayList<>()).add(message);
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        for (Map.Entry<String, List<Message>> entry : byDestination.entrySet()) {
+            StringBuilder text = new StringBuilder();
+            int count = 0;
+            for (Message message : entry.getValue()) {
+                if (count > 0 && text.length() + SEPARATOR.length() + message.text().length() > settings.batchMaxChars()) {
+                    batches.add(new Batch(entry.getKey(), text.toString(), count));
+                    text.setLength(0);
+                    count = 0;
+                }
+                if (count > 0) {
+                    text.append(SEPARATOR);
+                }
+                text.append(message.text());
+                count++;
+            }
+            batches.add(new Batch(entry.getKey(), text.toString(), count));
+        }
+        return batches;
+    }
+
+    private void send(Batch batch, int attempt) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(batch.destination()))
+                .timeout(settings.requestTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(createPayload(batch.text())))
+                .build();
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            // 宛先URLの設定ミスなどは再送しても直らない
+            deadLetter(batch, attempt, "リクエストを作成できません: " + e.getMessage());
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                recordRequest(startedAt, response, error);
+                if (error == null && response.statusCode() / 100 == 2) {
+                    deliveredRequests.incrementAndGet();
+                    deliveredMessages.addAndGet(batch.messageCount());
+                    pending.addAndGet(-batch.messageCount());
+                    inFlight.release();
+                    return;
+                }
+
+                String reason = error != null ? error.toString() : "HTTP " + response.statusCode();
+                boolean retryable = error != null || response.statusCode() >= 500 || response.statusCode() == 429;
+                if (retryable && attempt < settings.maxAttempts()) {
+                    retries.incrementAndGet();
+                    long delay = backoffMillis(attempt, response);
+                    try {
+                        retryScheduler.schedule(() -> send(batch, attempt + 1), delay, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        deadLetter(batch, attempt, reason + " (停止中のため再送できません)");
+                    }
+                } else {
+                    deadLetter(batch, attempt, reason);
+                }
+            });
+    }
+
+    /**
+     * Webhookリクエスト1回分の応答時間を結果別に記録する (再送は1回ずつ別に数える)
+     */
+    private void recordRequest(long startedAt, HttpResponse<Void> response, Throwable error) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        String outcome;
+        if (error != null) {
+            outcome = "IO_ERROR";
+        } else if (response.statusCode() / 100 == 2) {
+            outcome = "SUCCESS";
+        } else if (response.statusCode() == 429) {
+            outcome = "RATE_LIMITED";
+        } else if (response.statusCode() >= 500) {
+            outcome = "SERVER_ERROR";
+        } else {
+            outcome = "CLIENT_ERROR";
+        }
+        Timer.builder("todoapp.notification.webhook")
+            .description("Slack Webhookへのリクエスト1回の応答時間")
+            .tag("outcome", outcome)
+            .register(registry)
+            .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * attempt 回目の失敗後の待ち時間
+     * 上限付きの指数バックオフの半分を固定、残り半分をランダムにして再送のタイミングを分散させる
+     * 429 で Retry-After が指定されていればそれより短くはしない
+     */
+    private long backoffMillis(int attempt, HttpResponse<Void> response) {
+        long base = settings.initialBackoff().toMillis() << Math.min(attempt - 1, 20);
+        long capped = Math.min(base, settings.maxBackoff().toMillis());
+        long delay = capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+
+        if (response != null) {
+            String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+            if (retryAfter != null) {
+                try {
+                    delay = Math.max(delay, Long.parseLong(retryAfter.trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    // 日付形式の Retry-After は使わない
+                }
+            }
+        }
+        return delay;
+    }
+
+    private void deadLetter(Batch batch, int attempts, String reason) {
+        try {
+            deadLetterStore.save(new DeadLetter(
+                batch.destination(), batch.text(), batch.messageCount(), attempts, reason, LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            // 保存できない場合もログに本文を残し、送信待ちの数は減らす
+            System.err.println("デッドレターを保存できませんでした: " + e.getMessage() + " (本文: " + batch.text() + ")");
+        }
+        deadLettered.addAndGet(batch.messageCount());
+        pending.addAndGet(-batch.messageCount());
+        inFlight.release();
+        System.err.println("Slack通知の送信を断念しました (" + attempts + "回試行, " + batch.messageCount() + "件): " + reason);
+    }
+
+    private String createPayload(String text) throws JsonProcessingException {
+        // Slack Webhook用のペイロード作成
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("text", text);
+        payload.put("username", "TodoBot");
+        payload.put("icon_emoji", ":calendar:");
+        return objectMapper.writeValueAsString(payload);
+    }
+}
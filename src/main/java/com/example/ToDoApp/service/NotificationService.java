@@ -1,18 +1,13 @@
 package com.example.ToDoApp.service;
 
-import com.example.ToDoApp.entity.Todo;
+import com.example.ToDoApp.dto.DueTodo;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.MediaType;
 
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Service
 @ConditionalOnProperty(name = "notification.enabled", havingValue = "true", matchIfMissing = false)
@@ -21,9 +16,16 @@ public class NotificationService {
     @Value("${slack.webhook.url}")
     private String webhookUrl;
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
     
-    public void sendDueTomorrowNotification(List<Todo> dueTomorrowTasks) {
+    private static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofPattern("MM月dd日");
+    
+    /**
+     * 期限前日通知を1チャンク分送信する
+     * チャンクはユーザーID順に並んでいる前提で、ユーザーごとにまとめて1通のメッセージにする
+     */
+    public void sendDueTomorrowNotification(List<DueTodo> dueTomorrowTasks) {
         if (dueTomorrowTasks.isEmpty()) {
             return; // 通知対象がない場合は何もしない
         }
@@ -32,14 +34,18 @@ public class NotificationService {
         sendSlackMessage(message);
     }
     
-    private String createNotificationMessage(List<Todo> tasks) {
-        StringBuilder message = new StringBuilder();
-        message.append("📅 *明日が期限のタスクがあります！*\n\n");
+    String createNotificationMessage(List<DueTodo> tasks) {
+        StringBuilder message = new StringBuilder(64 + tasks.size() * 48);
+        message.append("📅 *明日が期限のタスクがあります！*\n");
         
-        for (Todo task : tasks) {
-            message.append("• ").append(task.getText())
-                   .append(" (ユーザー: ").append(task.getUser().getUsername()).append(")")
-                   .append(" - 期限: ").append(task.getDueDate().format(DateTimeFormatter.ofPattern("MM月dd日")))
+        Long currentUserId = null;
+        for (DueTodo task : tasks) {
+            if (!task.userId().equals(currentUserId)) {
+                currentUserId = task.userId();
+                message.append("\n*").append(task.username()).append("*\n");
+            }
+            message.append("• ").append(task.text())
+                   .append(" - 期限: ").append(DUE_DATE_FORMAT.format(task.dueDate()))
                    .append("\n");
         }
         
@@ -48,27 +54,9 @@ public class NotificationService {
     }
     
     private void sendSlackMessage(String message) {
-        try {
-            // Slack Webhook用のペイロード作成
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("text", message);
-            payload.put("username", "TodoBot");
-            payload.put("icon_emoji", ":calendar:");
-            
-            // HTTPヘッダー設定
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            // HTTPリクエスト作成
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
-            
-            // Slack Webhookに送信
-            restTemplate.postForEntity(webhookUrl, request, String.class);
-            
-            System.out.println("Slack通知を送信しました: " + message);
-            
-        } catch (Exception e) {
-            System.err.println("Slack通知の送信に失敗しました: " + e.getMessage());
+        // 送信は NotificationDispatcher が別スレッドで行う (再送・まとめ送りもそちらで処理)
+        if (notificationDispatcher.submit(webhookUrl, message)) {
+            System.out.println("Slack通知を送信キューに追加しました (" + message.length() + "文字)");
         }
     }
     
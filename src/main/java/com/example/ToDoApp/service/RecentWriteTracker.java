@@ -0,0 +1,51 @@
+package com.example.ToDoApp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+/**
+ * Todoを変更したユーザーの記録 (読み取りレプリカ使用時の read-your-writes 用)
+ *
+ * TodoService の変更のコミット後から read-your-writes-window の間、そのセッションのリクエストの読み取りは
+ * レプリカではなくプライマリから行う (ReplicaRoutingDataSource)。ウィンドウはレプリカの許容遅延 (max-lag) と
+ * 状態確認の間隔の合計より長くする
+ * 最後に変更した時刻はHTTPセッションの属性に置く。セッションは Spring Session (jdbc) で全台が共有するため、
+ * 次のリクエストが別のインスタンスに振り分けられても同じ判定になる
+ */
+@Service
+public class RecentWriteTracker {
+
+    static final String LAST_WRITE_ATTRIBUTE = RecentWriteTracker.class.getName() + ".lastWriteAt";
+
+    @Value("${todoapp.datasource.read-your-writes-window:5s}")
+    private Duration window = Duration.ofSeconds(5);
+
+    /**
+     * 変更したリクエストのセッションに時刻を記録する (リクエスト外の変更・セッションのないリクエストは記録しない)
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes request
+                && request.getRequest().getSession(false) != null) {
+            request.setAttribute(LAST_WRITE_ATTRIBUTE, System.currentTimeMillis(), RequestAttributes.SCOPE_SESSION);
+        }
+    }
+
+    /**
+     * 現在のリクエストのセッションで直前に変更したか (スケジュールジョブなどリクエストの外では false)
+     */
+    public boolean currentUserWroteRecently() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null
+                || !(request.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_SESSION) instanceof Long lastWriteAt)) {
+            return false;
+        }
+        return System.currentTimeMillis() - lastWriteAt < window.toMillis();
+    }
+}
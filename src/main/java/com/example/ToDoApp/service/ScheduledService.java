@@ -1,17 +1,21 @@
 package com.example.ToDoApp.service;
 
-import com.example.ToDoApp.entity.Todo;
+import com.example.ToDoApp.dto.DueTodo;
 import com.example.ToDoApp.repository.TodoRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import jakarta.annotation.PostConstruct;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -24,6 +28,9 @@ public class ScheduledService {
     @Autowired(required = false)
     private NotificationService notificationService;
     
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     @Value("${notification.enabled:false}")
     private boolean notificationEnabled;
     
@@ -33,11 +40,44 @@ public class ScheduledService {
     @Value("${notification.time.minute:0}")
     private int notificationMinute;
     
+    // 1回のクエリで読む件数。メモリ上に保持するのは最大でこの2倍程度
+    @Value("${notification.chunk-size:500}")
+    private int chunkSize;
+    
+    // 複数インスタンスで分担する場合、user_id % shard.count == shard.index のユーザーだけを担当する
+    @Value("${notification.shard.count:1}")
+    private int shardCount;
+    
+    @Value("${notification.shard.index:0}")
+    private int shardIndex;
+    
+    private DistributionSummary dueTodoRows;
+    private DistributionSummary dueTodoChunks;
+    private DistributionSummary notificationMessages;
+    
     @PostConstruct
     public void init() {
+        if (chunkSize < 1) {
+            throw new IllegalStateException("notification.chunk-size は1以上を指定してください");
+        }
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalStateException("notification.shard.index は0以上 notification.shard.count 未満を指定してください");
+        }
+        
+        dueTodoRows = DistributionSummary.builder("todoapp.notification.scan.rows")
+            .description("1回の期限前日チェックで読んだタスク数")
+            .register(meterRegistry);
+        dueTodoChunks = DistributionSummary.builder("todoapp.notification.scan.chunks")
+            .description("1回の期限前日チェックで実行したチャンクのクエリ数")
+            .register(meterRegistry);
+        notificationMessages = DistributionSummary.builder("todoapp.notification.scan.messages")
+            .description("1回の期限前日チェックで送信した通知数")
+            .register(meterRegistry);
+        
         System.out.println("=== ScheduledService初期化 ===");
         System.out.println("通知機能: " + (notificationEnabled ? "有効" : "無効"));
         System.out.println("通知時刻: " + String.format("%02d:%02d", notificationHour, notificationMinute));
+        System.out.println("チャンクサイズ: " + chunkSize + " / 担当シャード: " + shardIndex + " (全" + shardCount + ")");
         System.out.println("NotificationService: " + (notificationService != null ? "利用可能" : "null"));
         System.out.println("現在時刻: " + LocalTime.now());
         System.out.println("================================");
@@ -46,9 +86,10 @@ public class ScheduledService {
     /**
      * 毎日指定された時刻に実行される期限前日通知
      * デフォルト: 毎日9:00に実行
+     * 対象を (userId, id) 順にチャンク単位で読み、ユーザーごとにまとめて順次通知する
+     * 各チャンクの読み込みは個別の短いトランザクションで行う
      */
     @Scheduled(cron = "0 ${notification.time.minute:0} ${notification.time.hour:9} * * *")
-    @Transactional(readOnly = true)
     public void checkDueTomorrowTasks() {
         System.out.println("期限前日タスクチェックを開始します...");
         
@@ -57,25 +98,83 @@ public class ScheduledService {
             return;
         }
         
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "success";
         try {
             // 明日が期限のタスクを取得
             LocalDate tomorrow = LocalDate.now().plusDays(1);
-            List<Todo> dueTomorrowTasks = todoRepository.findByDueDateAndCompletedFalse(tomorrow);
+            Limit limit = Limit.of(chunkSize);
             
-            System.out.println("明日期限のタスク数: " + dueTomorrowTasks.size());
+            // 末尾ユーザーのタスクが次のチャンクに続く場合に備えて、送信を保留する分
+            List<DueTodo> pending = new ArrayList<>();
+            long taskCount = 0;
+            int messageCount = 0;
+            int chunkCount = 1;
             
-            if (!dueTomorrowTasks.isEmpty()) {
-                // Slack通知を送信
-                notificationService.sendDueTomorrowNotification(dueTomorrowTasks);
-                System.out.println("Slack通知を送信しました");
+            List<DueTodo> chunk = todoRepository.findFirstDueChunk(tomorrow, shardCount, shardIndex, limit);
+            while (!chunk.isEmpty()) {
+                taskCount += chunk.size();
+                pending.addAll(chunk);
+                
+                boolean hasMore = chunk.size() == chunkSize;
+                if (!hasMore) {
+                    break;
+                }
+                
+                int sendCount = completedUsersEnd(pending);
+                if (sendCount > 0) {
+                    notificationService.sendDueTomorrowNotification(pending.subList(0, sendCount));
+                    messageCount++;
+                    pending = new ArrayList<>(pending.subList(sendCount, pending.size()));
+                }
+                
+                DueTodo last = chunk.get(chunk.size() - 1);
+                chunk = todoRepository.findDueChunkAfter(tomorrow, shardCount, shardIndex, last.userId(), last.id(), limit);
+                chunkCount++;
+            }
+            
+            if (!pending.isEmpty()) {
+                notificationService.sendDueTomorrowNotification(pending);
+                messageCount++;
+            }
+            
+            dueTodoRows.record(taskCount);
+            dueTodoChunks.record(chunkCount);
+            notificationMessages.record(messageCount);
+            
+            System.out.println("明日期限のタスク数: " + taskCount);
+            if (taskCount > 0) {
+                System.out.println("Slack通知を送信しました (" + messageCount + "通)");
             } else {
                 System.out.println("明日期限のタスクはありません");
             }
             
         } catch (Exception e) {
+            result = "failure";
             System.err.println("期限前日タスクチェック中にエラーが発生しました: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            sample.stop(Timer.builder("todoapp.notification.scan")
+                .description("期限前日チェック1回の所要時間 (通知の送信完了は含まない)")
+                .tag("result", result)
+                .register(meterRegistry));
+        }
+    }
+    
+    /**
+     * 末尾ユーザーより前のタスク数を返す (末尾ユーザーの分は次のチャンクに続く可能性がある)
+     * 保留分がすべて1ユーザーのタスクでチャンクサイズに達した場合は、メモリを抑えるためそのまま送る
+     */
+    private int completedUsersEnd(List<DueTodo> pending) {
+        Long lastUserId = pending.get(pending.size() - 1).userId();
+        int end = pending.size();
+        while (end > 0 && pending.get(end - 1).userId().equals(lastUserId)) {
+            end--;
+        }
+        if (end == 0 && pending.size() >= chunkSize) {
+            return pending.size();
         }
+        return end;
     }
     
     /**
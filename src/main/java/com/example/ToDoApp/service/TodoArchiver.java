@@ -0,0 +1,161 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.TodoArchiveReport;
+import com.example.ToDoApp.entity.ArchivedTodo;
+import com.example.ToDoApp.entity.Todo;
+import com.example.ToDoApp.entity.TodoTombstone;
+import com.example.ToDoApp.repository.TodoArchiveRepository;
+import com.example.ToDoApp.repository.TodoRepository;
+import com.example.ToDoApp.repository.TodoTombstoneRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 完了してから min-age が過ぎたTodoを todos から todos_archive に移す
+ *
+ * - chunk-size 件ずつ別のトランザクションで移し、チャンクの間は pause だけ待つ (本番の書き込みと競合させない)
+ * - 移したTodoは一覧 (すべて・未完了) から外れるため、削除記録と変更通知 (deleted) を出して
+ *   差分取得・SSE で受け取っているクライアントの一覧からも消す。完了フィルタと件数には引き続き含まれる
+ * - アーカイブしたTodoを更新・削除すると TodoService が todos に戻してから処理する
+ */
+@Service
+public class TodoArchiver {
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private TodoArchiveRepository archiveRepository;
+
+    @Autowired
+    private TodoTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private TodoStatsService todoStatsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${todoapp.archive.enabled:true}")
+    private boolean enabled;
+
+    // 完了 (最後の更新) からこの期間が過ぎたTodoを移す
+    @Value("${todoapp.archive.min-age:30d}")
+    private Duration minAge;
+
+    @Value("${todoapp.archive.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${todoapp.archive.pause:100ms}")
+    private Duration pause;
+
+    // 1回の実行で移す上限 (残りは次回に回す)
+    @Value("${todoapp.archive.max-chunks-per-run:10000}")
+    private int maxChunksPerRun;
+
+    @PostConstruct
+    public void init() {
+        if (chunkSize < 1 || maxChunksPerRun < 1) {
+            throw new IllegalStateException("todoapp.archive.chunk-size と max-chunks-per-run は1以上を指定してください");
+        }
+    }
+
+    @Scheduled(cron = "${todoapp.archive.cron:0 0 4 * * *}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    public TodoArchiveReport archive() {
+        return archiveCompletedBefore(LocalDateTime.now().minus(minAge));
+    }
+
+    /**
+     * cutoff より前に最後に更新された完了済みのTodoを移す
+     */
+    public TodoArchiveReport archiveCompletedBefore(LocalDateTime cutoff) {
+        System.out.println("Todoのアーカイブを開始します (" + cutoff + " より前に完了したもの)...");
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long started = System.nanoTime();
+
+        long archived = 0;
+        int chunks = 0;
+        Set<Long> users = new HashSet<>();
+        boolean hasMore = false;
+        while (true) {
+            if (chunks >= maxChunksPerRun) {
+                hasMore = true;
+                break;
+            }
+            List<Todo> moved = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            if (moved.isEmpty()) {
+                break;
+            }
+            chunks++;
+            archived += moved.size();
+            moved.forEach(todo -> users.add(todo.getUser().getId()));
+            if (moved.size() < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(pause.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                hasMore = true;
+                break;
+            }
+        }
+
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        sample.stop(meterRegistry.timer("todoapp.archive"));
+        meterRegistry.counter("todoapp.archive.rows").increment(archived);
+        System.out.println("Todoのアーカイブ完了: " + archived + "件 (" + chunks + "チャンク, ユーザー " + users.size()
+            + "人, " + elapsedMillis + "ms)" + (hasMore ? " 残りは次回に移します" : ""));
+        return new TodoArchiveReport(archived, chunks, users.size(), elapsedMillis, hasMore);
+    }
+
+    /**
+     * 1チャンク分を移す (1トランザクション)
+     * todos_archive・削除記録のINSERTと todos のDELETEはJDBCバッチで実行される
+     */
+    private List<Todo> archiveChunk(LocalDateTime cutoff) {
+        List<Todo> todos = todoRepository.findArchivable(cutoff, Limit.of(chunkSize));
+        if (todos.isEmpty()) {
+            return todos;
+        }
+
+        LocalDateTime archivedAt = LocalDateTime.now();
+        archiveRepository.saveAll(todos.stream().map(todo -> new ArchivedTodo(todo, archivedAt)).toList());
+        tombstoneRepository.saveAll(todos.stream()
+            .map(todo -> new TodoTombstone(todo.getId(), todo.getUser().getId(), archivedAt))
+            .toList());
+        todoRepository.deleteAll(todos);
+
+        // 件数は両方のテーブルを数えるため変わらない。一覧から外れるためバージョンだけを上げる
+        todos.stream().map(todo -> todo.getUser().getId()).distinct()
+            .forEach(userId -> todoStatsService.apply(userId, new TodoStatsService.Delta().touch()));
+        todos.forEach(todo -> eventPublisher.publishEvent(TodoChangedEvent.deleted(todo.getUser().getId(), todo.getId())));
+        return todos;
+    }
+}
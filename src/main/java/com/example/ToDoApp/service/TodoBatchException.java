@@ -0,0 +1,21 @@
+package com.example.ToDoApp.service;
+
+import java.util.List;
+
+/**
+ * 一括処理の入力エラー
+ * 1件でもエラーがあれば何も実行せず、全件分のエラーをまとめて返す
+ */
+public class TodoBatchException extends IllegalArgumentException {
+
+    private final List<String> errors;
+
+    public TodoBatchException(List<String> errors) {
+        super("一括処理の内容に誤りがあります");
+        this.errors = List.copyOf(errors);
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
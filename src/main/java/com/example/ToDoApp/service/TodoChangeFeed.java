@@ -0,0 +1,427 @@
+package com.example.ToDoApp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Todo変更のユーザー別配信 (Server-Sent Events)
+ * TodoChangedEvent (コミット後) を受け取り、変更されたTodoだけを接続中のクライアントに送る
+ *
+ * 直近の変更はユーザーごとのリングバッファに残し、再接続したクライアントには Last-Event-ID の続きから送り直す。
+ * イベントIDは "世代-連番" で、世代はバッファを作るたびに変わる。再起動やバッファの破棄の後の古いID、
+ * またはバッファから溢れた位置で接続された場合は reset を送り、一覧の再取得を促す
+ *
+ * 送信は変更を書き込んだスレッドでもバッファのロック内でもなく、接続ごとの送信待ちキューに積んで
+ * 仮想スレッドで送る。遅いクライアントが他の接続や書き込みを待たせることはなく、送信待ちが
+ * max-pending を超えた接続は切断する (ブラウザが Last-Event-ID 付きで再接続し、バッファから送り直す)
+ *
+ * バッファと接続はインスタンス (JVM) ごとで、他のインスタンスで行われた変更は届かない。
+ * 複数台構成ではクライアントが updatedSince による差分取得を定期的に行って補う
+ */
+@Service
+public class TodoChangeFeed implements MeterBinder {
+
+    static final String CHANGE_EVENT = "todo";
+    static final String RESET_EVENT = "reset";
+
+    /**
+     * バッファに残す変更 (data は送信するJSON)
+     */
+    record Change(long seq, String id, String data) {
+    }
+
+    /**
+     * lastEventId より後の変更
+     * resumable が false の場合はバッファから追えないため、クライアントは一覧を取得し直す必要がある
+     */
+    record Backlog(boolean resumable, List<Change> changes, String position) {
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${todoapp.change-feed.buffer-size:256}")
+    private int bufferSize = 256;
+
+    @Value("${todoapp.change-feed.timeout:30m}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    @Value("${todoapp.change-feed.idle-eviction:1h}")
+    private Duration idleEviction = Duration.ofHours(1);
+
+    @Value("${todoapp.change-feed.max-pending:256}")
+    private int maxPending = 256;
+
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("change-feed-", 0).factory());
+
+    private final Map<Long, UserFeed> feeds = new ConcurrentHashMap<>();
+    private final long firstGeneration = System.currentTimeMillis();
+    private final AtomicLong nextGeneration = new AtomicLong(firstGeneration);
+    // 破棄したバッファの最大の世代 (それ以前に返したバッファ作成前の位置からは再開できない)
+    private final AtomicLong evictedGeneration = new AtomicLong(firstGeneration - 1);
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("todoapp.changefeed.connections", connections, AtomicInteger::get)
+            .description("変更通知 (SSE) の接続数")
+            .register(registry);
+        FunctionCounter.builder("todoapp.changefeed.events", sent, AtomicLong::get)
+            .description("クライアントに送った変更イベント数 (再送を含む)")
+            .register(registry);
+        FunctionCounter.builder("todoapp.changefeed.resumes", replayed, AtomicLong::get)
+            .description("Last-Event-ID を指定した再接続の数")
+            .tag("result", "replayed")
+            .register(registry);
+        FunctionCounter.builder("todoapp.changefeed.resumes", resets, AtomicLong::get)
+            .tag("result", "reset")
+            .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * 現在の配信位置
+     * 一覧を読む前に取得して subscribe に渡せば、一覧の取得中に起きた変更も取りこぼさない
+     * (重複して届く変更は同じ内容なのでクライアント側で上書きすればよい)
+     *
+     * 読み取りのみでバッファは作らない。バッファがまだないユーザーには次に作られるバッファの先頭を返す
+     */
+    public String position(Long userId) {
+        UserFeed feed = feeds.get(userId);
+        if (feed != null) {
+            synchronized (feed) {
+                if (!feed.closed) {
+                    return feed.position();
+                }
+            }
+        }
+        return Long.toString(nextGeneration.get(), 36) + "-0";
+    }
+
+    /**
+     * 変更の配信を開始する
+     * lastEventId が null の場合は接続以降の変更だけを送る
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        return subscribe(userId, lastEventId, new SseEmitter(timeout.toMillis()));
+    }
+
+    /**
+     * emitter に変更の配信を開始する (テストでは送信を止めた emitter を渡す)
+     */
+    SseEmitter subscribe(Long userId, String lastEventId, SseEmitter emitter) {
+        Subscriber subscriber = withFeed(userId, feed -> {
+            Subscriber added = new Subscriber(feed, emitter);
+            Backlog backlog = feed.backlog(lastEventId);
+            if (!backlog.resumable()) {
+                resets.incrementAndGet();
+                added.enqueue(SseEmitter.event()
+                    .id(backlog.position())
+                    .name(RESET_EVENT)
+                    .data(Map.of("position", backlog.position()), MediaType.APPLICATION_JSON), false);
+            } else {
+                if (lastEventId != null) {
+                    replayed.incrementAndGet();
+                }
+                for (Change change : backlog.changes()) {
+                    added.enqueue(event(change), true);
+                }
+            }
+            feed.subscribers.add(added);
+            connections.incrementAndGet();
+            return added;
+        });
+
+        emitter.onCompletion(subscriber::remove);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> subscriber.remove());
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", event.isDeleted() ? "deleted" : "saved");
+        payload.put("id", event.todoId());
+        if (!event.isDeleted()) {
+            payload.put("todo", event.todo());
+        }
+
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            System.err.println("変更通知の作成に失敗しました (todoId: " + event.todoId() + "): " + e.getMessage());
+            return;
+        }
+
+        // 追加と送信待ちへの積み込みを同じロックの中で行い、接続ごとの送信順を連番順に保つ (送信はロックの外)
+        withFeed(event.userId(), feed -> {
+            Change change = feed.append(data);
+            for (Subscriber subscriber : List.copyOf(feed.subscribers)) {
+                subscriber.enqueue(event(change), true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 切断を検出するための定期的なコメント送信と、接続がなく使われていないバッファの破棄
+     */
+    @Scheduled(fixedDelayString = "${todoapp.change-feed.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        feeds.forEach((userId, feed) -> {
+            synchronized (feed) {
+                for (Subscriber subscriber : List.copyOf(feed.subscribers)) {
+                    subscriber.enqueue(SseEmitter.event().comment("ping"), false);
+                }
+                if (feed.subscribers.isEmpty() && now - feed.lastActivity > idleEviction.toNanos()) {
+                    feed.closed = true;
+                    evictedGeneration.accumulateAndGet(feed.generationNumber, Math::max);
+                    feeds.remove(userId, feed);
+                }
+            }
+        });
+    }
+
+    /**
+     * lastEventId より後の変更 (テスト用)
+     */
+    Backlog backlog(Long userId, String lastEventId) {
+        return withFeed(userId, feed -> feed.backlog(lastEventId));
+    }
+
+    private static SseEmitter.SseEventBuilder event(Change change) {
+        return SseEmitter.event()
+            .id(change.id())
+            .name(CHANGE_EVENT)
+            .data(change.data(), MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * ユーザーのバッファをロックして action を実行する
+     * 破棄と同時に取得した場合は作り直す
+     */
+    private <T> T withFeed(Long userId, Function<UserFeed, T> action) {
+        while (true) {
+            UserFeed feed = feeds.computeIfAbsent(userId, key -> new UserFeed(nextGeneration.getAndIncrement()));
+            synchronized (feed) {
+                if (!feed.closed) {
+                    return action.apply(feed);
+                }
+            }
+        }
+    }
+
+    /**
+     * ユーザーごとの変更バッファと接続 (すべて UserFeed のロック内で操作する)
+     */
+    private final class UserFeed {
+
+        private final long generationNumber;
+        private final String generation;
+        private final Change[] ring = new Change[bufferSize];
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private long seq;
+        private long lastActivity = System.nanoTime();
+        private boolean closed;
+
+        private UserFeed(long generationNumber) {
+            this.generationNumber = generationNumber;
+            this.generation = Long.toString(generationNumber, 36);
+        }
+
+        String position() {
+            return generation + "-" + seq;
+        }
+
+        Change append(String data) {
+            seq++;
+            Change change = new Change(seq, generation + "-" + seq, data);
+            ring[(int) (seq % ring.length)] = change;
+            lastActivity = System.nanoTime();
+            return change;
+        }
+
+        Backlog backlog(String lastEventId) {
+            lastActivity = System.nanoTime();
+            String position = position();
+            if (lastEventId == null || lastEventId.isBlank()) {
+                return new Backlog(true, List.of(), position);
+            }
+
+            int separator = lastEventId.lastIndexOf('-');
+            if (separator < 0) {
+                return new Backlog(false, List.of(), position);
+            }
+            long since;
+            long after;
+            try {
+                since = Long.parseLong(lastEventId.substring(0, separator), 36);
+                after = Long.parseLong(lastEventId.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return new Backlog(false, List.of(), position);
+            }
+            if (since != generationNumber) {
+                // バッファがない間に返した位置 (次の世代の先頭) は、その後に作られたこのバッファの先頭から送る。
+                // 間に破棄されたバッファがあった可能性がある場合は再開できない
+                if (after != 0 || since > generationNumber || since <= evictedGeneration.get()) {
+                    return new Backlog(false, List.of(), position);
+                }
+            }
+            // 未来の位置、またはバッファから溢れた位置からは再開できない
+            long oldest = Math.max(1, seq - ring.length + 1);
+            if (after > seq || after + 1 < oldest) {
+                return new Backlog(false, List.of(), position);
+            }
+
+            List<Change> changes = new ArrayList<>((int) (seq - after));
+            for (long s = after + 1; s <= seq; s++) {
+                changes.add(ring[(int) (s % ring.length)]);
+            }
+            return new Backlog(true, changes, position);
+        }
+    }
+
+    /**
+     * 送信待ちのイベント (change は送った数に数えるか)
+     */
+    private record Outgoing(SseEmitter.SseEventBuilder event, boolean change) {
+    }
+
+    /**
+     * 1つの接続と送信待ちキュー
+     * キューへの積み込みはバッファのロック内で行い、送信は sender のスレッドが1接続につき1つずつ順に行う
+     */
+    private final class Subscriber {
+
+        private final UserFeed feed;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Outgoing> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        private Subscriber(UserFeed feed, SseEmitter emitter) {
+            this.feed = feed;
+            this.emitter = emitter;
+        }
+
+        /**
+         * 送信待ちに積む (送信中でなければ送信を始める)。溢れた場合は接続を切る
+         */
+        void enqueue(SseEmitter.SseEventBuilder event, boolean change) {
+            boolean overflow = false;
+            boolean start = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                // 再接続時の送り直し (最大でバッファの件数) は溢れさせない
+                if (pending.size() >= Math.max(maxPending, bufferSize)) {
+                    closed = true;
+                    pending.clear();
+                    overflow = true;
+                } else {
+                    pending.add(new Outgoing(event, change));
+                    start = !draining;
+                    draining = true;
+                }
+            }
+            if (overflow) {
+                drop(new IOException("送信待ちが " + maxPending + " 件を超えたため切断しました"));
+            } else if (start) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Outgoing next;
+                synchronized (this) {
+                    next = closed ? null : pending.poll();
+                    if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(next.event());
+                    if (next.change()) {
+                        sent.incrementAndGet();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        closed = true;
+                        pending.clear();
+                        draining = false;
+                    }
+                    drop(e);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 接続を外す (切断・完了時)
+         */
+        void remove() {
+            synchronized (this) {
+                closed = true;
+                pending.clear();
+            }
+            synchronized (feed) {
+                if (feed.subscribers.remove(this)) {
+                    connections.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * 送信に失敗した (切断された) 接続を外す
+         */
+        private void drop(Exception cause) {
+            remove();
+            try {
+                emitter.completeWithError(cause);
+            } catch (IllegalStateException e) {
+                // 既に完了している
+            }
+        }
+    }
+}
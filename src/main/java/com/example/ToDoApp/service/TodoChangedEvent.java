@@ -0,0 +1,23 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.TodoView;
+
+/**
+ * Todoの作成・更新・削除の通知
+ * TodoService が変更と同じトランザクションで発行し、受け取る側はコミット後に処理する
+ * (todo は変更後の内容。削除の場合は null)
+ */
+public record TodoChangedEvent(Long userId, Long todoId, TodoView todo) {
+
+    public static TodoChangedEvent saved(Long userId, TodoView todo) {
+        return new TodoChangedEvent(userId, todo.id(), todo);
+    }
+
+    public static TodoChangedEvent deleted(Long userId, Long todoId) {
+        return new TodoChangedEvent(userId, todoId, null);
+    }
+
+    public boolean isDeleted() {
+        return todo == null;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.RenderedTodoPage;
+import com.example.ToDoApp.dto.TodoStats;
+import com.example.ToDoApp.dto.TodoView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * トップページに埋め込むTodo一覧の先頭ページを描画する
+ *
+ * 描画結果は (ユーザーID, 一覧のバージョン, 日付) をキーにキャッシュする。バージョンはTodoの変更のたびに上がるため
+ * 変更後の最初の表示で描画し直され、日付は期限切れの表示が変わるためキーに含める。
+ * バージョンと先頭ページは1つの読み取り専用トランザクションで読む (レプリカ使用時も同じコネクションから読み、
+ * 遅れているレプリカの一覧を新しいバージョンのキーでキャッシュしない)。
+ * 件数は描画結果に含めず、表示のたびに集計行から読む
+ *
+ * 描画結果には描画前の差分取得の時刻 (syncedAt) を一緒に残し、キャッシュから返す場合もその時刻を使う
+ * (描画した内容より後の時刻を渡すと、その間の他のサーバーでの変更を差分取得で取りこぼすため)。
+ * キャッシュは描画から expire-after-write で捨て、syncedAt が削除記録の保持期間より古くならないようにする
+ */
+@Service
+public class TodoFirstPageRenderer {
+
+    private record Key(Long userId, long version, LocalDate today) {
+    }
+
+    private record Page(String listHtml, String todosJson, boolean hasMore, LocalDateTime syncedAt) {
+    }
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private TodoStatsService todoStatsService;
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${todoapp.first-page.page-size:50}")
+    private int pageSize;
+
+    @Value("${todoapp.first-page.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${todoapp.first-page.cache.expire-after-write:10m}")
+    private Duration expireAfterWrite;
+
+    private Cache<Key, Page> pages;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        pages = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .build();
+    }
+
+    public RenderedTodoPage render(Long userId) {
+        LocalDate today = LocalDate.now();
+        Page page = readOnlyTransaction.execute(status -> {
+            Key key = new Key(userId, todoStatsService.getListVersion(userId), today);
+            return pages.get(key, k -> renderPage(userId, today));
+        });
+        TodoStats stats = todoStatsService.getStats(userId);
+        return new RenderedTodoPage(page.listHtml(), page.todosJson(), page.hasMore(), page.syncedAt(), stats);
+    }
+
+    private Page renderPage(Long userId, LocalDate today) {
+        // 一覧を読む前に取る
+        LocalDateTime syncedAt = todoService.nextSyncPoint();
+        TodoPage<TodoView> page = todoService.getTodoPage(userId, null, null, pageSize);
+
+        Context context = new Context(Locale.JAPAN, Map.of("todos", page.items(), "today", today));
+        String listHtml = templateEngine.process("fragments/todo-items", Set.of("items"), context);
+        try {
+            return new Page(listHtml, objectMapper.writeValueAsString(page.items()), page.hasMore(), syncedAt);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
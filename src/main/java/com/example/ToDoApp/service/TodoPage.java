@@ -0,0 +1,14 @@
+package com.example.ToDoApp.service;
+
+import java.util.List;
+
+/**
+ * キーセットページングの結果
+ * nextCursor が null の場合は最終ページ
+ */
+public record TodoPage<T>(List<T> items, TodoCursor nextCursor) {
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,481 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.TodoSearchSource;
+import com.example.ToDoApp.repository.TodoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Todo本文のユーザー別転置インデックス (メモリ上)
+ * - 英数字などは単語単位で索引し、検索語は前方一致で照合する
+ * - 漢字・ひらがな・カタカナは1文字と2文字のn-gramで索引し、検索語を含むものだけを返す
+ * 起動時に todos から構築し、その後は TodoChangedEvent (コミット後) で差分を反映する
+ * 構築に失敗した場合は build-retry-backoff から2倍ずつ (build-retry-max-backoff まで) 間隔を空けて成功するまで再試行する
+ *
+ * インデックスはJVMごとに持つ。変更イベントは同じインスタンス内でしか届かないため、複数台構成では
+ * 他のインスタンスで作成・更新・削除したTodoは、このインスタンスを再起動するまで検索結果に反映されない
+ */
+@Service
+public class TodoSearchIndex {
+
+    /**
+     * 検索結果のID (新しい順) と、limit より後ろに一致するTodoがあるか
+     */
+    public record Hits(List<Long> ids, boolean hasMore) {
+    }
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Value("${todoapp.search.build-chunk-size:1000}")
+    private int buildChunkSize;
+
+    @Value("${todoapp.search.build-retry-backoff:1s}")
+    private Duration buildRetryBackoff = Duration.ofSeconds(1);
+
+    @Value("${todoapp.search.build-retry-max-backoff:1m}")
+    private Duration buildRetryMaxBackoff = Duration.ofMinutes(1);
+
+    private final Map<Long, UserIndex> users = new ConcurrentHashMap<>();
+
+    // 構築中に変更イベントで反映したTodo。構築処理が読み込み済みの古い内容で上書きしないようにする
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+    private volatile boolean ready;
+
+    /**
+     * 起動完了後に別スレッドで全Todoを読み込む (完了までは検索できない)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread thread = new Thread(this::buildWithRetry, "todo-search-index-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 成功するまで構築を繰り返す (再試行の間も変更イベントを記録し続け、読み込んだ古い内容で上書きしない)
+     */
+    void buildWithRetry() {
+        building = true;
+        try {
+            Duration backoff = buildRetryBackoff;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    build();
+                    return;
+                } catch (RuntimeException e) {
+                    System.err.println("検索インデックスの構築に失敗しました (" + attempt + "回目、" + backoff.toMillis()
+                        + "ms後に再試行します): " + e.getMessage());
+                }
+                Thread.sleep(backoff.toMillis());
+                backoff = backoff.multipliedBy(2);
+                if (backoff.compareTo(buildRetryMaxBackoff) > 0) {
+                    backoff = buildRetryMaxBackoff;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            building = false;
+            changedDuringBuild.clear();
+        }
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        long count = 0;
+        Limit limit = Limit.of(buildChunkSize);
+        List<TodoSearchSource> chunk = todoRepository.findSearchSourcesAfter(0L, limit);
+        while (!chunk.isEmpty()) {
+            for (TodoSearchSource source : chunk) {
+                userIndex(source.userId()).putIfUnchanged(source.id(), source.text(), changedDuringBuild);
+            }
+            count += chunk.size();
+            chunk = todoRepository.findSearchSourcesAfter(chunk.get(chunk.size() - 1).id(), limit);
+        }
+        ready = true;
+        System.out.println("検索インデックスを構築しました: " + count + "件, " + users.size() + "ユーザー, "
+            + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        UserIndex index = userIndex(event.userId());
+        if (event.isDeleted()) {
+            index.remove(event.todoId(), building ? changedDuringBuild : null);
+        } else {
+            index.put(event.todoId(), event.todo().text(), building ? changedDuringBuild : null);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 空白で区切った検索語をすべて含むTodoを新しい順に最大 limit 件返す
+     */
+    public Hits search(Long userId, String query, int limit) {
+        UserIndex index = users.get(userId);
+        if (index == null) {
+            return new Hits(List.of(), false);
+        }
+        return index.search(parseQuery(query), limit);
+    }
+
+    private UserIndex userIndex(Long userId) {
+        return users.computeIfAbsent(userId, key -> new UserIndex());
+    }
+
+    // ---- 文字列の分割 ----
+
+    /**
+     * 検索語の分割結果
+     * words は前方一致で照合する単語、phrases はn-gramで候補を絞った後に本文に含まれるか確認する文字列
+     */
+    record Query(List<String> words, List<String> phrases) {
+
+        boolean isEmpty() {
+            return words.isEmpty() && phrases.isEmpty();
+        }
+    }
+
+    static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    static boolean isCjk(int codePoint) {
+        if (codePoint == 'ー') {
+            return true;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA;
+    }
+
+    /**
+     * 正規化済みの本文を、単語 (英数字など) と漢字かなの連続部分に分ける
+     */
+    static void split(String normalized, List<String> words, List<String> cjkRuns) {
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjk = new StringBuilder();
+        normalized.codePoints().forEach(codePoint -> {
+            if (isCjk(codePoint)) {
+                flush(word, words);
+                cjk.appendCodePoint(codePoint);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                flush(cjk, cjkRuns);
+                word.appendCodePoint(codePoint);
+            } else {
+                flush(word, words);
+                flush(cjk, cjkRuns);
+            }
+        });
+        flush(word, words);
+        flush(cjk, cjkRuns);
+    }
+
+    private static void flush(StringBuilder buffer, List<String> target) {
+        if (buffer.length() > 0) {
+            target.add(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * 索引する語: 単語そのものと、漢字かなの1文字・2文字のn-gram
+     */
+    static Set<String> terms(String normalized) {
+        List<String> words = new ArrayList<>();
+        List<String> cjkRuns = new ArrayList<>();
+        split(normalized, words, cjkRuns);
+
+        Set<String> terms = new LinkedHashSet<>(words);
+        for (String run : cjkRuns) {
+            int[] codePoints = run.codePoints().toArray();
+            for (int i = 0; i < codePoints.length; i++) {
+                terms.add(new String(codePoints, i, 1));
+                if (i + 1 < codePoints.length) {
+                    terms.add(new String(codePoints, i, 2));
+                }
+            }
+        }
+        return terms;
+    }
+
+    static Query parseQuery(String query) {
+        List<String> words = new ArrayList<>();
+        List<String> phrases = new ArrayList<>();
+        split(normalize(query), words, phrases);
+        return new Query(words, phrases);
+    }
+
+    // ---- ユーザーごとの索引 ----
+
+    private static class UserIndex {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // ID → 正規化済みの本文 (削除・更新時の索引語の特定と、検索結果の確認に使う)
+        private final Map<Long, String> texts = new HashMap<>();
+        private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+        void put(Long id, String text, Set<Long> changed) {
+            lock.writeLock().lock();
+            try {
+                if (changed != null) {
+                    changed.add(id);
+                }
+                replace(id, normalize(text));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void putIfUnchanged(Long id, String text, Set<Long> changed) {
+            lock.writeLock().lock();
+            try {
+                if (!changed.contains(id)) {
+                    replace(id, normalize(text));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id, Set<Long> changed) {
+            lock.writeLock().lock();
+            try {
+                if (changed != null) {
+                    changed.add(id);
+                }
+                replace(id, null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void replace(Long id, String normalized) {
+            String old = normalized != null ? texts.put(id, normalized) : texts.remove(id);
+            if (old != null) {
+                if (old.equals(normalized)) {
+                    return;
+                }
+                for (String term : terms(old)) {
+                    Postings list = postings.get(term);
+                    if (list != null && list.remove(id) && list.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            if (normalized != null) {
+                for (String term : terms(normalized)) {
+                    postings.computeIfAbsent(term, key -> new Postings()).add(id);
+                }
+            }
+        }
+
+        Hits search(Query query, int limit) {
+            if (query.isEmpty()) {
+                return new Hits(List.of(), false);
+            }
+            lock.readLock().lock();
+            try {
+                List<long[]> clauses = new ArrayList<>();
+                for (String word : query.words()) {
+                    clauses.add(prefixMatches(word));
+                }
+                for (String phrase : query.phrases()) {
+                    clauses.addAll(gramMatches(phrase));
+                }
+                long[] candidates = intersect(clauses);
+
+                // n-gramの一致だけでは語順が保証されないため、新しい順に本文を確認しながら limit + 1 件まで集める
+                List<Long> ids = new ArrayList<>(Math.min(limit, candidates.length));
+                boolean hasMore = false;
+                for (int i = candidates.length - 1; i >= 0; i--) {
+                    Long id = candidates[i];
+                    if (!containsAll(texts.get(id), query.phrases())) {
+                        continue;
+                    }
+                    if (ids.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    ids.add(id);
+                }
+                return new Hits(ids, hasMore);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * prefix で始まる単語を含むTodoのID (昇順)
+         */
+        private long[] prefixMatches(String prefix) {
+            SortedMap<String, Postings> range = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+            if (range.size() == 1) {
+                return range.values().iterator().next().toArray();
+            }
+            int total = 0;
+            for (Postings list : range.values()) {
+                total += list.size;
+            }
+            long[] merged = new long[total];
+            int offset = 0;
+            for (Postings list : range.values()) {
+                System.arraycopy(list.ids, 0, merged, offset, list.size);
+                offset += list.size;
+            }
+            Arrays.sort(merged);
+            return distinct(merged);
+        }
+
+        /**
+         * 漢字かなの検索語に対応するn-gramの一覧 (1文字なら1-gram、2文字以上なら2-gram)
+         */
+        private List<long[]> gramMatches(String phrase) {
+            int[] codePoints = phrase.codePoints().toArray();
+            List<long[]> matches = new ArrayList<>();
+            if (codePoints.length == 1) {
+                matches.add(lookup(phrase));
+                return matches;
+            }
+            for (int i = 0; i + 1 < codePoints.length; i++) {
+                matches.add(lookup(new String(codePoints, i, 2)));
+            }
+            return matches;
+        }
+
+        private long[] lookup(String term) {
+            Postings list = postings.get(term);
+            return list != null ? list.toArray() : new long[0];
+        }
+
+        private static boolean containsAll(String text, List<String> phrases) {
+            if (text == null) {
+                return false;
+            }
+            for (String phrase : phrases) {
+                if (phrase.codePointCount(0, phrase.length()) > 2 && !text.contains(phrase)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 昇順のID配列同士の積集合 (短いものから順に絞り込む)
+     */
+    static long[] intersect(List<long[]> clauses) {
+        if (clauses.isEmpty()) {
+            return new long[0];
+        }
+        clauses.sort((a, b) -> Integer.compare(a.length, b.length));
+        long[] result = clauses.get(0);
+        for (int c = 1; c < clauses.size() && result.length > 0; c++) {
+            long[] other = clauses.get(c);
+            long[] next = new long[result.length];
+            int size = 0;
+            int j = 0;
+            for (long id : result) {
+                // 長い方は二分探索で読み飛ばす
+                int found = Arrays.binarySearch(other, j, other.length, id);
+                if (found >= 0) {
+                    next[size++] = id;
+                    j = found + 1;
+                } else {
+                    j = -found - 1;
+                }
+                if (j >= other.length) {
+                    break;
+                }
+            }
+            result = Arrays.copyOf(next, size);
+        }
+        return result;
+    }
+
+    private static long[] distinct(long[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * 昇順に保つIDの配列 (IDは採番順に増えるため、追加はほぼ末尾への追記になる)
+     */
+    private static class Postings {
+
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int found = Arrays.binarySearch(ids, 0, size, id);
+                if (found >= 0) {
+                    return;
+                }
+                int at = -found - 1;
+                grow();
+                System.arraycopy(ids, at, ids, at + 1, size - at);
+                ids[at] = id;
+                size++;
+                return;
+            }
+            grow();
+            ids[size++] = id;
+        }
+
+        boolean remove(long id) {
+            int found = Arrays.binarySearch(ids, 0, size, id);
+            if (found < 0) {
+                return false;
+            }
+            System.arraycopy(ids, found + 1, ids, found, size - found - 1);
+            size--;
+            return true;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        private void grow() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+        }
+    }
+}
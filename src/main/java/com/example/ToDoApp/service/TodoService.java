@@ -1,101 +1,506 @@
 package com.example.ToDoApp.service;
 
+import com.example.ToDoApp.dto.TodoBatch;
+import com.example.ToDoApp.dto.TodoBatchResult;
+import com.example.ToDoApp.dto.TodoDelta;
+import com.example.ToDoApp.dto.TodoDraft;
+import com.example.ToDoApp.dto.TodoSearchResult;
+import com.example.ToDoApp.dto.TodoUpdate;
+import com.example.ToDoApp.dto.TodoView;
 import com.example.ToDoApp.entity.Todo;
+import com.example.ToDoApp.entity.TodoTombstone;
 import com.example.ToDoApp.entity.User;
+import com.example.ToDoApp.repository.TodoArchiveRepository;
 import com.example.ToDoApp.repository.TodoRepository;
+import com.example.ToDoApp.repository.TodoTombstoneRepository;
+import com.example.ToDoApp.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class TodoService {
     
+    /** 1ページあたりの最大件数 */
+    public static final int MAX_PAGE_SIZE = 200;
+    
+    /** 検索結果の既定の件数 */
+    public static final int DEFAULT_SEARCH_LIMIT = 50;
+    
+    /** IN句1回あたりのID数 */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    
+    /** 一覧の並び (createdAt, id の降順) */
+    private static final Comparator<TodoView> NEWEST_FIRST =
+        Comparator.comparing(TodoView::createdAt).thenComparing(TodoView::id).reversed();
+    
     @Autowired
     private TodoRepository todoRepository;
     
-    public Todo createTodo(String text, User user) {
-        if (text == null || text.trim().isEmpty()) {
-            throw new IllegalArgumentException("ToDoの内容は必須です");
-        }
-        
-        if (text.trim().length() > 255) {
-            throw new IllegalArgumentException("ToDoの内容は255文字以下で入力してください");
+    @Autowired
+    private TodoTombstoneRepository tombstoneRepository;
+    
+    @Autowired
+    private TodoArchiveRepository archiveRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private TodoStatsService todoStatsService;
+    
+    @Autowired
+    private TodoSearchIndex todoSearchIndex;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Value("${todoapp.batch.max-size:10000}")
+    private int maxBatchSize;
+    
+    @Value("${todoapp.delta-sync.overlap:5s}")
+    private Duration syncOverlap;
+    
+    @Value("${todoapp.delta-sync.tombstone-retention:7d}")
+    private Duration tombstoneRetention;
+    
+    public Todo createTodo(String text, Long userId) {
+        return createTodoWithDueDate(text, userId, null);
+    }
+    
+    public Todo createTodoWithDueDate(String text, Long userId, LocalDate dueDate) {
+        Todo todo = new Todo(validateText(text), userReference(userId));
+        todo.setDueDate(dueDate);
+        Todo saved = todoRepository.save(todo);
+        TodoView view = TodoView.from(saved);
+        todoStatsService.apply(userId, new TodoStatsService.Delta().add(view));
+        eventPublisher.publishEvent(TodoChangedEvent.saved(userId, view));
+        return saved;
+    }
+    
+    @Transactional(readOnly = true)
+    public List<TodoView> getTodosByUser(Long userId) {
+        return todoRepository.findViewsByUserId(userId);
+    }
+    
+    /**
+     * 完了済みの一覧にはアーカイブしたTodo (todos_archive) も含める
+     */
+    @Transactional(readOnly = true)
+    public List<TodoView> getTodosByUserAndStatus(Long userId, Boolean completed) {
+        List<TodoView> todos = todoRepository.findViewsByUserIdAndCompleted(userId, completed);
+        if (Boolean.TRUE.equals(completed)) {
+            todos = mergeNewestFirst(todos, archiveRepository.findViewsByUserId(userId));
         }
-        
-        Todo todo = new Todo(text.trim(), user);
-        return todoRepository.save(todo);
+        return todos;
     }
     
-    public Todo createTodoWithDueDate(String text, User user, LocalDate dueDate) {
-        if (text == null || text.trim().isEmpty()) {
-            throw new IllegalArgumentException("ToDoの内容は必須です");
+    /**
+     * 次回の updatedSince に渡す時刻
+     * createdAt/updatedAt はコミットより前の時刻で書き込まれるため、読み込みと同時に実行中だった変更を
+     * 取りこぼさないよう overlap だけ前に戻す (重複して返る変更はクライアント側で上書きすればよい)
+     */
+    public LocalDateTime nextSyncPoint() {
+        return LocalDateTime.now().minus(syncOverlap);
+    }
+    
+    /**
+     * since より後に作成・更新・削除されたTodo
+     * since が削除記録の保持期間より前の場合は削除を伝えられないため、全件を返す (full = true)
+     */
+    @Transactional(readOnly = true)
+    public TodoDelta getChangesSince(Long userId, LocalDateTime since) {
+        if (since.isBefore(LocalDateTime.now().minus(tombstoneRetention))) {
+            return new TodoDelta(todoRepository.findViewsByUserId(userId), List.of(), true);
         }
+        return new TodoDelta(
+            todoRepository.findViewsChangedSince(userId, since),
+            tombstoneRepository.findDeletedIdsSince(userId, since),
+            false);
+    }
+    
+    /**
+     * (createdAt, id) のキーセットで1ページ分を取得する
+     * completed が null の場合は全件が対象 (アーカイブしたTodoは completed = true の場合だけ含める)
+     */
+    @Transactional(readOnly = true)
+    public TodoPage<TodoView> getTodoPage(Long userId, Boolean completed, TodoCursor after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // 次ページの有無を判定するため1件多く取得する
+        Limit fetchLimit = Limit.of(pageSize + 1);
         
-        if (text.trim().length() > 255) {
-            throw new IllegalArgumentException("ToDoの内容は255文字以下で入力してください");
+        List<TodoView> todos;
+        if (after == null) {
+            todos = completed == null
+                ? todoRepository.findFirstPageByUserId(userId, fetchLimit)
+                : todoRepository.findFirstPageByUserIdAndCompleted(userId, completed, fetchLimit);
+        } else {
+            todos = completed == null
+                ? todoRepository.findPageByUserIdAfter(userId, after.createdAt(), after.id(), fetchLimit)
+                : todoRepository.findPageByUserIdAndCompletedAfter(userId, completed, after.createdAt(), after.id(), fetchLimit);
+        }
+        if (Boolean.TRUE.equals(completed)) {
+            // 両方のテーブルから同じカーソルで1ページ分ずつ読み、併合した先頭を使う
+            List<TodoView> archived = after == null
+                ? archiveRepository.findFirstPageByUserId(userId, fetchLimit)
+                : archiveRepository.findPageByUserIdAfter(userId, after.createdAt(), after.id(), fetchLimit);
+            todos = mergeNewestFirst(todos, archived);
+            if (todos.size() > fetchLimit.max()) {
+                todos = todos.subList(0, fetchLimit.max());
+            }
         }
         
-        Todo todo = new Todo(text.trim(), user);
-        todo.setDueDate(dueDate);
-        return todoRepository.save(todo);
+        if (todos.size() <= pageSize) {
+            return new TodoPage<>(todos, null);
+        }
+        List<TodoView> page = todos.subList(0, pageSize);
+        TodoView last = page.get(pageSize - 1);
+        return new TodoPage<>(page, new TodoCursor(last.createdAt(), last.id()));
     }
     
-    public List<Todo> getTodosByUser(User user) {
-        return todoRepository.findByUserOrderByCreatedAtDesc(user);
+    /**
+     * ユーザーのTodoを1件ずつconsumerに渡す
+     * TodoViewは永続化コンテキストに載らないため、件数が多くてもメモリに溜まらない
+     * completed = true の場合はアーカイブしたTodoも並び順を保って併合する (2つのカーソルを同時に開く)
+     */
+    @Transactional(readOnly = true)
+    public void streamTodos(Long userId, Boolean completed, Consumer<TodoView> consumer) {
+        try (Stream<TodoView> todos = completed == null
+                ? todoRepository.streamByUserId(userId)
+                : todoRepository.streamByUserIdAndCompleted(userId, completed)) {
+            if (!Boolean.TRUE.equals(completed)) {
+                todos.forEach(consumer);
+                return;
+            }
+            try (Stream<TodoView> archived = archiveRepository.streamByUserId(userId)) {
+                mergeNewestFirst(todos.iterator(), archived.iterator(), consumer);
+            }
+        }
     }
     
-    public List<Todo> getTodosByUserAndStatus(User user, Boolean completed) {
-        return todoRepository.findByUserAndCompletedOrderByCreatedAtDesc(user, completed);
+    /**
+     * 本文の検索 (検索インデックスで絞り込んだIDの内容をDBから取得する)
+     * 検索インデックスの構築中は IllegalStateException
+     */
+    @Transactional(readOnly = true)
+    public TodoSearchResult searchTodos(Long userId, String query, int limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("検索語を入力してください");
+        }
+        if (!todoSearchIndex.isReady()) {
+            throw new IllegalStateException("検索インデックスを準備中です");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        TodoSearchIndex.Hits hits = todoSearchIndex.search(userId, query, pageSize);
+        if (hits.ids().isEmpty()) {
+            return new TodoSearchResult(List.of(), false);
+        }
+        
+        // インデックスの並び (新しい順) に合わせる。反映前に削除されたTodoは含まれない
+        Map<Long, TodoView> views = new HashMap<>();
+        for (TodoView view : todoRepository.findViewsByIdIn(hits.ids(), userId)) {
+            views.put(view.id(), view);
+        }
+        List<TodoView> todos = hits.ids().stream().map(views::get).filter(Objects::nonNull).toList();
+        return new TodoSearchResult(todos, hits.hasMore());
     }
     
     public Optional<Todo> findById(Long id) {
         return todoRepository.findById(id);
     }
     
-    public Todo updateTodo(Todo todo, String newText) {
-        if (newText == null || newText.trim().isEmpty()) {
-            throw new IllegalArgumentException("ToDoの内容は必須です");
+    /**
+     * 作成・更新・削除をまとめて1トランザクションで実行する
+     * 入力と所有者を先に全件検証し、1件でも問題があれば何も変更せずに TodoBatchException を投げる。
+     * INSERT/UPDATE/DELETE はJDBCバッチで実行される
+     */
+    public TodoBatchResult applyBatch(Long userId, TodoBatch batch) {
+        if (batch.size() == 0) {
+            throw new IllegalArgumentException("処理対象のTodoがありません");
+        }
+        if (batch.size() > maxBatchSize) {
+            throw new IllegalArgumentException("一度に処理できるTodoは" + maxBatchSize + "件までです");
         }
         
-        if (newText.trim().length() > 255) {
-            throw new IllegalArgumentException("ToDoの内容は255文字以下で入力してください");
+        List<String> errors = new ArrayList<>();
+        
+        List<String> createTexts = new ArrayList<>(batch.creates().size());
+        for (int i = 0; i < batch.creates().size(); i++) {
+            try {
+                createTexts.add(validateText(batch.creates().get(i).text()));
+            } catch (IllegalArgumentException e) {
+                errors.add("creates[" + i + "]: " + e.getMessage());
+            }
+        }
+        
+        Map<Long, String> updateTexts = new HashMap<>();
+        batch.updates().forEach((id, update) -> {
+            if (update.text() == null) {
+                return;
+            }
+            try {
+                updateTexts.put(id, validateText(update.text()));
+            } catch (IllegalArgumentException e) {
+                errors.add("updates[id=" + id + "]: " + e.getMessage());
+            }
+        });
+        
+        Set<Long> targetIds = new LinkedHashSet<>(batch.updates().keySet());
+        for (Long id : batch.deletes()) {
+            if (!targetIds.add(id)) {
+                errors.add("deletes[id=" + id + "]: 同じTodoが複数回指定されています");
+            }
+        }
+        
+        // 更新・削除対象の所有者をまとめて確認する
+        Map<Long, Todo> owned = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(targetIds))) {
+            for (Todo todo : todoRepository.findOwnedByIdIn(chunk, userId)) {
+                owned.put(todo.getId(), todo);
+            }
+        }
+        // アーカイブ済みのTodoは todos に戻してから対象にする (失敗した場合はロールバックで元に戻る)
+        List<Long> missing = targetIds.stream().filter(id -> !owned.containsKey(id)).toList();
+        for (List<Long> chunk : chunks(missing)) {
+            if (restoreArchived(chunk, userId) > 0) {
+                for (Todo todo : todoRepository.findOwnedByIdIn(chunk, userId)) {
+                    owned.put(todo.getId(), todo);
+                }
+            }
+        }
+        for (Long id : targetIds) {
+            if (!owned.containsKey(id)) {
+                errors.add("id=" + id + ": Todoが見つからないか、変更する権限がありません");
+            }
+        }
+        
+        if (!errors.isEmpty()) {
+            throw new TodoBatchException(errors);
+        }
+        
+        User user = userReference(userId);
+        List<Todo> created = new ArrayList<>(createTexts.size());
+        for (int i = 0; i < createTexts.size(); i++) {
+            TodoDraft draft = batch.creates().get(i);
+            Todo todo = new Todo(createTexts.get(i), user);
+            todo.setDueDate(draft.dueDate());
+            created.add(todo);
         }
+        todoRepository.saveAll(created);
         
-        todo.setText(newText.trim());
-        return todoRepository.save(todo);
+        TodoStatsService.Delta delta = new TodoStatsService.Delta();
+        created.forEach(todo -> delta.add(TodoView.from(todo)));
+        
+        List<Todo> updated = new ArrayList<>(batch.updates().size());
+        batch.updates().forEach((id, update) -> {
+            Todo todo = owned.get(id);
+            delta.remove(TodoView.from(todo));
+            if (updateTexts.containsKey(id)) {
+                todo.setText(updateTexts.get(id));
+            }
+            if (update.dueDateSet()) {
+                todo.setDueDate(update.dueDate());
+            }
+            if (update.completed() != null) {
+                todo.setCompleted(update.completed());
+            }
+            delta.add(TodoView.from(todo));
+            updated.add(todo);
+        });
+        
+        // 所有者の確認で取得済みのエンティティを削除する (DELETE・削除記録のINSERTともJDBCバッチで実行される)
+        todoRepository.deleteAll(batch.deletes().stream().map(owned::get).toList());
+        LocalDateTime deletedAt = LocalDateTime.now();
+        tombstoneRepository.saveAll(batch.deletes().stream()
+            .map(id -> new TodoTombstone(id, userId, deletedAt))
+            .toList());
+        batch.deletes().forEach(id -> delta.remove(TodoView.from(owned.get(id))));
+        
+        // 採番とupdatedAtを確定させてから結果を組み立てる
+        todoRepository.flush();
+        todoStatsService.apply(userId, delta);
+        
+        TodoBatchResult result = new TodoBatchResult(
+            created.stream().map(TodoView::from).toList(),
+            updated.stream().map(TodoView::from).toList(),
+            List.copyOf(batch.deletes()));
+        result.created().forEach(todo -> eventPublisher.publishEvent(TodoChangedEvent.saved(userId, todo)));
+        result.updated().forEach(todo -> eventPublisher.publishEvent(TodoChangedEvent.saved(userId, todo)));
+        result.deleted().forEach(id -> eventPublisher.publishEvent(TodoChangedEvent.deleted(userId, id)));
+        return result;
     }
     
-    public Todo updateTodoDueDate(Todo todo, LocalDate dueDate) {
-        todo.setDueDate(dueDate);
-        return todoRepository.save(todo);
+    @Transactional(readOnly = true)
+    public boolean existsById(Long id) {
+        return todoRepository.existsById(id) || archiveRepository.existsById(id);
     }
     
-    public Todo toggleTodoStatus(Todo todo) {
-        todo.setCompleted(!todo.getCompleted());
-        return todoRepository.save(todo);
+    /**
+     * 所有者が一致するTodoを1回のUPDATE文で更新し、更新後の内容を返す
+     * 件数の差分を求めるため変更前の内容を取得し、更新後の内容はそこから組み立てる
+     * 更新された行がない場合は空を返す (存在しないか所有者が異なるかは existsById で判別する)
+     */
+    public Optional<TodoView> updateOwnedTodo(Long id, Long userId, TodoUpdate update) {
+        if (update.text() != null) {
+            update = new TodoUpdate(validateText(update.text()), update.dueDateSet(), update.dueDate(), update.completed());
+        }
+        
+        Optional<TodoView> before = findOwnedView(id, userId);
+        LocalDateTime now = LocalDateTime.now();
+        if (!before.isPresent() || todoRepository.updateOwnedTodo(id, userId, update, now) == 0) {
+            return Optional.empty();
+        }
+        
+        TodoView old = before.get();
+        TodoView updated = new TodoView(
+            old.id(),
+            update.text() != null ? update.text() : old.text(),
+            update.completed() != null ? update.completed() : old.completed(),
+            old.createdAt(),
+            now,
+            update.dueDateSet() ? update.dueDate() : old.dueDate());
+        
+        todoStatsService.apply(userId, new TodoStatsService.Delta().remove(old).add(updated));
+        eventPublisher.publishEvent(TodoChangedEvent.saved(userId, updated));
+        return Optional.of(updated);
     }
     
-    public void deleteTodo(Todo todo) {
-        todoRepository.delete(todo);
+    /**
+     * 所有者が一致するTodoを1回のDELETE文で削除する
+     * @return 削除できた場合 true
+     */
+    public boolean deleteOwnedTodo(Long id, Long userId) {
+        Optional<TodoView> before = findOwnedView(id, userId);
+        if (!before.isPresent() || todoRepository.deleteByIdAndUserId(id, userId) == 0) {
+            return false;
+        }
+        tombstoneRepository.save(new TodoTombstone(id, userId, LocalDateTime.now()));
+        todoStatsService.apply(userId, new TodoStatsService.Delta().remove(before.get()));
+        eventPublisher.publishEvent(TodoChangedEvent.deleted(userId, id));
+        return true;
     }
     
-    public long getTodoCountByUser(User user) {
-        return todoRepository.countByUser(user);
+    /**
+     * 所有者が一致するTodoの変更前の内容を読む
+     * todos にない場合はアーカイブを探し、あれば todos に戻してから返す
+     */
+    private Optional<TodoView> findOwnedView(Long id, Long userId) {
+        Optional<TodoView> todo = todoRepository.findViewByIdAndUserId(id, userId);
+        if (todo.isEmpty() && restoreArchived(List.of(id), userId) > 0) {
+            todo = todoRepository.findViewByIdAndUserId(id, userId);
+        }
+        return todo;
     }
     
-    public long getCompletedTodoCountByUser(User user) {
-        return todoRepository.countByUserAndCompleted(user, true);
+    /**
+     * 所有者が一致するアーカイブ済みのTodoを同じIDのまま todos に戻す
+     * アーカイブ時に一覧から外すために作った削除記録も消す。件数は両方のテーブルを数えているため変わらず、
+     * 一覧のバージョンは続く更新・削除の todoStatsService.apply で上がる
+     * @return 戻した件数
+     */
+    private int restoreArchived(Collection<Long> ids, Long userId) {
+        List<Long> archived = archiveRepository.findOwnedIdsIn(ids, userId);
+        if (archived.isEmpty()) {
+            return 0;
+        }
+        archiveRepository.copyToTodos(archived);
+        archiveRepository.deleteByIdIn(archived);
+        tombstoneRepository.deleteAllByIdInBatch(archived);
+        return archived.size();
     }
     
-    public long getPendingTodoCountByUser(User user) {
-        return todoRepository.countByUserAndCompleted(user, false);
+    /**
+     * 保持期間を過ぎた削除記録を消す
+     */
+    @Scheduled(cron = "${todoapp.delta-sync.tombstone-purge-cron:0 45 3 * * *}")
+    public void purgeTombstones() {
+        int purged = tombstoneRepository.deleteDeletedBefore(LocalDateTime.now().minus(tombstoneRetention));
+        System.out.println("削除記録を整理しました: " + purged + "件");
+    }
+    
+    public long getTodoCountByUser(Long userId) {
+        return todoStatsService.getStats(userId).total();
+    }
+    
+    public long getCompletedTodoCountByUser(Long userId) {
+        return todoStatsService.getStats(userId).completed();
+    }
+    
+    public long getPendingTodoCountByUser(Long userId) {
+        return todoStatsService.getStats(userId).pending();
+    }
+    
+    private String validateText(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("ToDoの内容は必須です");
+        }
+        
+        if (text.trim().length() > 255) {
+            throw new IllegalArgumentException("ToDoの内容は255文字以下で入力してください");
+        }
+        
+        return text.trim();
+    }
+    
+    /**
+     * 新しい順に並んだ2つの一覧を併合する
+     */
+    private static List<TodoView> mergeNewestFirst(List<TodoView> todos, List<TodoView> archived) {
+        if (archived.isEmpty()) {
+            return todos;
+        }
+        List<TodoView> merged = new ArrayList<>(todos.size() + archived.size());
+        merged.addAll(todos);
+        merged.addAll(archived);
+        merged.sort(NEWEST_FIRST);
+        return merged;
+    }
+    
+    private static void mergeNewestFirst(Iterator<TodoView> todos, Iterator<TodoView> archived, Consumer<TodoView> consumer) {
+        TodoView nextTodo = todos.hasNext() ? todos.next() : null;
+        TodoView nextArchived = archived.hasNext() ? archived.next() : null;
+        while (nextTodo != null || nextArchived != null) {
+            if (nextArchived == null || (nextTodo != null && NEWEST_FIRST.compare(nextTodo, nextArchived) <= 0)) {
+                consumer.accept(nextTodo);
+                nextTodo = todos.hasNext() ? todos.next() : null;
+            } else {
+                consumer.accept(nextArchived);
+                nextArchived = archived.hasNext() ? archived.next() : null;
+            }
+        }
+    }
+    
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
     }
     
-    public boolean isTodoOwnedByUser(Todo todo, User user) {
-        return todo.getUser().getId().equals(user.getId());
+    private User userReference(Long userId) {
+        // 存在確認済みのユーザーIDなので参照のみ取得し、usersへのSELECTを避ける
+        return userRepository.getReferenceById(userId);
     }
 }
\ No newline at end of file
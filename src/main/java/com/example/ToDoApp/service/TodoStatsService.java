@@ -0,0 +1,282 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.StatsReconciliationReport;
+import com.example.ToDoApp.dto.TodoStats;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.dto.UserTodoCounts;
+import com.example.ToDoApp.entity.UserTodoStats;
+import com.example.ToDoApp.repository.TodoArchiveRepository;
+import com.example.ToDoApp.repository.TodoRepository;
+import com.example.ToDoApp.repository.UserRepository;
+import com.example.ToDoApp.repository.UserTodoStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ユーザーごとのTodo件数を user_todo_stats に差分で保持する
+ * TodoService の変更と同じトランザクションで更新するため、件数取得はCOUNTではなく主キー検索1回で済む
+ *
+ * 同じ行に一覧のバージョン (変更のたびに1増える) も持ち、GET /api/todos の ETag に使う。
+ * バージョンは毎回主キーで読む (インスタンスごとにキャッシュすると、他のインスタンスでの変更後も古い ETag で 304 を返すため)
+ *
+ * 件数にはアーカイブしたTodo (todos_archive) も含める。アーカイブは件数を変えずにバージョンだけを上げる
+ */
+@Service
+@Transactional
+public class TodoStatsService {
+
+    @Autowired
+    private UserTodoStatsRepository statsRepository;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private TodoArchiveRepository archiveRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 整合チェックで1トランザクションに数え直すユーザー数 (この人数分の集計行を同時にロックする)
+    @Value("${todoapp.stats.reconcile-chunk-size:500}")
+    private int reconcileChunkSize;
+
+    private TransactionTemplate reconcileTransaction;
+
+    @PostConstruct
+    public void init() {
+        reconcileTransaction = new TransactionTemplate(transactionManager);
+        reconcileTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * 件数の差分
+     * 変更前のTodoを remove、変更後のTodoを add して組み立てる
+     */
+    public static class Delta {
+
+        private final LocalDate today = LocalDate.now();
+        private long total;
+        private long completed;
+        private long overdue;
+        // 件数が変わらない変更 (本文だけの更新など) でも一覧のバージョンは上げる
+        private boolean changed;
+
+        public Delta add(TodoView todo) {
+            return apply(todo, 1);
+        }
+
+        public Delta remove(TodoView todo) {
+            return apply(todo, -1);
+        }
+
+        /**
+         * 件数は変えずに一覧のバージョンだけを上げる (アーカイブ・復元で一覧から出入りした場合)
+         */
+        public Delta touch() {
+            changed = true;
+            return this;
+        }
+
+        private Delta apply(TodoView todo, int sign) {
+            changed = true;
+            total += sign;
+            if (Boolean.TRUE.equals(todo.completed())) {
+                completed += sign;
+            } else if (todo.dueDate() != null && todo.dueDate().isBefore(today)) {
+                overdue += sign;
+            }
+            return this;
+        }
+
+        boolean isEmpty() {
+            return !changed;
+        }
+    }
+
+    public void apply(Long userId, Delta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        if (statsRepository.applyDelta(userId, delta.total, delta.completed, delta.overdue) == 0) {
+            // 集計行がない既存ユーザーは、今回の変更を含めた実件数で作成する
+            // (集計行がない間のバージョンは 0 として扱っているため 1 から始める)
+            // 同じユーザーの最初の変更が同時に来た場合は、後から来た方が差分の加算になる
+            LocalDate today = LocalDate.now();
+            UserTodoCounts counts = countActual(userId, today);
+            statsRepository.insertOrApplyDelta(userId, counts.total(), counts.completed(), counts.overdue(), today,
+                delta.total, delta.completed, delta.overdue);
+        }
+    }
+
+    /**
+     * 一覧のバージョン (集計行を主キーで読む。集計行がなければ 0)
+     * 呼び出し元の読み取り専用トランザクションに参加するため、一覧と同じコネクションで読める
+     */
+    @Transactional(readOnly = true)
+    public long getListVersion(Long userId) {
+        return statsRepository.findVersionByUserId(userId).orElse(0L);
+    }
+
+    /**
+     * ユーザー登録時に空の集計行を作成する
+     */
+    public void initialize(Long userId) {
+        UserTodoStats stats = new UserTodoStats(userId);
+        stats.setOverdueDate(LocalDate.now());
+        statsRepository.save(stats);
+    }
+
+    /**
+     * 件数を返す
+     * 期限切れ件数は日付が変わった後の最初の参照時にだけ再集計する
+     */
+    public TodoStats getStats(Long userId) {
+        LocalDate today = LocalDate.now();
+        UserTodoStats stats = statsRepository.findById(userId).orElse(null);
+
+        if (stats == null) {
+            UserTodoCounts counts = countActual(userId, today);
+            statsRepository.insertIfAbsent(userId, counts.total(), counts.completed(), counts.overdue(), today);
+            stats = statsRepository.findById(userId).orElseThrow();
+        } else if (!today.equals(stats.getOverdueDate())) {
+            stats.setOverdueCount(todoRepository.countOverdueByUserId(userId, today));
+            stats.setOverdueDate(today);
+        }
+
+        return new TodoStats(
+            stats.getTotalCount(),
+            stats.getCompletedCount(),
+            stats.getTotalCount() - stats.getCompletedCount(),
+            stats.getOverdueCount());
+    }
+
+    /**
+     * 集計行とtodos・todos_archiveテーブルの実件数を突き合わせ、ずれていれば補正する
+     * reconcile-chunk-size 人ずつ別のトランザクションで、集計行をロック (SELECT ... FOR UPDATE) してから数え直す。
+     * ロック中はそのユーザーの差分の加算 (applyDelta) が待つため、数え直しと補正の間の変更を上書きしない
+     * (数え直しはロックの取得後にコミット済みの行を読むよう READ COMMITTED で実行する)
+     */
+    @Scheduled(cron = "${todoapp.stats.reconcile-cron:0 30 3 * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StatsReconciliationReport reconcile() {
+        System.out.println("Todo件数の整合チェックを開始します...");
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        LocalDate today = LocalDate.now();
+        StatsReconciliationReport report = new StatsReconciliationReport(0, 0, 0, 0);
+        Long afterId = 0L;
+        while (true) {
+            Long from = afterId;
+            ReconciledChunk chunk = reconcileTransaction.execute(status -> reconcileChunk(from, today));
+            if (chunk == null) {
+                break;
+            }
+            report = new StatsReconciliationReport(
+                report.usersChecked() + chunk.report().usersChecked(),
+                report.rowsRepaired() + chunk.report().rowsRepaired(),
+                report.rowsCreated() + chunk.report().rowsCreated(),
+                report.drift() + chunk.report().drift());
+            afterId = chunk.lastUserId();
+        }
+
+        sample.stop(meterRegistry.timer("todoapp.stats.reconcile"));
+        meterRegistry.counter("todoapp.stats.reconcile.rows", "result", "checked").increment(report.usersChecked());
+        meterRegistry.counter("todoapp.stats.reconcile.rows", "result", "repaired").increment(report.rowsRepaired());
+        meterRegistry.counter("todoapp.stats.reconcile.rows", "result", "created").increment(report.rowsCreated());
+        meterRegistry.counter("todoapp.stats.reconcile.drift").increment(report.drift());
+        System.out.println("Todo件数の整合チェック完了: 対象ユーザー " + report.usersChecked()
+            + "件, 補正 " + report.rowsRepaired() + "件, 新規作成 " + report.rowsCreated() + "件, ずれの合計 " + report.drift());
+        return report;
+    }
+
+    private record ReconciledChunk(Long lastUserId, StatsReconciliationReport report) {
+    }
+
+    /**
+     * afterId より後のユーザー1チャンク分を補正する (1トランザクション)
+     * @return 対象のユーザーがいない場合 null
+     */
+    private ReconciledChunk reconcileChunk(Long afterId, LocalDate today) {
+        List<Long> userIds = userRepository.findIdsAfter(afterId, Limit.of(reconcileChunkSize));
+        if (userIds.isEmpty()) {
+            return null;
+        }
+
+        Map<Long, UserTodoStats> stored = new HashMap<>();
+        for (UserTodoStats stats : statsRepository.findAllByUserIdInForUpdate(userIds)) {
+            stored.put(stats.getUserId(), stats);
+        }
+        Map<Long, UserTodoCounts> actual = new HashMap<>();
+        for (UserTodoCounts counts : todoRepository.countGroupByUserIdIn(userIds, today)) {
+            actual.put(counts.userId(), counts);
+        }
+        for (UserTodoCounts archived : archiveRepository.countGroupByUserIdIn(userIds)) {
+            actual.merge(archived.userId(), archived, UserTodoCounts::plus);
+        }
+
+        int rowsRepaired = 0;
+        int rowsCreated = 0;
+        long drift = 0;
+        for (Long userId : userIds) {
+            UserTodoCounts counts = actual.getOrDefault(userId, new UserTodoCounts(userId, 0L, 0L, 0L));
+            UserTodoStats stats = stored.get(userId);
+
+            if (stats == null) {
+                // 同時に最初の変更で作成された場合は、そちらの値を残す
+                statsRepository.insertIfAbsent(userId, counts.total(), counts.completed(), counts.overdue(), today);
+                rowsCreated++;
+                continue;
+            }
+
+            long rowDrift = Math.abs(stats.getTotalCount() - counts.total())
+                + Math.abs(stats.getCompletedCount() - counts.completed())
+                + (today.equals(stats.getOverdueDate()) ? Math.abs(stats.getOverdueCount() - counts.overdue()) : 0);
+            if (rowDrift > 0) {
+                rowsRepaired++;
+                drift += rowDrift;
+            }
+            apply(stats, counts, today);
+        }
+        return new ReconciledChunk(userIds.get(userIds.size() - 1),
+            new StatsReconciliationReport(userIds.size(), rowsRepaired, rowsCreated, drift));
+    }
+
+    /**
+     * todos と todos_archive の実件数 (このトランザクションの変更を含む)
+     */
+    private UserTodoCounts countActual(Long userId, LocalDate today) {
+        UserTodoCounts none = new UserTodoCounts(userId, 0L, 0L, 0L);
+        return todoRepository.countAllByUserId(userId, today).orElse(none)
+            .plus(archiveRepository.countAllByUserId(userId).orElse(none));
+    }
+
+    private static void apply(UserTodoStats stats, UserTodoCounts counts, LocalDate today) {
+        stats.setTotalCount(counts.total());
+        stats.setCompletedCount(counts.completed());
+        stats.setOverdueCount(counts.overdue());
+        stats.setOverdueDate(today);
+    }
+}
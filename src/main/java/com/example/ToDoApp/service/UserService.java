@@ -3,13 +3,17 @@ package com.example.ToDoApp.service;
 import com.example.ToDoApp.entity.User;
 import com.example.ToDoApp.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.util.Optional;
 
+/**
+ * ユーザー登録・認証
+ * BCryptの計算中にDBコネクションを持たないよう、クラス全体ではなく保存処理だけをトランザクションにする
+ */
 @Service
-@Transactional
 public class UserService {
     
     @Autowired
@@ -18,11 +22,13 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private TodoStatsService todoStatsService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
     public User registerUser(String username, String password) {
-        if (userRepository.existsByUsername(username)) {
-            throw new IllegalArgumentException("このユーザー名は既に使用されています");
-        }
-        
         if (username == null || username.trim().length() < 3) {
             throw new IllegalArgumentException("ユーザー名は3文字以上で入力してください");
         }
@@ -31,9 +37,25 @@ public class UserService {
             throw new IllegalArgumentException("パスワードは6文字以上で入力してください");
         }
         
+        if (userRepository.existsByUsername(username)) {
+            throw new IllegalArgumentException("このユーザー名は既に使用されています");
+        }
+        
         String hashedPassword = passwordEncoder.encode(password);
-        User user = new User(username.trim(), hashedPassword);
-        return userRepository.save(user);
+        User saved;
+        try {
+            saved = transactionTemplate.execute(status -> {
+                // 最初に save して採番を済ませる (採番テーブルは別コネクションを使うため、
+                // このトランザクションのコネクションを持ったまま採番を待たないようにする)
+                User user = userRepository.save(new User(username.trim(), hashedPassword));
+                todoStatsService.initialize(user.getId());
+                return user;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // 事前チェックの後に同じユーザー名が登録された場合 (usernameの一意制約)
+            throw new IllegalArgumentException("このユーザー名は既に使用されています");
+        }
+        return saved;
     }
     
     public Optional<User> authenticateUser(String username, String password) {
@@ -46,6 +68,10 @@ public class UserService {
         if (userOpt.isPresent()) {
             User user = userOpt.get();
             if (passwordEncoder.matches(password, user.getPassword())) {
+                // ハッシュの強度が設定より低ければ、平文のパスワードがあるこの時点で計算し直す
+                if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+                    return updatePasswordHash(user.getId(), passwordEncoder.encode(password));
+                }
                 return Optional.of(user);
             }
         }
@@ -53,6 +79,17 @@ public class UserService {
         return Optional.empty();
     }
     
+    /**
+     * ハッシュ済みのパスワードを保存し直す (ハッシュの強度の引き上げ)
+     */
+    public Optional<User> updatePasswordHash(Long userId, String hashedPassword) {
+        return transactionTemplate.execute(status -> userRepository.findById(userId)
+            .map(user -> {
+                user.setPassword(hashedPassword);
+                return userRepository.save(user);
+            }));
+    }
+    
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
@@ -0,0 +1,48 @@
+-- 既存環境では手作業で作成済みのテーブルがあるため IF NOT EXISTS で作成する
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL,
+    username VARCHAR(50) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS todos (
+    id BIGINT NOT NULL,
+    text VARCHAR(255) NOT NULL,
+    completed BIT(1) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6),
+    due_date DATE,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_todos_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Todo/UserのID採番テーブル (allocationSize=50 のpooled方式)
+CREATE TABLE IF NOT EXISTS id_generators (
+    sequence_name VARCHAR(255) NOT NULL,
+    next_val BIGINT NOT NULL,
+    PRIMARY KEY (sequence_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'todos', COALESCE(MAX(id), 0) + 100 FROM todos
+WHERE NOT EXISTS (SELECT 1 FROM id_generators WHERE sequence_name = 'todos');
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'users', COALESCE(MAX(id), 0) + 100 FROM users
+WHERE NOT EXISTS (SELECT 1 FROM id_generators WHERE sequence_name = 'users');
+
+-- ユーザーごとのTodo件数
+CREATE TABLE IF NOT EXISTS user_todo_stats (
+    user_id BIGINT NOT NULL,
+    total_count BIGINT NOT NULL,
+    completed_count BIGINT NOT NULL,
+    overdue_count BIGINT NOT NULL,
+    overdue_date DATE,
+    PRIMARY KEY (user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
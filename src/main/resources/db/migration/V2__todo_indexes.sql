@@ -0,0 +1,9 @@
+-- 一覧取得・キーセットページング (findViewsByUserId, findFirstPageByUserId, findPageByUserIdAfter, streamByUserId)
+-- InnoDBのセカンダリインデックスは主キーを含むため (user_id, created_at, id) の順で読める
+CREATE INDEX idx_todos_user_created ON todos (user_id, created_at);
+
+-- 完了状態での絞り込み (findViewsByUserIdAndCompleted, findPageByUserIdAndCompletedAfter, countOverdueByUserId)
+CREATE INDEX idx_todos_user_completed_created ON todos (user_id, completed, created_at);
+
+-- 期限前日通知 (findByDueDateAndCompletedFalse)
+CREATE INDEX idx_todos_due_completed ON todos (due_date, completed);
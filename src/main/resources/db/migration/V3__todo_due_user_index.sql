@@ -0,0 +1,6 @@
+-- 期限前日通知のチャンク読み込み (findFirstDueChunk, findDueChunkAfter)
+-- (due_date, completed) で絞った後、InnoDBが末尾に持つ主キーと合わせて (user_id, id) 順に読めるようにする
+CREATE INDEX idx_todos_due_completed_user ON todos (due_date, completed, user_id);
+
+-- 先頭列が同じ旧インデックスは不要になる
+DROP INDEX idx_todos_due_completed ON todos;
@@ -0,0 +1,18 @@
+-- 一覧のバージョン (GET /api/todos の ETag)
+-- Todoの作成・更新・削除のたびに、件数と同じUPDATE文で1増やす
+ALTER TABLE user_todo_stats ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- 削除したTodoの記録 (updatedSince による差分取得で削除を伝える)
+-- todoapp.delta-sync.tombstone-retention を過ぎたものは定期的に削除する
+CREATE TABLE IF NOT EXISTS todo_tombstones (
+    todo_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    deleted_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (todo_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 差分取得 (findDeletedIdsSince)
+CREATE INDEX idx_todo_tombstones_user_deleted ON todo_tombstones (user_id, deleted_at);
+
+-- 保持期間を過ぎた記録の削除 (deleteDeletedBefore)
+CREATE INDEX idx_todo_tombstones_deleted ON todo_tombstones (deleted_at);
@@ -0,0 +1,20 @@
+-- 完了してから todoapp.archive.min-age を過ぎたTodoの移動先 (TodoArchiver)
+-- 列は todos と同じで、移動した時刻を加える。IDは todos のものをそのまま使う
+CREATE TABLE IF NOT EXISTS todos_archive (
+    id BIGINT NOT NULL,
+    text VARCHAR(255) NOT NULL,
+    completed BIT(1) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6),
+    due_date DATE,
+    user_id BIGINT NOT NULL,
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_todos_archive_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 完了フィルタの一覧・キーセットページング (TodoArchiveRepository.findViewsByUserId, findPageByUserIdAfter)
+CREATE INDEX idx_todos_archive_user_created ON todos_archive (user_id, created_at);
+
+-- アーカイブ対象の読み込み (findArchivable: completed = true AND updated_at < ? を (updated_at, id) 順に)
+CREATE INDEX idx_todos_completed_updated ON todos (completed, updated_at);
@@ -0,0 +1,5 @@
+-- 差分取得 (findViewsChangedSince: user_id = ? AND updated_at > ?)
+-- 作成時にも updated_at を入れるようにしたため、作成だけされた既存の行は created_at で埋める
+UPDATE todos SET updated_at = created_at WHERE updated_at IS NULL;
+
+CREATE INDEX idx_todos_user_updated ON todos (user_id, updated_at);
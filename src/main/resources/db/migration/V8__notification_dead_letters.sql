@@ -0,0 +1,15 @@
+-- 送信を諦めたSlack通知 (NotificationDispatcher のデッドレター)
+-- 再起動やインスタンスの入れ替え後も確認できるようにメモリではなくテーブルに残す
+CREATE TABLE IF NOT EXISTS notification_dead_letters (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    destination VARCHAR(1024) NOT NULL,
+    text TEXT NOT NULL,
+    message_count INT NOT NULL,
+    attempts INT NOT NULL,
+    reason VARCHAR(1024) NOT NULL,
+    failed_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 保持期間を過ぎた行の削除 (NotificationDeadLetterStore.purge)
+CREATE INDEX idx_notification_dead_letters_failed ON notification_dead_letters (failed_at);
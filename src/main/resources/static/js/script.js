@@ -2,11 +2,46 @@ class TodoApp {
     constructor() {
         this.todos = [];
         this.currentFilter = 'all';
+        // 完了タブの一覧。アーカイブしたTodoは this.todos に含まれないため、サーバーの filter=completed から取得する
+        // (完了タブ以外では null)
+        this.completedTodos = null;
+        this.completedTimer = null;
         this.isEditing = false;
+        // 検索中は一致したTodoのIDの集合、検索していない場合は null
+        this.searchIds = null;
+        this.searchTimer = null;
+        // サーバーからの変更通知 (SSE)。一覧の読み込み中に届いた変更は pendingChanges に溜めて後で反映する
+        this.eventSource = null;
+        this.pendingChanges = null;
+        // 前回の一覧取得の時刻 (updatedSince に渡して差分だけを取得する)
+        this.syncedAt = null;
+        // 変更通知は接続したインスタンスの変更しか届かないため、差分の取得も定期的に行う
+        this.syncTimer = null;
         
         this.initializeElements();
         this.attachEventListeners();
-        this.loadTodos();
+        this.hydrate();
+    }
+
+    // サーバーが描画した先頭ページ (initial-state) から初期化する
+    // 埋め込まれていない場合と、先頭ページより後にTodoがある場合は /api/todos から全件を取得する
+    hydrate() {
+        const stateElement = document.getElementById('initial-state');
+        if (!stateElement) {
+            return this.loadTodos();
+        }
+        
+        const state = JSON.parse(stateElement.textContent);
+        if (state.hasMore) {
+            // 描画済みの先頭ページを表示したまま残りを取得する
+            return this.loadTodos();
+        }
+        
+        this.todos = state.todos;
+        this.syncedAt = state.syncedAt;
+        // 同じ内容で描き直して操作用のイベントを付ける
+        this.updateTodoDisplay();
+        this.connectChanges(state.feedPosition);
     }
 
     initializeElements() {
@@ -25,6 +60,7 @@ class TodoApp {
         
         // ボタン要素
         this.filterBtns = document.querySelectorAll('.filter-btn');
+        this.searchInput = document.getElementById('search-input');
         
         // テンプレート
         this.todoItemTemplate = document.getElementById('todo-item-template');
@@ -38,6 +74,37 @@ class TodoApp {
         this.filterBtns.forEach(btn => {
             btn.addEventListener('click', (e) => this.handleFilterChange(e));
         });
+        
+        // 検索 (入力が止まってから問い合わせる)
+        this.searchInput.addEventListener('input', () => {
+            clearTimeout(this.searchTimer);
+            this.searchTimer = setTimeout(() => this.handleSearch(), 250);
+        });
+    }
+
+    // 検索処理
+    async handleSearch() {
+        const query = this.searchInput.value.trim();
+        if (!query) {
+            this.searchIds = null;
+            this.updateTodoDisplay();
+            return;
+        }
+        
+        try {
+            const response = await this.apiCall('/api/todos/search?limit=200&q=' + encodeURIComponent(query), {}, 'GET');
+            // 結果が返るまでに検索語が変わっていれば捨てる
+            if (query !== this.searchInput.value.trim()) return;
+            
+            if (response.success) {
+                this.searchIds = new Set(response.todos.map(t => t.id));
+                this.updateTodoDisplay();
+            } else {
+                console.error('Todo検索失敗:', response.message);
+            }
+        } catch (error) {
+            console.error('Todo検索エラー:', error);
+        }
     }
 
     // Todo追加処理
@@ -62,10 +129,13 @@ class TodoApp {
             const response = await this.apiCall('/api/todos', todoData, 'POST');
 
             if (response.success) {
-                this.todos.unshift(response.todo);
+                // 変更通知が先に届いている場合もあるため、IDで上書きする
+                this.upsertTodo(response.todo);
                 this.todoInput.value = '';
                 this.dueDateInput.value = '';
                 this.updateTodoDisplay();
+                // 検索中は追加したTodoが一致するかをサーバーに問い合わせ直す
+                if (this.searchIds) this.handleSearch();
             } else {
                 alert('Todo追加に失敗しました: ' + (response.message || ''));
             }
@@ -78,26 +148,143 @@ class TodoApp {
     // Todo読み込み
     async loadTodos() {
         this.showLoading(true);
+        this.pendingChanges = [];
         
         try {
             const response = await this.apiCall('/api/todos', {}, 'GET');
             
             if (response.success) {
                 this.todos = response.todos || [];
+                this.syncedAt = response.syncedAt;
+                this.applyPendingChanges();
                 this.updateTodoDisplay();
+                if (this.completedTodos) this.scheduleCompletedReload();
+                
+                // 以降の変更は一覧を取得し直さずに通知で受け取る
+                if (!this.eventSource) {
+                    this.connectChanges(response.feedPosition);
+                }
             } else {
                 console.error('Todo読み込み失敗:', response.message);
             }
         } catch (error) {
             console.error('Todo読み込みエラー:', error);
         } finally {
+            this.pendingChanges = null;
             this.showLoading(false);
         }
     }
 
+    // 前回の取得以降の差分だけを取得して反映する
+    async syncTodos() {
+        if (!this.syncedAt) {
+            return this.loadTodos();
+        }
+        this.pendingChanges = [];
+        
+        try {
+            const response = await this.apiCall('/api/todos?updatedSince=' + encodeURIComponent(this.syncedAt), {}, 'GET');
+            
+            if (response.success) {
+                if (response.full) {
+                    this.todos = response.todos;
+                } else {
+                    const deleted = new Set(response.deleted);
+                    this.todos = this.todos.filter(t => !deleted.has(t.id));
+                    // 新しい順に並んでいるため、古いものから先頭に追加する
+                    [...response.todos].reverse().forEach(todo => this.upsertTodo(todo));
+                }
+                this.syncedAt = response.syncedAt;
+                this.applyPendingChanges();
+                this.updateTodoDisplay();
+                if (this.completedTodos) this.scheduleCompletedReload();
+                if (this.searchIds) this.handleSearch();
+            } else {
+                console.error('Todo同期失敗:', response.message);
+            }
+        } catch (error) {
+            console.error('Todo同期エラー:', error);
+        } finally {
+            this.pendingChanges = null;
+        }
+    }
+
+    // 読み込み中に届いた変更は読み込んだ内容より新しい可能性があるため上から適用する
+    applyPendingChanges() {
+        const pending = this.pendingChanges || [];
+        this.pendingChanges = null;
+        pending.forEach(change => this.applyChange(change));
+    }
+
+    // 変更通知の受信開始
+    // 切断時はブラウザが Last-Event-ID 付きで自動的に再接続し、その続きから受け取る
+    connectChanges(position) {
+        const url = '/api/todos/changes' + (position ? '?since=' + encodeURIComponent(position) : '');
+        this.eventSource = new EventSource(url);
+        
+        // 他のインスタンスで行われた変更は通知されないため、前回の取得以降の差分を定期的に取得する
+        if (!this.syncTimer) {
+            this.syncTimer = setInterval(() => {
+                if (!this.pendingChanges) this.syncTodos();
+            }, 60000);
+        }
+        
+        this.eventSource.addEventListener('todo', (e) => {
+            this.applyChange(JSON.parse(e.data));
+            if (this.pendingChanges) return;
+            
+            if (this.completedTodos) {
+                // 完了タブはサーバーから取得し直す (続けて届いた場合はまとめる)
+                this.scheduleCompletedReload();
+            }
+            if (this.searchIds) {
+                // 検索中は一致するかをサーバーに問い合わせ直す (続けて届いた場合はまとめる)
+                clearTimeout(this.searchTimer);
+                this.searchTimer = setTimeout(() => this.handleSearch(), 250);
+            } else if (!this.isEditing) {
+                this.updateTodoDisplay();
+            }
+        });
+        
+        // 続きを送れない (再起動や変更が多すぎた) 場合は、前回の取得以降の差分を取得し直す
+        this.eventSource.addEventListener('reset', () => this.syncTodos());
+        
+        this.eventSource.addEventListener('error', () => {
+            // ログアウトなどで再接続できなくなった場合は、少し待って一覧の取得からやり直す
+            if (this.eventSource.readyState === EventSource.CLOSED) {
+                this.eventSource = null;
+                setTimeout(() => this.loadTodos(), 5000);
+            }
+        });
+    }
+
+    // 変更通知の反映 (同じ変更が複数回届いても結果は変わらない)
+    applyChange(change) {
+        if (this.pendingChanges) {
+            this.pendingChanges.push(change);
+            return;
+        }
+        
+        if (change.type === 'deleted') {
+            this.todos = this.todos.filter(t => t.id !== change.id);
+        } else {
+            this.upsertTodo(change.todo);
+        }
+    }
+
+    // IDが同じTodoがあれば置き換え、なければ先頭 (新しい順) に追加する
+    upsertTodo(todo) {
+        const index = this.todos.findIndex(t => t.id === todo.id);
+        if (index >= 0) {
+            this.todos[index] = todo;
+        } else {
+            this.todos.unshift(todo);
+        }
+    }
+
     // Todo完了切り替え
     async toggleTodo(id) {
-        const todo = this.todos.find(t => t.id === id);
+        const todo = this.findTodo(id);
         if (!todo) return;
 
         try {
@@ -106,7 +293,8 @@ class TodoApp {
             }, 'PUT');
 
             if (response.success) {
-                todo.completed = !todo.completed;
+                const completed = !todo.completed;
+                this.updateLocalTodo(id, t => t.completed = completed);
                 this.updateTodoDisplay();
             }
         } catch (error) {
@@ -129,7 +317,7 @@ class TodoApp {
         const saveBtn = todoItem.querySelector('.save-btn');
         const cancelBtn = todoItem.querySelector('.cancel-btn');
         
-        const todo = this.todos.find(t => t.id === id);
+        const todo = this.findTodo(id);
         
         textContainer.style.display = 'none';
         editContainer.style.display = 'block';
@@ -178,16 +366,16 @@ class TodoApp {
             const response = await this.apiCall(`/api/todos/${id}`, updateData, 'PUT');
 
             if (response.success) {
-                const todo = this.todos.find(t => t.id === id);
-                if (todo) {
+                this.updateLocalTodo(id, todo => {
                     todo.text = newText;
                     if (newDueDate) {
                         todo.dueDate = newDueDate;
                     } else {
                         todo.dueDate = null;
                     }
-                    this.updateTodoDisplay();
-                }
+                });
+                this.updateTodoDisplay();
+                if (this.searchIds) this.handleSearch();
             }
         } catch (error) {
             console.error('Todo編集エラー:', error);
@@ -211,6 +399,9 @@ class TodoApp {
 
             if (response.success) {
                 this.todos = this.todos.filter(t => t.id !== id);
+                if (this.completedTodos) {
+                    this.completedTodos = this.completedTodos.filter(t => t.id !== id);
+                }
                 this.updateTodoDisplay();
             }
         } catch (error) {
@@ -226,9 +417,55 @@ class TodoApp {
         this.filterBtns.forEach(btn => btn.classList.remove('active'));
         e.target.classList.add('active');
         
+        if (filter === 'completed') {
+            this.loadCompletedTodos();
+            return;
+        }
+        this.completedTodos = null;
         this.updateTodoDisplay();
     }
 
+    // 完了タブの一覧をサーバーから取得する (アーカイブしたTodoを含む)
+    async loadCompletedTodos() {
+        this.showLoading(true);
+        
+        try {
+            const response = await this.apiCall('/api/todos?filter=completed', {}, 'GET');
+            // 結果が返るまでに別のタブに切り替えていれば捨てる
+            if (this.currentFilter !== 'completed') return;
+            
+            if (response.success) {
+                this.completedTodos = response.todos || [];
+                this.updateTodoDisplay();
+            } else {
+                console.error('完了済みTodo読み込み失敗:', response.message);
+            }
+        } catch (error) {
+            console.error('完了済みTodo読み込みエラー:', error);
+        } finally {
+            this.showLoading(false);
+        }
+    }
+
+    scheduleCompletedReload() {
+        clearTimeout(this.completedTimer);
+        this.completedTimer = setTimeout(() => this.loadCompletedTodos(), 250);
+    }
+
+    // 表示中のTodo (完了タブではアーカイブしたTodoも探す)
+    findTodo(id) {
+        return this.todos.find(t => t.id === id)
+            || (this.completedTodos && this.completedTodos.find(t => t.id === id));
+    }
+
+    // 両方の一覧にある同じTodoに変更を反映する
+    updateLocalTodo(id, update) {
+        [this.todos, this.completedTodos || []].forEach(list => {
+            const todo = list.find(t => t.id === id);
+            if (todo) update(todo);
+        });
+    }
+
     // Todo表示更新
     updateTodoDisplay() {
         const filteredTodos = this.getFilteredTodos();
@@ -253,13 +490,16 @@ class TodoApp {
 
     // フィルター済みTodo取得
     getFilteredTodos() {
+        // 完了タブは取得が終わるまで空
+        const source = this.currentFilter === 'completed' ? (this.completedTodos || []) : this.todos;
+        const todos = this.searchIds ? source.filter(t => this.searchIds.has(t.id)) : source;
         switch (this.currentFilter) {
             case 'completed':
-                return this.todos.filter(t => t.completed);
+                return todos.filter(t => t.completed);
             case 'pending':
-                return this.todos.filter(t => !t.completed);
+                return todos.filter(t => !t.completed);
             default:
-                return this.todos;
+                return todos;
         }
     }
 
@@ -366,8 +606,9 @@ class TodoApp {
     // Todo件数更新
     updateTodoCount() {
         const totalCount = this.todos.length;
-        const completedCount = this.todos.filter(t => t.completed).length;
-        const pendingCount = totalCount - completedCount;
+        const pendingCount = this.todos.filter(t => !t.completed).length;
+        // 完了済みはアーカイブしたTodoを含む
+        const completedCount = (this.completedTodos || []).filter(t => t.completed).length;
         
         switch (this.currentFilter) {
             case 'completed':
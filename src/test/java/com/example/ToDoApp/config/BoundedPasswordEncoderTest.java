@@ -0,0 +1,97 @@
+package com.example.ToDoApp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * release まで計算が終わらないエンコーダー (ハッシュ計算中のスレッドを占有する)
+     */
+    private final PasswordEncoder slowEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    };
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.counter("todoapp.password.hash.rejected", "reason", reason).count();
+    }
+
+    @Test
+    void rejectsImmediatelyWhenTheQueueIsFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, Duration.ofSeconds(10), meterRegistry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        while (meterRegistry.get("todoapp.password.hash.queue").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        long start = System.nanoTime();
+        assertThrows(PasswordHashingRejectedException.class, () -> encoder.encode("c"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500), "満杯の場合は待たずに断る");
+        assertEquals(1, rejected("queue_full"));
+
+        release.countDown();
+        assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsCallersThatWaitTooLongAndFreesTheirQueueSlot() throws Exception {
+        encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, Duration.ofMillis(100), meterRegistry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(PasswordHashingRejectedException.class, () -> encoder.encode("b"));
+        assertEquals(0, meterRegistry.get("todoapp.password.hash.queue").gauge().value());
+
+        // 計算中の呼び出し元も上限を超えれば断られ、計算は中断される
+        ExecutionException timedOut = assertThrows(ExecutionException.class, () -> running.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(PasswordHashingRejectedException.class, timedOut.getCause());
+        assertEquals(2, rejected("timeout"));
+
+        release.countDown();
+        assertTrue(encoder.matches("c", "hash:c"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.entity.User;
+import com.example.ToDoApp.service.CustomUserDetails;
+import com.example.ToDoApp.service.UserService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.session.Session;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.security.SpringSessionBackedSessionRegistry;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+
+/**
+ * jdbc のセッションストアで、別のインスタンスからもセッションを読めることと、同時ログインの制限がDB経由で効くことを確認する
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(StatementCounter.class)
+class JdbcSessionStoreTest {
+
+    private static final String COOKIE = "TODOAPP_SESSION";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SessionRepositoryCustomizer<JdbcIndexedSessionRepository> compactJdbcSessionAttributes;
+
+    private Cookie login(String username) throws Exception {
+        Cookie cookie = mockMvc.perform(formLogin("/login").user(username).password("password"))
+            .andReturn().getResponse().getCookie(COOKIE);
+        assertNotNull(cookie);
+        return cookie;
+    }
+
+    private static String sessionId(Cookie cookie) {
+        return new String(Base64.getDecoder().decode(cookie.getValue()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 同じDBを使う別のインスタンスのセッションストア
+     */
+    private JdbcIndexedSessionRepository otherInstance() {
+        JdbcIndexedSessionRepository repository = new JdbcIndexedSessionRepository(jdbcTemplate, new TransactionTemplate(transactionManager));
+        compactJdbcSessionAttributes.customize(repository);
+        return repository;
+    }
+
+    @Test
+    void sessionIsSharedThroughTheDatabase() throws Exception {
+        User user = userService.registerUser("session-shared", "password");
+        Cookie cookie = login("session-shared");
+
+        // ログイン済みのリクエストには一覧の2文に加えて、セッションの読み込み3回 (SessionRepositoryFilter、
+        // 同時ログインの判定、コミット後のID確認) と最終アクセス時刻の更新が加わる
+        statementCounter.expectAtMost(6, "GET /api/todos (jdbc セッション)", () -> mockMvc.perform(get("/api/todos").cookie(cookie))
+            .andExpect(jsonPath("$.success").value(true)));
+
+        Session session = otherInstance().findById(sessionId(cookie));
+        SecurityContext context = session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+        assertEquals(user.getId(), ((CustomUserDetails) context.getAuthentication().getPrincipal()).getUserId());
+
+        Integer size = jdbcTemplate.queryForObject(
+            "SELECT LENGTH(ATTRIBUTE_BYTES) FROM SPRING_SESSION_ATTRIBUTES WHERE SESSION_PRIMARY_ID = "
+                + "(SELECT PRIMARY_ID FROM SPRING_SESSION WHERE SESSION_ID = ?) AND ATTRIBUTE_NAME = ?",
+            Integer.class, sessionId(cookie), HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+        assertTrue(size < 200, size + "B");
+    }
+
+    @Test
+    void newLoginExpiresTheOlderSessionOnEveryInstance() throws Exception {
+        userService.registerUser("session-single", "password");
+        Cookie first = login("session-single");
+        Cookie second = login("session-single");
+
+        mockMvc.perform(get("/api/todos").cookie(first))
+            .andExpect(content().string(containsString("expired")));
+        mockMvc.perform(get("/api/todos").cookie(second))
+            .andExpect(jsonPath("$.success").value(true));
+
+        List<SessionInformation> active = new SpringSessionBackedSessionRegistry<>(otherInstance())
+            .getAllSessions("session-single", false);
+        assertEquals(List.of(sessionId(second)), active.stream().map(SessionInformation::getSessionId).toList());
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.service.CustomUserDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapSessionRepositoryTest {
+
+    private static final String SECURITY_CONTEXT = HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY;
+
+    private final CompactSessionSerializer serializer = new CompactSessionSerializer(getClass().getClassLoader());
+    private final OffHeapSessionRepository repository = new OffHeapSessionRepository(serializer, Duration.ofMinutes(30), 64 * 1024, 1024 * 1024);
+
+    private static SecurityContext login(long userId, String username) {
+        CustomUserDetails user = new CustomUserDetails(userId, username, AuthorityUtils.NO_AUTHORITIES);
+        UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+        token.setDetails(new WebAuthenticationDetails("192.0.2.1", null));
+        return new SecurityContextImpl(token);
+    }
+
+    @Test
+    void securityContextIsStoredInACompactForm() throws Exception {
+        SecurityContext context = login(42, "alice");
+
+        byte[] compact = serializer.serialize(context);
+        ByteArrayOutputStream java = new ByteArrayOutputStream();
+        new DefaultSerializer().serialize(context, java);
+        System.out.printf("SecurityContext: compact %dB / Javaシリアライズ %dB%n", compact.length, java.size());
+        assertTrue(compact.length * 10 < java.size(), compact.length + "B");
+
+        SecurityContext restored = assertInstanceOf(SecurityContext.class, serializer.deserialize(compact));
+        CustomUserDetails user = assertInstanceOf(CustomUserDetails.class, restored.getAuthentication().getPrincipal());
+        assertEquals(42L, user.getUserId());
+        assertEquals("alice", user.getUsername());
+        assertTrue(restored.getAuthentication().isAuthenticated());
+        assertEquals(new WebAuthenticationDetails("192.0.2.1", null), restored.getAuthentication().getDetails());
+
+        // それ以外の属性はそのまま往復する
+        assertEquals("text", serializer.deserialize(serializer.serialize("text")));
+        assertEquals(Map.of("key", 1), serializer.deserialize(serializer.serialize(new HashMap<>(Map.of("key", 1)))));
+    }
+
+    @Test
+    void findsSessionsByPrincipalAndFollowsSessionIdChanges() {
+        MapSession session = repository.createSession();
+        session.setAttribute(SECURITY_CONTEXT, login(1, "alice"));
+        repository.save(session);
+
+        MapSession loaded = repository.findById(session.getId());
+        assertEquals(1L, ((CustomUserDetails) ((SecurityContext) loaded.getAttribute(SECURITY_CONTEXT))
+            .getAuthentication().getPrincipal()).getUserId());
+        assertEquals(Set.of(session.getId()), repository.findByPrincipalName("alice").keySet());
+
+        // ログイン時のID変更
+        String oldId = loaded.getId();
+        loaded.changeSessionId();
+        repository.save(loaded);
+        assertNull(repository.findById(oldId));
+        assertEquals(Set.of(loaded.getId()), repository.findByPrincipalName("alice").keySet());
+
+        repository.deleteById(loaded.getId());
+        assertEquals(Map.of(), repository.findByIndexNameAndIndexValue(
+            FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME, "alice"));
+    }
+
+    @Test
+    void expiredSessionsAreNotReturned() {
+        MapSession session = repository.createSession();
+        session.setAttribute(SECURITY_CONTEXT, login(1, "alice"));
+        session.setLastAccessedTime(Instant.now().minus(Duration.ofHours(1)));
+        repository.save(session);
+
+        assertNull(repository.findById(session.getId()));
+        assertEquals(Map.of(), repository.findByPrincipalName("alice"));
+
+        MapSession idle = repository.createSession();
+        idle.setLastAccessedTime(Instant.now().minus(Duration.ofHours(1)));
+        repository.save(idle);
+        repository.purgeExpiredSessions();
+        assertNull(repository.findById(idle.getId()));
+    }
+
+    @Test
+    void blocksAreReusedAndSessionsBeyondTheLimitGoToTheHeap() {
+        // 4KBのスラブ2枚まで (128Bのブロックが64個)
+        OffHeapSessionRepository small = new OffHeapSessionRepository(serializer, Duration.ofMinutes(30), 4096, 8192);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        small.bindTo(registry);
+
+        MapSession session = small.createSession();
+        for (int i = 0; i < 10_000; i++) {
+            session.setAttribute("n", "value-" + i);
+            small.save(session);
+        }
+        assertEquals("value-9999", small.findById(session.getId()).getAttribute("n"));
+        assertEquals(4096, registry.get("todoapp.session.offheap.bytes").gauge().value());
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            MapSession other = small.createSession();
+            other.setAttribute("n", "other-" + i);
+            small.save(other);
+            ids.add(other.getId());
+        }
+        assertEquals(8192, registry.get("todoapp.session.offheap.bytes").gauge().value());
+        assertEquals(37, registry.get("todoapp.session.offheap.heap.sessions").gauge().value());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals("other-" + i, small.findById(ids.get(i)).getAttribute("n"));
+        }
+
+        ids.forEach(small::deleteById);
+        small.deleteById(session.getId());
+        assertEquals(0, registry.get("todoapp.session.offheap.used.bytes").gauge().value());
+        assertEquals(0, registry.get("todoapp.session.offheap.heap.sessions").gauge().value());
+    }
+
+    @Test
+    void readsDoNotSeeABlockReusedByAnotherSession() throws Exception {
+        MapSession first = repository.createSession();
+        MapSession second = repository.createSession();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (MapSession session : List.of(first, second)) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; System.nanoTime() < deadline; i++) {
+                        session.setAttribute("owner", session.getId() + "-" + i);
+                        repository.save(session);
+                    }
+                }));
+            }
+            tasks.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    MapSession loaded = repository.findById(first.getId());
+                    if (loaded != null) {
+                        String owner = loaded.getAttribute("owner");
+                        assertTrue(owner.startsWith(first.getId() + "-"), owner);
+                    }
+                }
+            }));
+            for (Future<?> task : tasks) {
+                task.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.config.QueryCapture.CapturedQuery;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EXPLAIN の対象が、リポジトリメソッドを実行して Hibernate が実際に送ったSQLであることを確認する
+ * (H2 では EXPLAIN 自体はスキップされるため、集めたSQLとパラメータだけを見る)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class QueryPlanCheckerTest {
+
+    @Autowired
+    private QueryPlanChecker queryPlanChecker;
+
+    @Test
+    void capturesTheSqlHibernateSendsForEachCheckedMethod() {
+        Map<String, List<CapturedQuery>> captured = queryPlanChecker.captureQueries();
+
+        assertEquals(19, captured.size(), "実行に失敗したメソッドがあります: " + captured.keySet());
+        captured.forEach((method, statements) -> {
+            assertFalse(statements.isEmpty(), method + " のSQLを取得できませんでした");
+            for (CapturedQuery statement : statements) {
+                assertTrue(statement.sql().toLowerCase(Locale.ROOT).startsWith("select"), statement.sql());
+                assertEquals(statement.sql().chars().filter(c -> c == '?').count(), statement.parameters().size(),
+                    method + " のパラメータ数がSQLと一致しません: " + statement.sql());
+            }
+        });
+
+        String changedSince = captured.get("TodoRepository.findViewsChangedSince").get(0).sql().toLowerCase(Locale.ROOT);
+        assertTrue(changedSince.contains("updated_at>?") || changedSince.contains("updated_at > ?"), changedSince);
+    }
+
+    @Test
+    void proxiesConnectionsOnlyDuringCapture() throws Exception {
+        Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {Connection.class}, (proxy, method, args) -> null);
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {DataSource.class},
+            (proxy, method, args) -> method.getName().equals("getConnection") ? connection : null);
+        QueryCapture queryCapture = new QueryCapture();
+        DataSource wrapped = (DataSource) queryCapture.postProcessAfterInitialization(dataSource, "dataSource");
+
+        // チェックの外では元のコネクションをそのまま返す
+        assertSame(connection, wrapped.getConnection());
+        List<Connection> during = new ArrayList<>();
+        queryCapture.capture(() -> {
+            try {
+                during.add(wrapped.getConnection());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertNotSame(connection, during.get(0));
+        assertSame(connection, wrapped.getConnection());
+    }
+}
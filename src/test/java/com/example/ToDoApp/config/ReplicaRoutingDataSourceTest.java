@@ -0,0 +1,226 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.controller.TodoController;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.entity.Todo;
+import com.example.ToDoApp.entity.User;
+import com.example.ToDoApp.service.CustomUserDetails;
+import com.example.ToDoApp.service.RecentWriteTracker;
+import com.example.ToDoApp.service.TodoFirstPageRenderer;
+import com.example.ToDoApp.service.TodoService;
+import com.example.ToDoApp.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * プライマリと、レプリケーションが遅れているレプリカ (別のH2データベース) の2台構成で振り分けを確認する
+ * レプリカへの反映は、テストが replicate() でプライマリの内容を丸ごと写した時点までしか進まない
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "todoapp.datasource.replicas.urls=" + ReplicaRoutingDataSourceTest.REPLICA_URL,
+    "todoapp.datasource.replicas.lag-query=SELECT seconds FROM replica_lag",
+    "todoapp.datasource.replicas.max-lag=3s",
+    "todoapp.datasource.replicas.health-check-interval=1h",
+    "todoapp.datasource.read-your-writes-window=1m"
+})
+class ReplicaRoutingDataSourceTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:todoapp-replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TodoController todoController;
+
+    @Autowired
+    private TodoFirstPageRenderer todoFirstPageRenderer;
+
+    @TempDir
+    private Path tempDir;
+
+    @AfterEach
+    void logout() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * プライマリの現在の内容をレプリカに写し、遅延0としてレプリカを振り分け先に入れる
+     */
+    private ReplicaRoutingDataSource replicate() throws Exception {
+        String script = tempDir.resolve("snapshot.sql").toString();
+        jdbcTemplate.execute("SCRIPT TO '" + script + "'");
+        replica.execute("DROP ALL OBJECTS");
+        replica.execute("RUNSCRIPT FROM '" + script + "'");
+        replica.execute("CREATE TABLE replica_lag (seconds INT)");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+
+        ReplicaRoutingDataSource router = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        router.checkHealth();
+        assertEquals(1, router.getHealthyReplicaCount());
+        return router;
+    }
+
+    /**
+     * session を持つリクエストの処理中にする (同じ session を渡すと、共有されたセッションを読み込んだ別のインスタンスでの次のリクエストになる)
+     */
+    private static void inRequest(MockHttpSession session, User user) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        login(user);
+    }
+
+    private static void login(User user) {
+        CustomUserDetails principal = new CustomUserDetails(user.getId(), user.getUsername(), AuthorityUtils.NO_AUTHORITIES);
+        SecurityContextHolder.getContext().setAuthentication(
+            UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+    }
+
+    private List<String> readTexts(User user) {
+        return todoService.getChangesSince(user.getId(), LocalDateTime.now().minusDays(1)).todos().stream()
+            .map(TodoView::text)
+            .toList();
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaExceptForTheUserWhoJustWrote() throws Exception {
+        User writer = userService.registerUser("replica-writer", "password");
+        User reader = userService.registerUser("replica-reader", "password");
+        todoService.createTodo("replicated", writer.getId());
+        replicate();
+
+        MockHttpSession writerSession = new MockHttpSession();
+        inRequest(writerSession, writer);
+        Todo fresh = todoService.createTodo("not yet replicated", writer.getId());
+
+        // リクエストの外のジョブ・別のセッションの読み取りは遅れているレプリカから読む
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+        assertEquals(List.of("replicated"), readTexts(writer));
+        inRequest(new MockHttpSession(), reader);
+        assertEquals(List.of("replicated"), readTexts(writer));
+
+        // 直前に変更したセッションの次のリクエストはプライマリから読む (変更した時刻はセッションにある)
+        inRequest(writerSession, writer);
+        assertEquals(List.of("not yet replicated", "replicated"), readTexts(writer));
+
+        // 読み取り専用でないトランザクションは常にプライマリ
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+        assertTrue(todoService.findById(fresh.getId()).isPresent());
+
+        // ログイン時のユーザー検索は登録直後でも見つかる (レプリカにはまだない)
+        User late = userService.registerUser("replica-late", "password");
+        assertEquals(late.getId(), userService.authenticateUser("replica-late", "password").orElseThrow().getId());
+    }
+
+    @Test
+    void laggingReplicaIsTakenOutOfRotationUntilItCatchesUp() throws Exception {
+        User user = userService.registerUser("replica-lag", "password");
+        ReplicaRoutingDataSource router = replicate();
+        todoService.createTodo("written after the snapshot", user.getId());
+
+        assertEquals(List.of(), readTexts(user));
+
+        replica.update("UPDATE replica_lag SET seconds = 10");
+        router.checkHealth();
+        assertEquals(0, router.getHealthyReplicaCount());
+        assertEquals(List.of("written after the snapshot"), readTexts(user));
+
+        replica.update("UPDATE replica_lag SET seconds = 1");
+        router.checkHealth();
+        assertEquals(1, router.getHealthyReplicaCount());
+        assertEquals(List.of(), readTexts(user));
+
+        // 停止したレプリカも外す
+        replica.execute("DROP TABLE replica_lag");
+        router.checkHealth();
+        assertEquals(0, router.getHealthyReplicaCount());
+        assertEquals(List.of("written after the snapshot"), readTexts(user));
+    }
+
+    @Test
+    void listVersionAndListAreReadFromTheSameReplica() throws Exception {
+        User user = userService.registerUser("replica-etag", "password");
+        todoService.createTodo("replicated-todo", user.getId());
+        replicate();
+        todoService.createTodo("fresh-todo", user.getId());
+        long replicaVersion = replica.queryForObject(
+            "SELECT version FROM user_todo_stats WHERE user_id = ?", Long.class, user.getId());
+
+        // ETag はレプリカのバージョンで、一覧もレプリカの内容 (新しいバージョンの ETag で古い一覧を返さない)
+        CustomUserDetails principal = new CustomUserDetails(user.getId(), user.getUsername(), AuthorityUtils.NO_AUTHORITIES);
+        ResponseEntity<Map<String, Object>> response = todoController.getTodos(null, null, null, null, principal,
+            new ServletWebRequest(new MockHttpServletRequest()));
+        assertEquals("\"" + user.getId() + "-" + replicaVersion + "\"", response.getHeaders().getETag());
+        assertEquals(1, ((List<?>) response.getBody().get("todos")).size());
+
+        // 描画結果もレプリカのバージョンでキャッシュされ、レプリカが追いつけば描画し直される
+        assertFalse(todoFirstPageRenderer.render(user.getId()).listHtml().contains("fresh-todo"));
+        replicate();
+        assertTrue(todoFirstPageRenderer.render(user.getId()).listHtml().contains("fresh-todo"));
+    }
+
+    @Test
+    void destroyClosesThePrimaryPoolBehindTheLazyProxy() throws Exception {
+        HikariDataSource primaryPool = new HikariDataSource();
+        primaryPool.setJdbcUrl("jdbc:h2:mem:todoapp-shutdown;DB_CLOSE_DELAY=-1");
+        primaryPool.setUsername("sa");
+        ReplicaRoutingConfig.ReplicaRoutingPostProcessor processor = new ReplicaRoutingConfig.ReplicaRoutingPostProcessor(
+            new MockEnvironment().withProperty("todoapp.datasource.replicas.urls", REPLICA_URL),
+            new StaticListableBeanFactory().getBeanProvider(RecentWriteTracker.class));
+
+        DataSource routed = (DataSource) processor.postProcessAfterInitialization(primaryPool, "dataSource");
+        try (Connection connection = routed.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+
+        processor.destroy();
+        assertTrue(primaryPool.isClosed());
+    }
+}
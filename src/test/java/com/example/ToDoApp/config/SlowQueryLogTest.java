@@ -0,0 +1,81 @@
+package com.example.ToDoApp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowQueryLogTest {
+
+    @Test
+    void normalizeRemovesLiteralsAndInListSize() {
+        assertEquals("select * from todos t1_0 where t1_0.id in (?...) and t1_0.text=? and t1_0.user_id=?",
+            SlowQueryLog.normalize("select *\n  from todos t1_0 where t1_0.id in (?, ?, ?) and t1_0.text='it''s' and t1_0.user_id=42"));
+        assertEquals(SlowQueryLog.normalize("delete from todos where id in (?)"),
+            SlowQueryLog.normalize("delete from todos where id in (?,?,?,?)"));
+    }
+
+    @Test
+    void aggregatesEveryStatementButLogsOnlySlowOnesWithRedactedParameters() throws Exception {
+        SlowQueryLog log = new SlowQueryLog(
+            new SlowQueryLog.Settings(Duration.ofMillis(50), 1.0, SlowQueryLog.ParameterMode.REDACT, 100), new ObjectMapper());
+
+        String output = captureStderr(() -> {
+            execute(log, "select * from users where username=?", "alice", 0);
+            execute(log, "select * from users where username=?", "bob", 0);
+            execute(log, "select * from users where username=?", "carol", 60);
+            execute(log, "select * from todos where id in (?, ?)", 1L, 0);
+        });
+
+        List<SlowQueryLog.ShapeStats> top = log.top(10, "count");
+        assertEquals(2, top.size());
+        assertEquals("select * from users where username=?", top.get(0).shape());
+        assertEquals(3, top.get(0).count());
+        assertEquals(1, top.get(0).slowCount());
+        assertTrue(top.get(0).maxMs() >= 50);
+
+        assertEquals(1, output.lines().filter(line -> line.startsWith("[slow-query]")).count());
+        assertTrue(output.contains("\"parameters\":[\"String\"]"));
+        assertFalse(output.contains("carol"));
+    }
+
+    private static void execute(SlowQueryLog log, String sql, Object parameter, long sleepMillis) throws Exception {
+        ExecutionInfo execInfo = new ExecutionInfo();
+        execInfo.setSuccess(true);
+        QueryInfo queryInfo = new QueryInfo(sql);
+        queryInfo.getParametersList().add(List.of(new ParameterSetOperation(
+            PreparedStatement.class.getMethod("setObject", int.class, Object.class), new Object[] {1, parameter})));
+
+        log.beforeQuery(execInfo, List.of(queryInfo));
+        Thread.sleep(sleepMillis);
+        log.afterQuery(execInfo, List.of(queryInfo));
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static String captureStderr(Action action) throws Exception {
+        PrintStream original = System.err;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setErr(original);
+        }
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.ToDoApp.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestComponent;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * テスト用: DataSource をプロキシで包み、DBに送ったSQL文の数を数える
+ * {@code @Import(StatementCounter.class)} したテストで expectAtMost を使う
+ *
+ * JDBCバッチは1回の送信として数える (件数に比例して増えないため)。
+ * 採番テーブル (id_generators) へのアクセスは allocationSize 件に1回しか起きず、
+ * どのリクエストで発生するかがテストの実行順で変わるため数に含めない
+ */
+@TestComponent
+public class StatementCounter implements BeanPostProcessor, QueryExecutionListener {
+
+    private static final String ID_GENERATOR_TABLE = "id_generators";
+
+    private record Statement(String sql, int batchSize) {
+
+        @Override
+        public String toString() {
+            return batchSize > 0 ? sql + " [batch " + batchSize + "]" : sql;
+        }
+    }
+
+    private final List<Statement> statements = new ArrayList<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return ProxyDataSourceBuilder.create(dataSource)
+                .name(beanName)
+                .listener(this)
+                .build();
+        }
+        return bean;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        String sql = queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+        if (sql.toLowerCase(Locale.ROOT).contains(ID_GENERATOR_TABLE)) {
+            return;
+        }
+        synchronized (statements) {
+            statements.add(new Statement(sql, execInfo.isBatch() ? execInfo.getBatchSize() : 0));
+        }
+    }
+
+    public void reset() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    public int count() {
+        synchronized (statements) {
+            return statements.size();
+        }
+    }
+
+    /**
+     * action の実行中に送られたSQL文が max 以下であることを確認する
+     * 超えた場合は実行されたSQLを一覧にして失敗させる (N+1 の発見用)
+     */
+    public <T> T expectAtMost(int max, String description, Callable<T> action) throws Exception {
+        return expectAtMost(max, statement -> true, "SQL文", description, action);
+    }
+
+    /**
+     * action の実行中に table へ送られた UPDATE/DELETE 文が max 以下であることを確認する
+     * (所有者の確認と変更を1文で済ませていることの確認用)
+     */
+    public <T> T expectWritesAtMost(int max, String table, String description, Callable<T> action) throws Exception {
+        Pattern write = Pattern.compile("^\\s*(update|delete\\s+from)\\s+" + Pattern.quote(table) + "\\b", Pattern.CASE_INSENSITIVE);
+        return expectAtMost(max, statement -> write.matcher(statement.sql()).find(), table + " への UPDATE/DELETE 文", description, action);
+    }
+
+    private <T> T expectAtMost(int max, Predicate<Statement> counted, String kind, String description, Callable<T> action) throws Exception {
+        reset();
+        T result = action.call();
+        List<Statement> executed;
+        synchronized (statements) {
+            executed = new ArrayList<>(statements);
+        }
+        long count = executed.stream().filter(counted).count();
+        if (count > max) {
+            StringBuilder message = new StringBuilder()
+                .append(description).append(": ").append(kind).append("が上限 ").append(max)
+                .append(" を超えました (").append(count).append(")");
+            for (int i = 0; i < executed.size(); i++) {
+                message.append("\n  ").append(i + 1).append(". ").append(executed.get(i));
+            }
+            fail(message.toString());
+        }
+        return result;
+    }
+}
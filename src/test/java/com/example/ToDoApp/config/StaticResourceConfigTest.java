@@ -0,0 +1,72 @@
+package com.example.ToDoApp.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * テンプレートのリンクがハッシュ付きの名前になり、その URL が immutable で圧縮版とともに返ることを確認する
+ * (圧縮版はビルドの process-classes フェーズで StaticAssetPipeline が作る)
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StaticResourceConfigTest {
+
+    private static final Pattern STYLESHEET = Pattern.compile("href=\"(/css/style-[0-9a-f]{32}\\.css)\"");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private String stylesheetUrl() throws Exception {
+        String html = mockMvc.perform(get("/login")).andReturn().getResponse().getContentAsString();
+        Matcher matcher = STYLESHEET.matcher(html);
+        assertTrue(matcher.find(), "ハッシュ付きのリンクがありません");
+        return matcher.group(1);
+    }
+
+    @Test
+    void hashedUrlIsImmutableAndServedPrecompressed() throws Exception {
+        String url = stylesheetUrl();
+
+        MockHttpServletResponse brotli = mockMvc.perform(get(url).header(HttpHeaders.ACCEPT_ENCODING, "br, gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "br"))
+            .andExpect(header().string(HttpHeaders.VARY, containsString("Accept-Encoding")))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+            .andReturn().getResponse();
+
+        MockHttpServletResponse plain = mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andReturn().getResponse();
+        assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(brotli.getContentAsByteArray().length * 3 < plain.getContentAsByteArray().length,
+            brotli.getContentAsByteArray().length + "B / " + plain.getContentAsByteArray().length + "B");
+        // 最小化済み (コメントと改行がない)
+        assertTrue(!plain.getContentAsString().contains("/*") && !plain.getContentAsString().contains("\n"));
+    }
+
+    /**
+     * 内容と一致しないハッシュ (古いURL) では返さない
+     */
+    @Test
+    void staleHashIsNotServed() throws Exception {
+        mockMvc.perform(get("/css/style-00000000000000000000000000000000.css"))
+            .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.ToDoApp.config;
+
+import com.example.ToDoApp.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * コネクションとトランザクションの設定 (自動コミット無効・open-in-view 無効・保存処理だけのトランザクション) を確認する
+ * プールを2本にして、登録が同時に集まってもコネクションを使い切らない (採番待ちで止まらない) ことを見る
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "spring.datasource.hikari.maximum-pool-size=2",
+    "spring.datasource.hikari.connection-timeout=10000",
+    "todoapp.password-hash.queue-capacity=100",
+    "todoapp.password-hash.max-wait=1m",
+    "todoapp.login-throttle.enabled=false"
+})
+class TransactionSettingsTest {
+
+    private static final int REGISTRATIONS = 8;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(REGISTRATIONS);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pooledConnectionsStartWithoutAutoCommit() throws Exception {
+        assertFalse(dataSource.unwrap(HikariDataSource.class).isAutoCommit());
+        try (Connection connection = dataSource.getConnection()) {
+            assertFalse(connection.getAutoCommit());
+        }
+    }
+
+    @Test
+    void openInViewIsDisabled() {
+        assertTrue(applicationContext.getBeansOfType(OpenEntityManagerInViewInterceptor.class).isEmpty(),
+            "リクエスト全体でコネクションを保持する OpenEntityManagerInViewInterceptor が登録されています");
+    }
+
+    @Test
+    void concurrentRegistrationsDoNotExhaustThePool() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> registrations = new ArrayList<>();
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            String username = "tx-settings-" + i;
+            registrations.add(executor.submit(() -> {
+                start.await();
+                return userService.registerUser(username, "password");
+            }));
+        }
+        start.countDown();
+        for (Future<?> registration : registrations) {
+            registration.get(60, TimeUnit.SECONDS);
+        }
+
+        assertEquals(REGISTRATIONS, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM users WHERE username LIKE 'tx-settings-%'", Integer.class));
+        assertEquals(0, dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    void concurrentRegistrationsOfTheSameUsernameCreateOneUser() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> registrations = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            registrations.add(executor.submit(() -> {
+                start.await();
+                return userService.registerUser("tx-settings-same", "password");
+            }));
+        }
+        start.countDown();
+
+        int rejected = 0;
+        for (Future<?> registration : registrations) {
+            try {
+                registration.get(60, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertInstanceOf(IllegalArgumentException.class, e.getCause());
+                rejected++;
+            }
+        }
+
+        assertEquals(3, rejected);
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM users WHERE username = 'tx-settings-same'", Integer.class));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ToDoApp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 仮想スレッドのとき、上限を超えるプールサイズ・待ち時間の設定が上限に下げられ、
+ * プールが埋まった後のコネクション取得が上限の待ち時間で失敗することを確認する
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "spring.threads.virtual.enabled=true",
+    "spring.datasource.hikari.maximum-pool-size=50",
+    "spring.datasource.hikari.connection-timeout=30000",
+    "todoapp.datasource.virtual.max-pool-size=3",
+    "todoapp.datasource.virtual.max-connection-timeout=500ms"
+})
+class VirtualThreadPoolGuardConfigTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void rejectsQuicklyOnceThePoolIsSaturated() throws Exception {
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        assertEquals(3, hikari.getMaximumPoolSize());
+        assertEquals(500, hikari.getConnectionTimeout());
+
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < hikari.getMaximumPoolSize(); i++) {
+                held.add(hikari.getConnection());
+            }
+
+            long started = System.nanoTime();
+            assertThrows(SQLTransientConnectionException.class, hikari::getConnection);
+            long waitedMillis = (System.nanoTime() - started) / 1_000_000;
+            assertTrue(waitedMillis < 5_000, "設定の30秒ではなく上限の待ち時間で失敗する: " + waitedMillis + "ms");
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+}
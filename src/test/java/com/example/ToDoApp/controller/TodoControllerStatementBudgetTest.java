@@ -0,0 +1,293 @@
+package com.example.ToDoApp.controller;
+
+import com.example.ToDoApp.config.StatementCounter;
+import com.example.ToDoApp.dto.TodoBatch;
+import com.example.ToDoApp.dto.TodoDraft;
+import com.example.ToDoApp.dto.TodoUpdate;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.entity.User;
+import com.example.ToDoApp.service.CustomUserDetails;
+import com.example.ToDoApp.service.TodoSearchIndex;
+import com.example.ToDoApp.service.TodoService;
+import com.example.ToDoApp.service.UserService;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * TodoController の各エンドポイントが発行するSQL文の数を固定する
+ * 件数の多いユーザーでも一覧が1文で済むことなどを確認し、遅延ロードによる N+1 を CI で検出する。
+ * 実装を変えて文の数が減った場合は上限も下げる
+ *
+ * user() によるログインはリクエストごとに新しいセッションを作るため、セッションストアはDBを使わない offheap にして
+ * Todoの処理のSQLだけを数える (jdbc のセッションの読み書きは JdbcSessionStoreTest で確認する)
+ */
+@SpringBootTest(properties = "todoapp.session.store=offheap")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(StatementCounter.class)
+class TodoControllerStatementBudgetTest {
+
+    private static final int TODO_COUNT = 20;
+    private static final AtomicInteger USER_SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private TodoSearchIndex todoSearchIndex;
+
+    private User owner;
+    private RequestPostProcessor ownerLogin;
+    private RequestPostProcessor otherLogin;
+    private List<Long> todoIds;
+
+    @BeforeEach
+    void createTodos() throws InterruptedException {
+        // 起動時の検索インデックス構築を待つ
+        for (int i = 0; i < 500 && !todoSearchIndex.isReady(); i++) {
+            Thread.sleep(10);
+        }
+
+        int sequence = USER_SEQUENCE.incrementAndGet();
+        owner = userService.registerUser("budget-owner-" + sequence, "password");
+        User other = userService.registerUser("budget-other-" + sequence, "password");
+        ownerLogin = user(new CustomUserDetails(owner));
+        otherLogin = user(new CustomUserDetails(other));
+
+        List<TodoDraft> drafts = new ArrayList<>();
+        for (int i = 0; i < TODO_COUNT; i++) {
+            drafts.add(new TodoDraft("todo-" + i, i % 3 == 0 ? LocalDate.now().minusDays(1) : null));
+        }
+        todoIds = todoService.applyBatch(owner.getId(), new TodoBatch(drafts, Map.of(), List.of()))
+            .created().stream().map(TodoView::id).toList();
+        todoService.updateOwnedTodo(todoIds.get(0), owner.getId(), new TodoUpdate(null, false, null, true));
+    }
+
+    @Test
+    void listIssuesOneStatementRegardlessOfTodoCount() throws Exception {
+        // 一覧のバージョン (ETag) を主キーで読み、一覧を読む
+        statementCounter.expectAtMost(2, "GET /api/todos", () -> mockMvc.perform(get("/api/todos").with(ownerLogin))
+            .andExpect(jsonPath("$.todos.length()").value(TODO_COUNT)));
+        // 2回目も同じ (一覧はキャッシュしない)
+        statementCounter.expectAtMost(2, "GET /api/todos", () -> mockMvc.perform(get("/api/todos").with(ownerLogin))
+            .andExpect(jsonPath("$.todos.length()").value(TODO_COUNT)));
+        // 完了済みはバージョンと todos・todos_archive の3文
+        statementCounter.expectAtMost(3, "GET /api/todos?filter=completed", () -> mockMvc.perform(get("/api/todos?filter=completed").with(ownerLogin))
+            .andExpect(jsonPath("$.todos.length()").value(1)));
+        statementCounter.expectAtMost(2, "GET /api/todos?filter=pending", () -> mockMvc.perform(get("/api/todos?filter=pending").with(ownerLogin))
+            .andExpect(jsonPath("$.todos.length()").value(TODO_COUNT - 1)));
+    }
+
+    @Test
+    void keysetPagesIssueOneStatementEach() throws Exception {
+        MvcResult first = statementCounter.expectAtMost(2, "GET /api/todos?limit=5", () -> mockMvc.perform(get("/api/todos?limit=5").with(ownerLogin))
+            .andExpect(jsonPath("$.hasMore").value(true))
+            .andReturn());
+        String cursor = JsonPath.read(first.getResponse().getContentAsString(), "$.nextCursor");
+
+        statementCounter.expectAtMost(2, "GET /api/todos?limit=5&after=...", () -> mockMvc.perform(get("/api/todos?limit=5&after=" + cursor).with(ownerLogin))
+            .andExpect(jsonPath("$.todos.length()").value(5)));
+    }
+
+    @Test
+    void searchFetchesOnlyTheMatchedRows() throws Exception {
+        statementCounter.expectAtMost(1, "GET /api/todos/search", () -> mockMvc.perform(get("/api/todos/search?q=todo").with(ownerLogin))
+            .andExpect(jsonPath("$.todos.length()").value(TODO_COUNT)));
+    }
+
+    @Test
+    void statsReadsTheCounterRow() throws Exception {
+        statementCounter.expectAtMost(1, "GET /api/todos/stats", () -> mockMvc.perform(get("/api/todos/stats").with(ownerLogin))
+            .andExpect(jsonPath("$.stats.total").value(TODO_COUNT)));
+    }
+
+    @Test
+    void streamIssuesOneStatement() throws Exception {
+        statementCounter.expectAtMost(1, "GET /api/todos/stream", () -> {
+            MvcResult started = mockMvc.perform(get("/api/todos/stream").with(ownerLogin))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            return mockMvc.perform(asyncDispatch(started))
+                .andExpect(jsonPath("$.todos.length()").value(TODO_COUNT));
+        });
+    }
+
+    @Test
+    void unchangedListIsRevalidatedFromTheVersionRow() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/todos").with(ownerLogin)).andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        // バージョンを読むだけで todos は読まない
+        statementCounter.expectAtMost(1, "GET /api/todos (If-None-Match)", () -> mockMvc.perform(get("/api/todos").with(ownerLogin)
+                .header("If-None-Match", etag))
+            .andExpect(status().isNotModified()));
+
+        LocalDateTime since = LocalDateTime.now();
+        todoService.updateOwnedTodo(todoIds.get(1), owner.getId(), new TodoUpdate("changed-since", false, null, null));
+        todoService.deleteOwnedTodo(todoIds.get(2), owner.getId());
+        // 作成だけされたTodoも updated_at で拾う
+        todoService.createTodo("created-since", owner.getId());
+
+        // バージョンの読み込み、変更されたTodo、削除記録
+        statementCounter.expectAtMost(3, "GET /api/todos?updatedSince=...", () -> mockMvc.perform(get("/api/todos").with(ownerLogin)
+                .param("updatedSince", since.toString())
+                .header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.full").value(false))
+            .andExpect(jsonPath("$.todos.length()").value(2))
+            .andExpect(jsonPath("$.todos[0].text").value("created-since"))
+            .andExpect(jsonPath("$.todos[1].text").value("changed-since"))
+            .andExpect(jsonPath("$.deleted.length()").value(1))
+            .andExpect(jsonPath("$.deleted[0]").value(todoIds.get(2))));
+    }
+
+    @Test
+    void changeFeedReplaysFromMemory() throws Exception {
+        MvcResult list = mockMvc.perform(get("/api/todos").with(ownerLogin)).andReturn();
+        String position = JsonPath.read(list.getResponse().getContentAsString(), "$.feedPosition");
+        todoService.updateOwnedTodo(todoIds.get(1), owner.getId(), new TodoUpdate("changed-after-list", false, null, null));
+
+        MvcResult changes = statementCounter.expectAtMost(0, "GET /api/todos/changes", () -> mockMvc.perform(get("/api/todos/changes?since=" + position).with(ownerLogin))
+            .andExpect(request().asyncStarted())
+            .andReturn());
+        String body = changes.getResponse().getContentAsString();
+        assertEquals(1, body.lines().filter(line -> line.equals("event:todo")).count(), body);
+        assertTrue(body.contains("changed-after-list"), body);
+    }
+
+    @Test
+    void createInsertsAndUpdatesCounters() throws Exception {
+        statementCounter.expectAtMost(2, "POST /api/todos", () -> mockMvc.perform(post("/api/todos").with(ownerLogin).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\":\"new\",\"dueDate\":\"2030-01-01\"}"))
+            .andExpect(jsonPath("$.success").value(true)));
+    }
+
+    @Test
+    void updateDoesNotLoadTheOwner() throws Exception {
+        Long id = todoIds.get(1);
+        // 変更前の内容 (件数の差分用)・UPDATE・集計行の3文。所有者の確認と変更は1回のUPDATE文で行う
+        statementCounter.expectAtMost(3, "PUT /api/todos/{id}", () -> statementCounter.expectWritesAtMost(1, "todos", "PUT /api/todos/{id}",
+            () -> mockMvc.perform(put("/api/todos/" + id).with(ownerLogin).with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"text\":\"changed\",\"dueDate\":\"2030-01-01\",\"completed\":true}"))
+                .andExpect(jsonPath("$.todo.text").value("changed"))));
+
+        // 所有者で絞ったTodo・アーカイブ・存在確認の3文
+        statementCounter.expectAtMost(3, "PUT /api/todos/{id} (他人のTodo)", () -> mockMvc.perform(put("/api/todos/" + id).with(otherLogin).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"completed\":false}"))
+            .andExpect(status().isForbidden()));
+    }
+
+    @Test
+    void deleteDoesNotLoadTheOwner() throws Exception {
+        Long id = todoIds.get(2);
+        // 所有者で絞ったTodo・アーカイブ・存在確認の3文
+        statementCounter.expectAtMost(3, "DELETE /api/todos/{id} (他人のTodo)", () -> mockMvc.perform(delete("/api/todos/" + id).with(otherLogin).with(csrf()))
+            .andExpect(status().isForbidden()));
+
+        // 変更前の内容・DELETE・削除記録・集計行の4文。所有者の確認と削除は1回のDELETE文で行う
+        statementCounter.expectAtMost(4, "DELETE /api/todos/{id}", () -> statementCounter.expectWritesAtMost(1, "todos", "DELETE /api/todos/{id}",
+            () -> mockMvc.perform(delete("/api/todos/" + id).with(ownerLogin).with(csrf()))
+                .andExpect(jsonPath("$.success").value(true))));
+    }
+
+    @Test
+    void batchCreateIsOneInsertBatch() throws Exception {
+        StringBuilder todos = new StringBuilder();
+        for (int i = 0; i < TODO_COUNT; i++) {
+            todos.append(i > 0 ? "," : "").append("{\"text\":\"batch-").append(i).append("\"}");
+        }
+        statementCounter.expectAtMost(2, "POST /api/todos/batch", () -> mockMvc.perform(post("/api/todos/batch").with(ownerLogin).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"todos\":[" + todos + "]}"))
+            .andExpect(jsonPath("$.created.length()").value(TODO_COUNT)));
+    }
+
+    @Test
+    void batchPatchDoesNotScaleWithItemCount() throws Exception {
+        StringBuilder updates = new StringBuilder();
+        StringBuilder deletes = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            updates.append(i > 0 ? "," : "").append("{\"id\":").append(todoIds.get(i)).append(",\"completed\":true}");
+            deletes.append(i > 0 ? "," : "").append(todoIds.get(10 + i));
+        }
+        statementCounter.expectAtMost(6, "PATCH /api/todos/batch", () -> mockMvc.perform(patch("/api/todos/batch").with(ownerLogin).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"creates\":[{\"text\":\"a\"},{\"text\":\"b\"},{\"text\":\"c\"}],"
+                    + "\"updates\":[" + updates + "],\"deletes\":[" + deletes + "]}"))
+            .andExpect(jsonPath("$.success").value(true))
+            .andExpect(jsonPath("$.deleted.length()").value(5)));
+    }
+
+    @Test
+    void indexEmbedsFirstPageAndReusesItUntilTheListChanges() throws Exception {
+        // 初回は先頭ページと件数を読んで描画する (バージョン・先頭ページ・件数)
+        String html = statementCounter.expectAtMost(3, "GET /", () -> mockMvc.perform(get("/").with(ownerLogin))
+            .andExpect(status().isOk())
+            .andReturn()).getResponse().getContentAsString();
+        assertTrue(html.contains("id=\"initial-state\""), "画面の初期状態が埋め込まれていません");
+        assertTrue(html.contains("<span class=\"todo-text\">todo-19</span>"), "先頭ページが描画されていません");
+        assertTrue(html.contains("<span id=\"todo-count\">" + TODO_COUNT + "</span>"));
+
+        // 変更がなければ描画結果を使い回す (バージョンと件数だけを読む)。syncedAt も描画したときの時刻のまま
+        String cached = statementCounter.expectAtMost(2, "GET / (キャッシュ)", () -> mockMvc.perform(get("/").with(ownerLogin))
+            .andExpect(status().isOk())
+            .andReturn()).getResponse().getContentAsString();
+        assertEquals(syncedAt(html), syncedAt(cached));
+
+        todoService.updateOwnedTodo(todoIds.get(19), owner.getId(), new TodoUpdate("renamed </script>", false, null, null));
+        html = mockMvc.perform(get("/").with(ownerLogin)).andReturn().getResponse().getContentAsString();
+        assertTrue(html.contains("<span class=\"todo-text\">renamed &lt;/script&gt;</span>"), "変更後に描画し直されていません");
+        assertTrue(html.contains("renamed \\u003c/script>"), "JSONの \"<\" がエスケープされていません");
+    }
+
+    private static String syncedAt(String html) {
+        Matcher matcher = Pattern.compile("\"syncedAt\":\"([^\"]+)\"").matcher(html);
+        assertTrue(matcher.find(), "syncedAt が埋め込まれていません");
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ToDoApp.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * TodoViewSerializer の出力形式を確認する
+ * 割り当て量は TodoSerializationBenchmark (./mvnw -Pbenchmark verify、-prof gc) で変更前の書き出しと比較する
+ */
+class TodoViewSerializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writesDatesInToStringFormatAndOmitsNulls() throws Exception {
+        TodoView todo = new TodoView(42L, "牛乳を買う", false,
+            LocalDateTime.of(2025, 1, 2, 3, 4, 5, 123_000_000), LocalDateTime.of(2025, 1, 3, 0, 0), LocalDate.of(2025, 1, 10));
+        assertEquals("{\"id\":42,\"text\":\"牛乳を買う\",\"completed\":false,\"createdAt\":\"2025-01-02T03:04:05.123\","
+            + "\"updatedAt\":\"2025-01-03T00:00\",\"dueDate\":\"2025-01-10\"}", objectMapper.writeValueAsString(todo));
+
+        TodoView noDates = new TodoView(1L, "パンを買う", null, LocalDateTime.of(2025, 1, 2, 3, 4), null, null);
+        assertEquals("{\"id\":1,\"text\":\"パンを買う\",\"completed\":false,\"createdAt\":\"2025-01-02T03:04\"}",
+            objectMapper.writeValueAsString(noDates));
+
+        // 秒・ミリ秒・マイクロ秒・ナノ秒の桁数は LocalDateTime#toString と同じ
+        for (LocalDateTime createdAt : List.of(
+                LocalDateTime.of(2025, 12, 31, 23, 59, 1),
+                LocalDateTime.of(2025, 1, 1, 0, 0, 0, 1_000),
+                LocalDateTime.of(2025, 1, 1, 0, 0, 0, 1),
+                LocalDateTime.of(10_000, 1, 1, 0, 0))) {
+            String json = objectMapper.writeValueAsString(new TodoView(1L, "x", true, createdAt, null, null));
+            assertEquals(createdAt.toString(), objectMapper.readTree(json).get("createdAt").asText());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.ToDoApp.loadtest;
+
+import com.example.ToDoApp.dto.TodoArchiveReport;
+import com.example.ToDoApp.service.TodoArchiver;
+import com.example.ToDoApp.service.TodoStatsService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 完了済みTodoのアーカイブ前後で、todos (ホットテーブル) の大きさと一覧の応答時間を比べる
+ *
+ * 大きさは行数で比べる (H2 のインメモリDBは DISK_SPACE_USED が0を返す。MySQL なら information_schema.tables の data_length)
+ * 行は JDBC のバッチで直接入れる (completed-ratio の割合を90日前に完了したものとし、残りは未完了)。
+ * 計測するユーザーも他のユーザーと同じ件数を持つ
+ * 1000万件で測る場合はヒープを増やす (H2 のインメモリDBのため、行はすべてヒープに載る)
+ *
+ * 実行: ./mvnw test -Ploadtest -Dtest=ArchiveLoadTest [-Dloadtest.archive.rows=10000000 -DargLine=-Xmx16g ...]
+ * 設定 (システムプロパティ):
+ *   loadtest.archive.rows              全体の行数 (既定 200000)
+ *   loadtest.archive.users             ユーザー数 (既定 100)
+ *   loadtest.archive.completed-ratio   アーカイブ対象にする割合 (既定 0.8)
+ *   loadtest.archive.iterations        エンドポイントごとの計測回数 (既定 100)
+ */
+@Tag("loadtest")
+class ArchiveLoadTest {
+
+    private static final String PASSWORD = "loadtest-password";
+    // アプリの採番と重ならない範囲に直接入れる
+    private static final long SEED_USER_ID = 1_000_000_000L;
+    private static final long SEED_TODO_ID = 1_000_000_000L;
+    private static final int SEED_BATCH = 10_000;
+
+    private final int rows = Integer.getInteger("loadtest.archive.rows", 200_000);
+    private final int users = Integer.getInteger("loadtest.archive.users", 100);
+    private final double completedRatio = Double.parseDouble(System.getProperty("loadtest.archive.completed-ratio", "0.8"));
+    private final int iterations = Integer.getInteger("loadtest.archive.iterations", 100);
+
+    private static final List<String> ENDPOINTS = List.of(
+        "/api/todos?limit=50",
+        "/api/todos?filter=completed&limit=50",
+        "/api/todos?filter=pending",
+        "/api/todos/stream");
+
+    @Test
+    void archivingShrinksTheHotTableWithoutSlowingTheCompletedFilter() throws Exception {
+        try (LoadTestApplication application = LoadTestApplication.start("loadtest-archive", new String[] {"test"},
+                "--todoapp.archive.pause=0ms",
+                "--todoapp.archive.chunk-size=1000",
+                "--todoapp.archive.max-chunks-per-run=1000000")) {
+            JdbcTemplate jdbcTemplate = application.bean(JdbcTemplate.class);
+            TransactionTemplate transactionTemplate = application.bean(TransactionTemplate.class);
+
+            LoadTestClient client = new LoadTestClient(application.baseUrl());
+            client.register("archive-user", PASSWORD);
+            client.login("archive-user", PASSWORD);
+            Long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'archive-user'", Long.class);
+
+            long seedStart = System.nanoTime();
+            seed(jdbcTemplate, transactionTemplate, userId);
+            application.bean(TodoStatsService.class).reconcile();
+            System.out.printf("%d件を投入しました (%.1f秒)%n", rows, (System.nanoTime() - seedStart) / 1e9);
+
+            String statsBefore = client.get("/api/todos/stats").body();
+            long hotBefore = count(jdbcTemplate, "todos");
+            // 1回目はJITとコネクションを温めるため捨てる
+            measure(client);
+            List<LatencyHistogram> before = measure(client);
+
+            TodoArchiveReport report = application.bean(TodoArchiver.class).archive();
+
+            long hotAfter = count(jdbcTemplate, "todos");
+            List<LatencyHistogram> after = measure(client);
+
+            System.out.println("=== 完了済みTodoのアーカイブ (全体 " + rows + "件, ユーザー " + users + "人, 1ユーザー "
+                + rows / users + "件) ===");
+            System.out.printf("アーカイブ: %d件, %dチャンク, %.1f秒 (%.0f件/秒)%n", report.archived(), report.chunks(),
+                report.elapsedMillis() / 1000.0, report.archived() * 1000.0 / Math.max(1, report.elapsedMillis()));
+            System.out.println("todos の行数: " + hotBefore + " -> " + hotAfter + " (todos_archive "
+                + count(jdbcTemplate, "todos_archive") + ")");
+            for (int i = 0; i < ENDPOINTS.size(); i++) {
+                System.out.printf("%-40s 前 %s%n%-40s 後 %s%n", ENDPOINTS.get(i), before.get(i).summary(), "", after.get(i).summary());
+            }
+
+            assertEquals(hotBefore - report.archived(), hotAfter);
+            assertEquals(statsBefore, client.get("/api/todos/stats").body(), "アーカイブの前後で件数が変わりました");
+            assertTrue(after.get(3).percentileMillis(50) <= before.get(3).percentileMillis(50), String.format(
+                "一覧全体のストリームの p50 %.1fms がアーカイブ前 %.1fms より遅くなりました",
+                after.get(3).percentileMillis(50), before.get(3).percentileMillis(50)));
+        }
+    }
+
+    /**
+     * ユーザーと行を JDBC のバッチで入れる (ユーザーごとに作成日時が古い順)
+     * 先頭の completed-ratio の割合は90日前に完了済み、残りは未完了
+     */
+    private void seed(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, Long measuredUserId) {
+        List<Long> userIds = new ArrayList<>(List.of(measuredUserId));
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Object[]> seededUsers = new ArrayList<>();
+            for (int i = 1; i < users; i++) {
+                seededUsers.add(new Object[] {SEED_USER_ID + i, "archive-seed-" + i, "{noop}" + PASSWORD,
+                    Timestamp.valueOf(LocalDateTime.now())});
+                userIds.add(SEED_USER_ID + i);
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO users (id, username, password, created_at) VALUES (?, ?, ?, ?)", seededUsers);
+        });
+
+        int perUser = rows / users;
+        int archivable = (int) (perUser * completedRatio);
+        LocalDateTime base = LocalDateTime.now().minusDays(365);
+        Timestamp completedAt = Timestamp.valueOf(LocalDateTime.now().minusDays(90));
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        long id = SEED_TODO_ID;
+        for (Long userId : userIds) {
+            for (int i = 0; i < perUser; i++) {
+                boolean completed = i < archivable;
+                batch.add(new Object[] {id++, "アーカイブ計測 " + i, completed,
+                    Timestamp.valueOf(base.plusSeconds(i)), completed ? completedAt : null, userId});
+                if (batch.size() == SEED_BATCH) {
+                    insertTodos(jdbcTemplate, transactionTemplate, batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertTodos(jdbcTemplate, transactionTemplate, batch);
+        }
+    }
+
+    private static void insertTodos(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, List<Object[]> batch) {
+        // プールは自動コミットを無効にしているためトランザクション内で入れる
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+            "INSERT INTO todos (id, text, completed, created_at, updated_at, user_id) VALUES (?, ?, ?, ?, ?, ?)", batch));
+    }
+
+    /**
+     * エンドポイントを順に呼ぶ (最初の1割は計測しない)
+     */
+    private List<LatencyHistogram> measure(LoadTestClient client) throws Exception {
+        List<LatencyHistogram> histograms = new ArrayList<>();
+        for (String endpoint : ENDPOINTS) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (int i = 0; i < iterations + iterations / 10; i++) {
+                long start = System.nanoTime();
+                HttpResponse<String> response = client.get(endpoint);
+                long elapsed = System.nanoTime() - start;
+                assertEquals(200, response.statusCode(), endpoint);
+                if (i >= iterations / 10) {
+                    histogram.recordNanos(elapsed);
+                }
+            }
+            histograms.add(histogram);
+        }
+        return histograms;
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.ToDoApp.loadtest;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 負荷テスト用: SQL実行のたびに loadtest.db-latency-ms だけ待たせ、遅いDBを再現する
+ * コンポーネントスキャンの対象にしないよう、負荷テストから明示的に sources に追加して使う
+ */
+public class DbLatencyInjection {
+
+    @Bean
+    public static BeanPostProcessor dbLatencyPostProcessor(Environment environment) {
+        long latencyMillis = environment.getProperty("loadtest.db-latency-ms", Long.class, 0L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (latencyMillis <= 0 || !(bean instanceof DataSource dataSource)) {
+                    return bean;
+                }
+                return new DelegatingDataSource(dataSource) {
+                    @Override
+                    public Connection getConnection() throws SQLException {
+                        return slow(super.getConnection(), latencyMillis);
+                    }
+                };
+            }
+        };
+    }
+
+    private static Connection slow(Connection connection, long latencyMillis) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            Object result = method.invoke(connection, args);
+            if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                return proxy(PreparedStatement.class, statement, (statementMethod, statementArgs) -> {
+                    if (statementMethod.getName().startsWith("execute")) {
+                        Thread.sleep(latencyMillis);
+                    }
+                    return statementMethod.invoke(statement, statementArgs);
+                });
+            }
+            return result;
+        });
+    }
+
+    private interface Invocation {
+        Object invoke(java.lang.reflect.Method method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Invocation invocation) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            try {
+                return invocation.invoke(method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ToDoApp.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * トップページを開いてから最初のTodoが表示できるまでの時間 (time-to-first-render) を測る
+ *
+ * - 変更前: HTML を受け取った後、script.js が GET /api/todos を呼んで一覧を受け取るまで (2往復)
+ * - 変更後: 一覧が描画済みの HTML を受け取るまで (1往復)
+ * 変更前の HTML も現在の (一覧を含む) HTML で測るため、変更前の時間はやや長めに出る。
+ * 推定値はローカルの時間に loadtest.first-render.rtt-ms の往復を足したもの (script.js はキャッシュ済みの前提)
+ *
+ * 実行: ./mvnw test -Ploadtest -Dtest=FirstRenderLoadTest [-Dloadtest.first-render.todos=50 ...]
+ */
+@Tag("loadtest")
+class FirstRenderLoadTest {
+
+    private static final String PASSWORD = "loadtest-password";
+
+    private final int todos = Integer.getInteger("loadtest.first-render.todos", 50);
+    private final int iterations = Integer.getInteger("loadtest.first-render.iterations", 300);
+    private final long rttMillis = Long.getLong("loadtest.first-render.rtt-ms", 100L);
+
+    @Test
+    void embeddedFirstPageRendersSoonerThanFetchingTheApi() throws Exception {
+        LatencyHistogram before = new LatencyHistogram();
+        LatencyHistogram after = new LatencyHistogram();
+        try (LoadTestApplication application = LoadTestApplication.start("loadtest-first-render", new String[] {"test"})) {
+            LoadTestClient client = new LoadTestClient(application.baseUrl());
+            client.register("first-render-user", PASSWORD);
+            client.login("first-render-user", PASSWORD);
+            for (int i = 0; i < todos; i++) {
+                client.send("POST", "/api/todos", "{\"text\": \"初回表示 " + i + "\"}");
+            }
+
+            // JITとキャッシュを温めてから交互に測る
+            for (int i = 0; i < iterations / 10; i++) {
+                firstRenderViaApi(client);
+                firstRenderEmbedded(client);
+            }
+            for (int i = 0; i < iterations; i++) {
+                before.recordNanos(firstRenderViaApi(client));
+                after.recordNanos(firstRenderEmbedded(client));
+            }
+        }
+
+        System.out.println("=== トップページの time-to-first-render (Todo " + todos + "件, " + iterations + "回) ===");
+        System.out.printf("変更前 (HTML + /api/todos) %s 推定 p50 %.1fms%n", before.summary(), before.percentileMillis(50) + 2 * rttMillis);
+        System.out.printf("変更後 (描画済みの HTML)   %s 推定 p50 %.1fms%n", after.summary(), after.percentileMillis(50) + rttMillis);
+
+        assertTrue(after.percentileMillis(50) < before.percentileMillis(50), String.format(
+            "描画済みの HTML の p50 %.1fms が変更前 %.1fms より速くありません", after.percentileMillis(50), before.percentileMillis(50)));
+    }
+
+    private long firstRenderViaApi(LoadTestClient client) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> page = client.get("/");
+        HttpResponse<String> list = client.get("/api/todos");
+        long elapsed = System.nanoTime() - start;
+        assertTrue(page.statusCode() == 200 && list.body().contains("初回表示"), "HTTP " + list.statusCode());
+        return elapsed;
+    }
+
+    private long firstRenderEmbedded(LoadTestClient client) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> page = client.get("/");
+        long elapsed = System.nanoTime() - start;
+        assertTrue(page.body().contains("<span class=\"todo-text\">初回表示 " + (todos - 1) + "</span>"), "一覧が描画されていません");
+        return elapsed;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.ToDoApp.loadtest;
+
+import com.example.ToDoApp.ToDoAppApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 負荷テスト用にアプリケーションをランダムポートで起動する
+ * DBは MySQL互換モードのH2 (組み込み、コンテナ不要) を負荷テストごとに別名で使う
+ */
+final class LoadTestApplication implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private LoadTestApplication(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param args 追加の設定 (--key=value)。プロファイルのプロパティより優先される
+     */
+    static LoadTestApplication start(String databaseName, String[] profiles, String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--management.server.port=0",
+            "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+            "--spring.jpa.show-sql=false",
+            // クライアントはすべて同じIPアドレス (localhost) から接続するため、IPアドレスごとの試行回数の制限は外す
+            "--todoapp.login-throttle.enabled=false"));
+        arguments.addAll(List.of(args));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ToDoAppApplication.class, DbLatencyInjection.class)
+            .profiles(profiles)
+            .run(arguments.toArray(String[]::new));
+        return new LoadTestApplication(context);
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
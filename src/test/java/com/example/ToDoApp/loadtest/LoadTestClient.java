@@ -0,0 +1,151 @@
+package com.example.ToDoApp.loadtest;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 負荷テスト用のHTTPクライアント
+ * 1インスタンスが1ユーザーのセッション (Cookie) とCSRFトークンを持ち、複数スレッドから同時に使える
+ */
+public class LoadTestClient {
+
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final Pattern CSRF_META = Pattern.compile("<meta name=\"_csrf\" content=\"([^\"]+)\"");
+    private static final Pattern ERROR_MESSAGE = Pattern.compile("class=\"error-message\"[^>]*>([^<]*)<");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final int MAX_RETRIES = 20;
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private volatile String csrfToken;
+
+    public LoadTestClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .cookieHandler(new CookieManager(null, CookiePolicy.ACCEPT_ALL))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    /**
+     * 登録画面のフォームからユーザーを登録する
+     */
+    public void register(String username, String password) throws IOException, InterruptedException {
+        String token = formToken("/register");
+        HttpResponse<String> response = postFormWithRetry("/register", Map.of(
+            "username", username, "password", password, "confirmPassword", password, "_csrf", token));
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || !location.contains("registered")) {
+            Matcher error = ERROR_MESSAGE.matcher(response.body());
+            throw new IllegalStateException("ユーザー登録に失敗しました: " + username + " (HTTP " + response.statusCode() + ")"
+                + (error.find() ? " " + error.group(1) : ""));
+        }
+    }
+
+    /**
+     * フォームログインし、API呼び出し用のCSRFトークンを画面から取得する
+     */
+    public void login(String username, String password) throws IOException, InterruptedException {
+        String token = formToken("/login");
+        HttpResponse<String> response = postFormWithRetry("/login", Map.of(
+            "username", username, "password", password, "_csrf", token));
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException("ログインに失敗しました: " + username + " (HTTP " + response.statusCode() + ")");
+        }
+
+        // ログイン時にCSRFトークンが作り直されるため、画面のmetaタグから取り直す
+        HttpResponse<String> index = get("/");
+        Matcher matcher = CSRF_META.matcher(index.body());
+        if (!matcher.find()) {
+            throw new IllegalStateException("CSRFトークンが見つかりません");
+        }
+        csrfToken = matcher.group(1);
+    }
+
+    public HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .GET()
+            .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Accept-Encoding を指定して取得し、圧縮されたままの本文を返す (転送量の測定用)
+     */
+    public HttpResponse<byte[]> getEncoded(String path, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Accept-Encoding", acceptEncoding)
+            .GET()
+            .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * JSONを送るAPI呼び出し (POST/PUT/DELETE など)
+     */
+    public HttpResponse<String> send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest.BodyPublisher body = json == null
+            ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofString(json);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .method(method, body);
+        if (csrfToken != null) {
+            builder.header("X-XSRF-TOKEN", csrfToken);
+        }
+        return httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String formToken(String path) throws IOException, InterruptedException {
+        Matcher matcher = CSRF_INPUT.matcher(get(path).body());
+        if (!matcher.find()) {
+            throw new IllegalStateException(path + " にCSRFトークンが見つかりません");
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * ハッシュ計算の混雑 (503) と試行回数の制限 (429) の場合は Retry-After だけ待って送り直す
+     */
+    private HttpResponse<String> postFormWithRetry(String path, Map<String, String> fields) throws IOException, InterruptedException {
+        HttpResponse<String> response = postForm(path, fields);
+        for (int retry = 0; retry < MAX_RETRIES && (response.statusCode() == 503 || response.statusCode() == 429); retry++) {
+            long seconds = response.headers().firstValue("Retry-After").map(Long::parseLong).orElse(1L);
+            Thread.sleep(Duration.ofSeconds(seconds));
+            response = postForm(path, fields);
+        }
+        return response;
+    }
+
+    private HttpResponse<String> postForm(String path, Map<String, String> fields) throws IOException, InterruptedException {
+        StringJoiner form = new StringJoiner("&");
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            form.add(URLEncoder.encode(field.getKey(), StandardCharsets.UTF_8)
+                + "=" + URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8));
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form.toString()))
+            .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.ToDoApp.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ログインが集中している間の /api/todos の応答時間を、ログインがない場合と比べて測る
+ *
+ * ログイン済みのユーザーが /api/todos を読み続ける中で、まず単独で p99 を測り (基準)、次に毎秒 loadtest.login-storm.rate 回の
+ * ログインを応答を待たずに送り続けて (オープンループ) 同じ p99 を測る。BCryptは専用のスレッドプールで計算し、溢れたログインは
+ * 503 で断る。判定するのは、ログインが 302 か 503 だけを返し (500 などにならない) /api/todos がエラーにならないことで、
+ * 応答時間は両方を出力するだけで比べない
+ *
+ * 1コアの環境での結果 (既定の設定): 基準 p99 573ms に対し集中時 p99 14680ms で、ハッシュ計算の上限だけでは
+ * /api/todos の応答時間は守れていない。ログインは 2237件すべてが 503、2763件が応答前に打ち切られた
+ *
+ * 実行: ./mvnw test -Ploadtest -Dtest=LoginStormLoadTest [-Dloadtest.login-storm.rate=500 ...]
+ * 設定 (システムプロパティ):
+ *   loadtest.login-storm.rate            1秒あたりのログイン数 (既定 500)
+ *   loadtest.login-storm.seconds         基準・集中それぞれの測定時間 (既定 10)
+ *   loadtest.login-storm.accounts        ログインに使うアカウント数 (既定 20)
+ *   loadtest.login-storm.api-users       /api/todos を読むユーザー数 (既定 8)
+ *   loadtest.login-storm.unbounded       true でハッシュ計算の上限を外して比較する (既定 false)
+ */
+@Tag("loadtest")
+class LoginStormLoadTest {
+
+    private static final String PASSWORD = "loadtest-password";
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+
+    private final int rate = Integer.getInteger("loadtest.login-storm.rate", 500);
+    private final int seconds = Integer.getInteger("loadtest.login-storm.seconds", 10);
+    private final int accounts = Integer.getInteger("loadtest.login-storm.accounts", 20);
+    private final int apiUsers = Integer.getInteger("loadtest.login-storm.api-users", 8);
+    private final boolean unbounded = Boolean.getBoolean("loadtest.login-storm.unbounded");
+
+    // ログイン用 (Cookie はリクエストごとに自分で付ける)
+    private final HttpClient stormClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger unexpected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @Test
+    void measuresTodoApiLatencyDuringLoginStorm() throws Exception {
+        String[] args = unbounded
+            ? new String[] {"--todoapp.password-hash.threads=200", "--todoapp.password-hash.queue-capacity=100000",
+                "--todoapp.password-hash.max-wait=60s"}
+            : new String[0];
+
+        LatencyHistogram baseline = new LatencyHistogram();
+        LatencyHistogram storm = new LatencyHistogram();
+        LatencyHistogram login = new LatencyHistogram();
+        try (LoadTestApplication application = LoadTestApplication.start("loadtest-login-storm", new String[] {"test"}, args)) {
+            String baseUrl = application.baseUrl();
+            List<LoadTestClient> clients = signUp(baseUrl);
+
+            readTodos(clients, baseline, () -> { });
+            readTodos(clients, storm, () -> runStorm(baseUrl, login));
+        }
+
+        System.out.println("=== ログイン集中時の /api/todos (" + rate + "ログイン/秒, " + seconds + "秒, "
+            + (unbounded ? "ハッシュ計算の上限なし" : "ハッシュ計算の上限あり") + ") ===");
+        System.out.println("基準   " + baseline.summary());
+        System.out.println("集中時 " + storm.summary());
+        System.out.printf("ログイン %s 成功=%d 503=%d その他の応答=%d 応答なし=%d%n", login.summary(),
+            accepted.get(), rejected.get(), unexpected.get(), failed.get());
+        System.out.printf("p99: 基準 %.1fms, 集中時 %.1fms%n", baseline.percentileMillis(99), storm.percentileMillis(99));
+
+        assertTrue(storm.count() > 0 && baseline.count() > 0, "/api/todos の応答がありません");
+        if (!unbounded) {
+            // 溢れたログインは 503 で断る (ハッシュ計算の上限を外した場合は比較のため判定しない)
+            assertEquals(0, unexpected.get(), "ログインが 302・503 以外を返しました");
+        }
+    }
+
+    /**
+     * ログインに使うアカウントと /api/todos を読むユーザーを作る
+     */
+    private List<LoadTestClient> signUp(String baseUrl) throws Exception {
+        List<Future<LoadTestClient>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < accounts; i++) {
+                String username = "storm-account" + i;
+                executor.submit(() -> {
+                    new LoadTestClient(baseUrl).register(username, PASSWORD);
+                    return null;
+                });
+            }
+            for (int i = 0; i < apiUsers; i++) {
+                String username = "storm-reader" + i;
+                futures.add(executor.submit(() -> {
+                    LoadTestClient client = new LoadTestClient(baseUrl);
+                    client.register(username, PASSWORD);
+                    client.login(username, PASSWORD);
+                    for (int t = 0; t < 20; t++) {
+                        client.send("POST", "/api/todos", "{\"text\": \"ログイン集中 " + t + "\"}");
+                    }
+                    return client;
+                }));
+            }
+        }
+        List<LoadTestClient> clients = new ArrayList<>();
+        for (Future<LoadTestClient> future : futures) {
+            clients.add(future.get());
+        }
+        return clients;
+    }
+
+    /**
+     * background を実行している間、全ユーザーで /api/todos を読み続けて応答時間を記録する
+     */
+    private void readTodos(List<LoadTestClient> clients, LatencyHistogram histogram, ThrowingRunnable background) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> readers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (LoadTestClient client : clients) {
+                readers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = client.get("/api/todos");
+                        histogram.recordNanos(System.nanoTime() - start);
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("GET /api/todos: HTTP " + response.statusCode());
+                        }
+                        Thread.sleep(10);
+                    }
+                    return null;
+                }));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            try {
+                background.run();
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                }
+            } finally {
+                running.set(false);
+            }
+        }
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+    }
+
+    /**
+     * 前の応答を待たずに一定の間隔でログインを送る (応答が遅れても送る数は減らない)
+     */
+    private void runStorm(String baseUrl, LatencyHistogram histogram) throws Exception {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        long begin = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long wait = begin + i * intervalNanos - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                String username = "storm-account" + (i % accounts);
+                executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        int status = attemptLogin(baseUrl, username);
+                        histogram.recordNanos(System.nanoTime() - start);
+                        (status == 302 ? accepted : status == 503 ? rejected : unexpected).incrementAndGet();
+                    } catch (Exception e) {
+                        if (failed.getAndIncrement() == 0) {
+                            System.err.println("ログインに失敗しました: " + e);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * ログイン画面でCSRFトークン (Cookie とフォームの値) を受け取り、1回だけログインを送る
+     */
+    private int attemptLogin(String baseUrl, String username) throws Exception {
+        HttpResponse<String> form = stormClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login")).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+        Matcher token = CSRF_INPUT.matcher(form.body());
+        String cookie = String.join("; ", form.headers().allValues("Set-Cookie").stream()
+            .map(value -> value.split(";", 2)[0])
+            .toList());
+        if (!token.find()) {
+            throw new IllegalStateException("CSRFトークンが見つかりません");
+        }
+
+        String body = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+            + "&password=" + URLEncoder.encode(PASSWORD, StandardCharsets.UTF_8)
+            + "&_csrf=" + URLEncoder.encode(token.group(1), StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .header("Cookie", cookie)
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        return stormClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.ToDoApp.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ログイン後のトップページを初めて開くときの転送量と時間、再訪問時のリクエスト数を出力する
+ *
+ * 変更前 (圧縮なし・最小化なし・固定の URL) は HTML を Accept-Encoding: identity で取得し、css・js は
+ * src/main/resources/static の元のファイルのサイズで見積もる。変更前は再訪問のたびに css・js の再検証が必要だった。
+ * 最小化のみ は Accept-Encoding: identity で取得した値、変更後 は Accept-Encoding: br, gzip で取得した値
+ * 推定時間は loadtest.static.rtt-ms と loadtest.static.bandwidth-kbps の回線で、HTML の後に css・js を並行して取得した場合の値
+ *
+ * 実行: ./mvnw test -Ploadtest -Dtest=StaticAssetLoadTest
+ */
+@Tag("loadtest")
+class StaticAssetLoadTest {
+
+    private static final String PASSWORD = "loadtest-password";
+    private static final Pattern ASSET = Pattern.compile("(?:href|src)=\"(/(?:css|js)/[^\"]+)\"");
+    private static final Path SOURCE_DIR = Path.of("src/main/resources/static");
+
+    private final long rttMillis = Long.getLong("loadtest.static.rtt-ms", 150L);
+    private final long bandwidthKbps = Long.getLong("loadtest.static.bandwidth-kbps", 1600L);
+
+    private record Load(long htmlBytes, long assetBytes, int assetRequests, double millis) {
+
+        long totalBytes() {
+            return htmlBytes + assetBytes;
+        }
+    }
+
+    @Test
+    void firstLoadTransfersLessAndRepeatVisitsSkipAssets() throws Exception {
+        Load before;
+        Load after;
+        List<String> cacheControls = new ArrayList<>();
+        try (LoadTestApplication application = LoadTestApplication.start("loadtest-static", new String[] {"test"})) {
+            LoadTestClient client = new LoadTestClient(application.baseUrl());
+            client.register("static-user", PASSWORD);
+            client.login("static-user", PASSWORD);
+
+            // JITの影響を除くため一度取得してから測る
+            load(client, "identity", null);
+            before = load(client, "identity", null);
+            after = load(client, "br, gzip", cacheControls);
+        }
+
+        long sourceBytes = 0;
+        for (String name : List.of("css/style.css", "js/script.js")) {
+            sourceBytes += Files.size(SOURCE_DIR.resolve(name));
+        }
+        // 変更前は css・js の元のファイルをそのまま返していた (ローカルで測れないため時間は推定のみ)
+        Load original = new Load(before.htmlBytes(), sourceBytes, before.assetRequests(), Double.NaN);
+
+        System.out.println("=== トップページの初回表示 (RTT " + rttMillis + "ms, " + bandwidthKbps + "kbps で推定) ===");
+        print("変更前", original);
+        print("最小化のみ", before);
+        print("変更後", after);
+        System.out.printf("再訪問時の css・js のリクエスト: 変更前 %d (再検証) / 変更後 0 (Cache-Control: %s)%n",
+            original.assetRequests(), String.join(", ", cacheControls));
+
+        assertTrue(after.totalBytes() * 3 < original.totalBytes(),
+            "転送量が減っていません: " + original.totalBytes() + "B -> " + after.totalBytes() + "B");
+        assertTrue(!cacheControls.isEmpty() && cacheControls.stream().allMatch(value -> value.contains("immutable")),
+            cacheControls.toString());
+    }
+
+    /**
+     * トップページと、そこから参照される css・js を順に取得する
+     */
+    private Load load(LoadTestClient client, String acceptEncoding, List<String> cacheControls) throws Exception {
+        // 圧縮された HTML からはリンクを読めないため、リンクは測定の前に圧縮なしで取得しておく
+        List<String> links = new ArrayList<>();
+        Matcher matcher = ASSET.matcher(new String(client.getEncoded("/", "identity").body(), StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            links.add(matcher.group(1));
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<byte[]> page = client.getEncoded("/", acceptEncoding);
+        assertTrue(page.statusCode() == 200, "/: HTTP " + page.statusCode());
+        long assetBytes = 0;
+        for (String link : links) {
+            HttpResponse<byte[]> asset = client.getEncoded(link, acceptEncoding);
+            assertTrue(asset.statusCode() == 200, link + ": HTTP " + asset.statusCode());
+            assetBytes += asset.body().length;
+            if (cacheControls != null) {
+                cacheControls.add(link + " " + asset.headers().firstValue("Cache-Control").orElse("なし"));
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        return new Load(page.body().length, assetBytes, links.size(), millis);
+    }
+
+    private void print(String label, Load load) {
+        // HTML の取得に1往復、css・js は並行して1往復 (接続済みの前提)
+        double estimated = 2 * rttMillis + load.totalBytes() * 8.0 / bandwidthKbps;
+        System.out.printf("%s: HTML %dB + css・js %dB (%d件) = %dB, 推定 %.0fms%s%n",
+            label, load.htmlBytes(), load.assetBytes(), load.assetRequests(), load.totalBytes(), estimated,
+            Double.isNaN(load.millis()) ? "" : String.format(" (ローカル %.1fms)", load.millis()));
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.ToDoApp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * /api/todos への GET/POST/PUT/DELETE を混ぜた負荷をかけ、エンドポイントごとのスループットと
+ * p50/p95/p99 を出力する。エラーがあった場合と、予算を指定して応答時間がそれを超えた場合に失敗する
+ *
+ * 予算は既定では判定しない (計測だけ)。ユーザーは待ち時間なしで次のリクエストを送るため、応答時間は
+ * ほぼ「ユーザー数 / スループット」になり、実行する環境のコア数で決まる。判定は環境に合わせて予算を指定して行う
+ * 参考: 1コアをクライアントとサーバーで共有した環境で 50ユーザー x 100リクエスト、53 req/s、エラーなし、
+ *       GET p95 1851ms / p99 3244ms (500ms / 1000ms の予算は満たさない)
+ *
+ * ユーザーは登録画面 (POST /register) から作成し、フォームログイン (POST /login) でセッションを得る
+ * DBは MySQL互換モードのH2 を使うため、MySQLやコンテナは不要
+ *
+ * 実行: ./mvnw test -Ploadtest -Dtest=TodoApiLoadTest [-Dloadtest.users=200 ...]
+ * 設定 (システムプロパティ):
+ *   loadtest.users               同時ユーザー数 (既定 50)
+ *   loadtest.requests-per-user   1ユーザーあたりのリクエスト数 (既定 100)
+ *   loadtest.mix                 操作の比率 (既定 GET:60,POST:20,PUT:15,DELETE:5)
+ *   loadtest.db-latency-ms       SQL1回ごとに加える遅延 (既定 0)
+ *   loadtest.budget.p95-ms       p95 の上限 (既定 なし)
+ *   loadtest.budget.p99-ms       p99 の上限 (既定 なし)
+ *   loadtest.budget.GET.p99-ms   エンドポイントごとの上限 (GET/POST/PUT/DELETE、p95 も同様)
+ *   loadtest.max-error-rate      許容するエラー率 (既定 0)
+ */
+@Tag("loadtest")
+class TodoApiLoadTest {
+
+    private static final String PASSWORD = "loadtest-password";
+    private static final List<String> OPERATIONS = List.of("GET", "POST", "PUT", "DELETE");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final int users = Integer.getInteger("loadtest.users", 50);
+    private final int requestsPerUser = Integer.getInteger("loadtest.requests-per-user", 100);
+    private final Map<String, Integer> mix = parseMix(System.getProperty("loadtest.mix", "GET:60,POST:20,PUT:15,DELETE:5"));
+    private final long dbLatencyMillis = Long.getLong("loadtest.db-latency-ms", 0L);
+    private final double maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0"));
+
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, AtomicInteger> errors = new LinkedHashMap<>();
+
+    @Test
+    void todoApiStaysWithinLatencyBudget() throws Exception {
+        for (String operation : OPERATIONS) {
+            histograms.put(operation, new LatencyHistogram());
+            errors.put(operation, new AtomicInteger());
+        }
+
+        double seconds;
+        try (LoadTestApplication application = LoadTestApplication.start("loadtest-api", new String[] {"test"},
+                "--loadtest.db-latency-ms=" + dbLatencyMillis)) {
+            List<LoadTestClient> clients = signUp(application.baseUrl());
+
+            long begin = System.nanoTime();
+            runMix(clients);
+            seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+        }
+
+        List<String> violations = report(seconds);
+        assertTrue(violations.isEmpty(), String.join("\n", violations));
+    }
+
+    /**
+     * ユーザーを並行して登録・ログインさせる (BCrypt の計算が大半を占める)
+     */
+    private List<LoadTestClient> signUp(String baseUrl) throws Exception {
+        List<Future<LoadTestClient>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                String username = "loadtest-user" + i;
+                futures.add(executor.submit(() -> {
+                    LoadTestClient client = new LoadTestClient(baseUrl);
+                    client.register(username, PASSWORD);
+                    client.login(username, PASSWORD);
+                    return client;
+                }));
+            }
+        }
+        List<LoadTestClient> clients = new ArrayList<>();
+        for (Future<LoadTestClient> future : futures) {
+            clients.add(future.get());
+        }
+        return clients;
+    }
+
+    private void runMix(List<LoadTestClient> clients) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients.size(); i++) {
+                LoadTestClient client = clients.get(i);
+                Random random = new Random(i);
+                futures.add(executor.submit(() -> {
+                    runUser(client, random);
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private void runUser(LoadTestClient client, Random random) {
+        // このユーザーが作成したTodoのID (PUT/DELETE の対象)
+        List<Long> ownIds = new ArrayList<>();
+        for (int r = 0; r < requestsPerUser; r++) {
+            String operation = pick(random);
+            if ((operation.equals("PUT") || operation.equals("DELETE")) && ownIds.isEmpty()) {
+                operation = "POST";
+            }
+
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = switch (operation) {
+                    case "GET" -> client.get("/api/todos");
+                    case "POST" -> client.send("POST", "/api/todos", "{\"text\": \"負荷テスト " + r + "\"}");
+                    case "PUT" -> client.send("PUT", "/api/todos/" + ownIds.get(random.nextInt(ownIds.size())),
+                        "{\"completed\": " + random.nextBoolean() + "}");
+                    default -> client.send("DELETE", "/api/todos/" + ownIds.remove(ownIds.size() - 1), null);
+                };
+                histograms.get(operation).recordNanos(System.nanoTime() - start);
+
+                // TodoController はエラー時も200で success=false を返す
+                JsonNode body = response.statusCode() == 200 ? objectMapper.readTree(response.body()) : null;
+                if (body == null || !body.path("success").asBoolean()) {
+                    errors.get(operation).incrementAndGet();
+                } else if (operation.equals("POST")) {
+                    ownIds.add(body.path("todo").path("id").asLong());
+                }
+            } catch (Exception e) {
+                histograms.get(operation).recordNanos(System.nanoTime() - start);
+                errors.get(operation).incrementAndGet();
+            }
+        }
+    }
+
+    private List<String> report(double seconds) {
+        List<String> violations = new ArrayList<>();
+        long total = 0;
+        long totalErrors = 0;
+
+        System.out.println("=== /api/todos 負荷テスト (" + users + "ユーザー x " + requestsPerUser + "リクエスト, "
+            + String.format("%.1f", seconds) + "秒, DB遅延 " + dbLatencyMillis + "ms) ===");
+        for (String operation : OPERATIONS) {
+            LatencyHistogram histogram = histograms.get(operation);
+            int errorCount = errors.get(operation).get();
+            total += histogram.count();
+            totalErrors += errorCount;
+            if (histogram.count() == 0) {
+                continue;
+            }
+
+            System.out.printf("%-6s %s errors=%d %.0f req/s%n",
+                operation, histogram.summary(), errorCount, histogram.count() / seconds);
+
+            for (int percentile : new int[] {95, 99}) {
+                String budgetValue = budget(operation, percentile);
+                if (budgetValue == null) {
+                    continue;
+                }
+                double budget = Double.parseDouble(budgetValue);
+                double actual = histogram.percentileMillis(percentile);
+                if (actual > budget) {
+                    violations.add(String.format("%s p%d %.1fms が予算 %.0fms を超えました", operation, percentile, actual, budget));
+                }
+            }
+        }
+        System.out.printf("合計   n=%d errors=%d %.0f req/s%n", total, totalErrors, total / seconds);
+
+        if (total > 0 && (double) totalErrors / total > maxErrorRate) {
+            violations.add(String.format("エラー率 %.2f%% が上限 %.2f%% を超えました",
+                100.0 * totalErrors / total, 100.0 * maxErrorRate));
+        }
+        return violations;
+    }
+
+    /**
+     * 予算 (ミリ秒)。エンドポイントごと、全体の順に探し、どちらも指定がなければ null (判定しない)
+     */
+    private String budget(String operation, int percentile) {
+        String fallback = System.getProperty("loadtest.budget.p" + percentile + "-ms");
+        return System.getProperty("loadtest.budget." + operation + ".p" + percentile + "-ms", fallback);
+    }
+
+    private String pick(Random random) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int value = random.nextInt(total);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+        return "GET";
+    }
+
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] pair = part.trim().split(":");
+            String operation = pair[0].trim().toUpperCase();
+            if (!OPERATIONS.contains(operation)) {
+                throw new IllegalArgumentException("loadtest.mix の操作が不正です: " + part);
+            }
+            mix.put(operation, Integer.parseInt(pair[1].trim()));
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.ToDoApp.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * GET /api/todos の応答時間をプラットフォームスレッドと仮想スレッド (virtual プロファイル) で比較する
+ * DBには1クエリあたり loadtest.db-latency-ms の遅延を入れ、2,000 の同時ユーザーで叩く
+ * 両方の p99 と、サーバーがエラーを返した件数 (virtual ではコネクション待ちの上限で断った分) を出力する。
+ * 応答時間の優劣は環境 (コア数) で変わるため判定せず、プラットフォームスレッドでサーバーのエラーが出ないことだけを確認する
+ * 実行: ./mvnw test -Ploadtest
+ */
+@Tag("loadtest")
+class VirtualThreadLoadTest {
+
+    private static final int CONCURRENT_USERS = 2000;
+    private static final int REQUESTS_PER_USER = 5;
+    private static final int ACCOUNTS = 20;
+    private static final int TODOS_PER_ACCOUNT = 20;
+    private static final int DB_LATENCY_MS = 5;
+    private static final String PASSWORD = "loadtest-password";
+
+    @Test
+    void compareTodoListLatency() throws Exception {
+        Result platform = run("platform");
+        Result virtual = run("virtual");
+
+        System.out.println("=== GET /api/todos (" + CONCURRENT_USERS + "同時ユーザー, DB遅延 " + DB_LATENCY_MS + "ms) ===");
+        System.out.println(platform);
+        System.out.println(virtual);
+        System.out.printf("p99: platform %.1fms, virtual %.1fms%n", platform.p99(), virtual.p99());
+
+        assertEquals(0, platform.rejected(), "platform でサーバーのエラーが発生しました");
+    }
+
+    /**
+     * @param rejected 200 以外、または success=false の応答の件数 (コネクションを取得できずに断られた分を含む)
+     * @param failed 送信に失敗した件数 (クライアント側の接続タイムアウトなど。そのユーザーの残りのリクエストは送らない)
+     */
+    private record Result(String mode, LatencyHistogram histogram, int rejected, int failed, double seconds) {
+
+        double p99() {
+            return histogram.percentileMillis(99);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %s rejected=%d failed=%d %.0f req/s",
+                mode, histogram.summary(), rejected, failed, histogram.count() / seconds);
+        }
+    }
+
+    private Result run(String mode) throws Exception {
+        List<String> profiles = new ArrayList<>(List.of("test"));
+        if (mode.equals("virtual")) {
+            profiles.add("virtual");
+        }
+
+        try (LoadTestApplication application = LoadTestApplication.start("loadtest-" + mode, profiles.toArray(String[]::new),
+                "--spring.datasource.hikari.maximum-pool-size=20",
+                "--loadtest.db-latency-ms=" + DB_LATENCY_MS)) {
+            List<LoadTestClient> clients = prepareAccounts(application.baseUrl(), mode);
+            return measure(mode, clients);
+        }
+    }
+
+    private List<LoadTestClient> prepareAccounts(String baseUrl, String mode) throws Exception {
+        List<LoadTestClient> clients = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String username = mode + "-user" + i;
+            LoadTestClient client = new LoadTestClient(baseUrl);
+            client.register(username, PASSWORD);
+            client.login(username, PASSWORD);
+            for (int j = 0; j < TODOS_PER_ACCOUNT; j++) {
+                client.send("POST", "/api/todos", "{\"text\": \"負荷テスト " + j + "\"}");
+            }
+            clients.add(client);
+        }
+        return clients;
+    }
+
+    private Result measure(String mode, List<LoadTestClient> clients) throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(CONCURRENT_USERS);
+
+        long begin;
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENT_USERS; i++) {
+                LoadTestClient client = clients.get(i % clients.size());
+                users.submit(() -> {
+                    try {
+                        start.await();
+                        for (int r = 0; r < REQUESTS_PER_USER; r++) {
+                            long t0 = System.nanoTime();
+                            HttpResponse<String> response = client.get("/api/todos");
+                            histogram.recordNanos(System.nanoTime() - t0);
+                            // TodoController はエラー時も200で success=false を返す
+                            if (response.statusCode() != 200 || !response.body().contains("\"success\":true")) {
+                                rejected.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        if (failed.incrementAndGet() == 1) {
+                            System.err.println(mode + ": " + e);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                    return null;
+                });
+            }
+            begin = System.nanoTime();
+            start.countDown();
+            done.await();
+        }
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+        return new Result(mode, histogram, rejected.get(), failed.get(), seconds);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.ToDoApp.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginThrottleTest {
+
+    private final LoginThrottle throttle = new LoginThrottle();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(throttle, "maxFailuresPerIp", 10);
+        ReflectionTestUtils.setField(throttle, "freeFailuresPerUsername", 3);
+        ReflectionTestUtils.setField(throttle, "failureDelay", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(throttle, "maxFailureDelay", Duration.ofMillis(400));
+        throttle.init();
+    }
+
+    private void fail(String username, String ip) {
+        UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.unauthenticated(username, "wrong");
+        token.setDetails(new WebAuthenticationDetails(ip, null));
+        throttle.onFailure(new AuthenticationFailureBadCredentialsEvent(token, new BadCredentialsException("bad")));
+    }
+
+    @Test
+    void limitsOnlyFailuresPerIp() {
+        // 同じIPアドレスからの成功は何回でも受け付ける (NAT の後ろの多数のユーザー)
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Duration.ZERO, throttle.tryAcquire("192.0.2.1", "user" + i));
+        }
+        for (int i = 0; i < 9; i++) {
+            fail("user" + i, "192.0.2.1");
+        }
+        throttle.recordFailure("192.0.2.1");
+        Duration retryAfter = throttle.tryAcquire("192.0.2.1", "user10");
+        assertTrue(retryAfter.compareTo(Duration.ZERO) > 0 && retryAfter.compareTo(Duration.ofMinutes(1)) <= 0);
+        assertTrue(throttle.tryAcquire("192.0.2.1", null).isPositive(), "登録も断る");
+        // 別のIPアドレスは影響を受けない
+        assertEquals(Duration.ZERO, throttle.tryAcquire("192.0.2.2", null));
+    }
+
+    @Test
+    void delaysUsernameProgressivelyInsteadOfLockingOut() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Duration.ZERO, throttle.tryAcquire("192.0.2." + i, "alice"));
+            fail("alice", "192.0.2." + i);
+        }
+        assertEquals(Duration.ZERO, throttle.tryAcquire("198.51.100.1", "alice"));
+        fail("alice", "198.51.100.1");
+
+        // 4回目の失敗から待たせる (IPアドレスを変えても同じ)。他のユーザー名は影響を受けない
+        assertTrue(throttle.tryAcquire("198.51.100.2", "alice").isPositive());
+        assertEquals(Duration.ZERO, throttle.tryAcquire("198.51.100.2", "bob"));
+
+        // 待ち時間 (200ms) の後は1回だけ通し、その結果が出るまでの同時の試行は断る
+        Thread.sleep(250);
+        assertEquals(Duration.ZERO, throttle.tryAcquire("198.51.100.1", "alice"));
+        assertTrue(throttle.tryAcquire("198.51.100.3", "alice").isPositive());
+        fail("alice", "198.51.100.1");
+
+        // 次の待ち時間は2倍 (400ms、上限)
+        Thread.sleep(250);
+        assertTrue(throttle.tryAcquire("198.51.100.1", "alice").isPositive());
+        Thread.sleep(200);
+        assertEquals(Duration.ZERO, throttle.tryAcquire("198.51.100.1", "alice"));
+
+        // 成功で0に戻す (前後の空白はユーザー名に含めない)
+        throttle.onSuccess(new AuthenticationSuccessEvent(
+            UsernamePasswordAuthenticationToken.authenticated(" alice ", null, null)));
+        assertEquals(Duration.ZERO, throttle.tryAcquire("198.51.100.1", "alice"));
+        assertEquals(Duration.ZERO, throttle.tryAcquire("198.51.100.1", "alice"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.entity.NotificationDeadLetter;
+import com.example.ToDoApp.repository.NotificationDeadLetterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * デッドレターが notification_dead_letters テーブル (V8) に残り、保持期間を過ぎたものだけが消えることを確認する
+ * (テストでは通知機能が無効なため、ストアはリポジトリを渡して作る)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationDeadLetterStoreTest {
+
+    @Autowired
+    private NotificationDeadLetterRepository deadLetterRepository;
+
+    private final NotificationDeadLetterStore store = new NotificationDeadLetterStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "deadLetterRepository", deadLetterRepository);
+        ReflectionTestUtils.setField(store, "retention", Duration.ofDays(30));
+        deadLetterRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void keepsDeadLettersInTheTableAndPurgesExpiredOnes() {
+        LocalDateTime now = LocalDateTime.now();
+        store.save(new NotificationDispatcher.DeadLetter("http://hooks/a", "古い通知", 1, 5, "HTTP 503", now.minusDays(31)));
+        store.save(new NotificationDispatcher.DeadLetter("http://hooks/a", "明日が期限のタスクがあります", 2, 1, "HTTP 400", now));
+
+        List<NotificationDispatcher.DeadLetter> recent = store.findRecent(1);
+        assertEquals(1, recent.size());
+        assertEquals("明日が期限のタスクがあります", recent.get(0).text());
+        assertEquals(2, recent.get(0).messageCount());
+
+        store.purge();
+
+        assertEquals(List.of("HTTP 400"), deadLetterRepository.findAll().stream().map(NotificationDeadLetter::getReason).toList());
+    }
+}
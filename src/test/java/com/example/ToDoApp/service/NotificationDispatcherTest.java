@@ -0,0 +1,214 @@
+package com.example.ToDoApp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 遅延と5xxを返すローカルのWebhookスタブに対してディスパッチャを動かし、
+ * 受け付けた通知がすべて配信またはデッドレターになることと、スループット・破棄件数を確認する
+ */
+class NotificationDispatcherTest {
+
+    private static final Pattern MESSAGE_ID = Pattern.compile("msg-(\\d+)");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> received = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger maxTextLength = new AtomicInteger();
+    private final List<NotificationDispatcher.DeadLetter> deadLetters = new CopyOnWriteArrayList<>();
+
+    // スタブの挙動 (テストごとに設定する)
+    private volatile int latencyMillis;
+    private volatile double errorRate;
+    private volatile int fixedStatus;
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            JsonNode payload = objectMapper.readTree(exchange.getRequestBody());
+            maxTextLength.accumulateAndGet(payload.get("text").asText().length(), Math::max);
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            int status = fixedStatus;
+            if (status == 0) {
+                status = ThreadLocalRandom.current().nextDouble() < errorRate ? 503 : 200;
+            }
+            if (status == 200) {
+                Matcher matcher = MESSAGE_ID.matcher(payload.get("text").asText());
+                while (matcher.find()) {
+                    received.add(exchange.getRequestURI().getPath() + "#" + matcher.group(1));
+                }
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    private NotificationDispatcher dispatcher(int queueCapacity, int maxAttempts) {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+        return new NotificationDispatcher(client, objectMapper, new NotificationDispatcher.Settings(
+            queueCapacity, 2000, 4, maxAttempts,
+            Duration.ofMillis(5), Duration.ofMillis(50), Duration.ofSeconds(2)), new NotificationDispatcher.DeadLetterStore() {
+                @Override
+                public void save(NotificationDispatcher.DeadLetter deadLetter) {
+                    deadLetters.add(deadLetter);
+                }
+
+                @Override
+                public List<NotificationDispatcher.DeadLetter> findRecent(int limit) {
+                    return deadLetters.reversed().stream().limit(limit).toList();
+                }
+            });
+    }
+
+    @Test
+    void deliversOrDeadLettersEveryAcceptedMessageUnderLatencyAndErrors() throws Exception {
+        latencyMillis = 20;
+        errorRate = 0.3;
+
+        int total = 5000;
+        int accepted = 0;
+        NotificationDispatcher dispatcher = dispatcher(500, 6);
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            String destination = baseUrl + (i % 2 == 0 ? "/hooks/a" : "/hooks/b");
+            if (dispatcher.submit(destination, "msg-" + i + " 明日が期限のタスクがあります")) {
+                accepted++;
+            }
+        }
+        assertTrue(dispatcher.awaitIdle(Duration.ofSeconds(60)));
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        dispatcher.close();
+
+        NotificationDispatcher.Stats stats = dispatcher.getStats();
+        System.out.printf("通知ディスパッチャ: 送信要求 %d件, 破棄 %d件, 配信 %d件 (%d リクエスト), 再送 %d回, デッドレター %d件, %.0f件/秒%n",
+            stats.submitted(), stats.dropped(), stats.deliveredMessages(), stats.deliveredRequests(),
+            stats.retries(), stats.deadLettered(), stats.deliveredMessages() / seconds);
+
+        assertEquals(total, stats.submitted());
+        assertEquals(total - accepted, stats.dropped());
+        assertEquals(accepted, stats.deliveredMessages() + stats.deadLettered());
+        // デッドレターになった通知はすべて保存される
+        assertEquals(stats.deadLettered(), deadLetters.stream().mapToInt(NotificationDispatcher.DeadLetter::messageCount).sum());
+        assertEquals(stats.deliveredMessages(), received.size());
+        assertEquals(0, stats.pending());
+        // 宛先ごとにまとめて送るため、リクエスト数はメッセージ数よりずっと少ない
+        assertTrue(stats.deliveredRequests() < stats.deliveredMessages() / 5);
+    }
+
+    @Test
+    void clientErrorsAreDeadLetteredWithoutRetry() throws Exception {
+        fixedStatus = 400;
+
+        NotificationDispatcher dispatcher = dispatcher(100, 5);
+        dispatcher.submit(baseUrl + "/hooks/a", "msg-1");
+        assertTrue(dispatcher.awaitIdle(Duration.ofSeconds(10)));
+        dispatcher.close();
+
+        assertEquals(1, requests.get());
+        assertEquals(1, dispatcher.getStats().deadLettered());
+        NotificationDispatcher.DeadLetter deadLetter = dispatcher.getDeadLetters(1).get(0);
+        assertEquals(1, deadLetter.attempts());
+        assertEquals("HTTP 400", deadLetter.reason());
+    }
+
+    @Test
+    void serverErrorsAreRetriedUpToMaxAttempts() throws Exception {
+        fixedStatus = 503;
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        NotificationDispatcher dispatcher = dispatcher(100, 4);
+        dispatcher.bindTo(registry);
+        dispatcher.submit(baseUrl + "/hooks/a", "msg-1");
+        assertTrue(dispatcher.awaitIdle(Duration.ofSeconds(10)));
+        dispatcher.close();
+
+        assertEquals(4, requests.get());
+        assertEquals(3, dispatcher.getStats().retries());
+        assertEquals(4, dispatcher.getDeadLetters(1).get(0).attempts());
+        // 再送を含めたリクエスト1回ごとに応答時間が記録される
+        assertEquals(4, registry.get("todoapp.notification.webhook").tag("outcome", "SERVER_ERROR").timer().count());
+        assertEquals(3.0, registry.get("todoapp.notification.retries").functionCounter().count());
+        assertEquals(1.0, registry.get("todoapp.notification.messages").tag("result", "dead_lettered").functionCounter().count());
+    }
+
+    @Test
+    void fullQueueDropsInsteadOfBlocking() throws Exception {
+        latencyMillis = 200;
+
+        NotificationDispatcher dispatcher = dispatcher(10, 1);
+        int accepted = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (dispatcher.submit(baseUrl + "/hooks/a", "msg-" + i)) {
+                accepted++;
+            }
+        }
+        assertTrue(dispatcher.awaitIdle(Duration.ofSeconds(10)));
+        dispatcher.close();
+
+        assertTrue(dispatcher.getStats().dropped() > 0);
+        assertEquals(accepted, dispatcher.getStats().deliveredMessages());
+    }
+
+    @Test
+    void oversizedMessageIsSplitBeforeQueueing() throws Exception {
+        StringBuilder text = new StringBuilder("📅 *明日が期限のタスクがあります！*\n");
+        for (int i = 0; i < 300; i++) {
+            text.append("• msg-").append(i).append(" 明日が期限のタスク\n");
+        }
+        assertTrue(text.length() > 2000 * 2);
+
+        NotificationDispatcher dispatcher = dispatcher(100, 1);
+        assertTrue(dispatcher.submit(baseUrl + "/hooks/a", text.toString()));
+        assertTrue(dispatcher.awaitIdle(Duration.ofSeconds(10)));
+        dispatcher.close();
+
+        // 1リクエストの本文は batchMaxChars (2000) 以下で、どの行も失われない
+        assertTrue(requests.get() >= 3);
+        assertTrue(maxTextLength.get() <= 2000, "本文が " + maxTextLength.get() + " 文字あります");
+        assertEquals(300, received.size());
+        assertEquals(0, dispatcher.getStats().deadLettered());
+    }
+}
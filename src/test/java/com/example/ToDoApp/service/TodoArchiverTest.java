@@ -0,0 +1,145 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.TodoArchiveReport;
+import com.example.ToDoApp.dto.TodoDelta;
+import com.example.ToDoApp.dto.TodoStats;
+import com.example.ToDoApp.dto.TodoUpdate;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.entity.Todo;
+import com.example.ToDoApp.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 完了済みのTodoを todos_archive に移した後も、完了フィルタ・件数・差分取得・更新が変わらず動くことを確認する
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TodoArchiverTest {
+
+    private static final AtomicInteger USER_SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private TodoArchiver todoArchiver;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private TodoStatsService todoStatsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long userId;
+    private List<Long> ids;
+
+    /**
+     * 作成順に 古い完了 / 未完了 / 古い完了 / 最近の完了 / 古い完了 の5件
+     */
+    @BeforeEach
+    void createTodos() {
+        User user = userService.registerUser("archive-" + USER_SEQUENCE.incrementAndGet(), "password");
+        userId = user.getId();
+        ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Todo todo = todoService.createTodo("タスク " + i, userId);
+            ids.add(todo.getId());
+            if (i != 1) {
+                todoService.updateOwnedTodo(todo.getId(), userId, new TodoUpdate(null, false, null, true));
+            }
+        }
+        // プールは自動コミットを無効にしているためトランザクション内で更新する
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+            "UPDATE todos SET updated_at = ? WHERE id IN (?, ?, ?)",
+            LocalDateTime.now().minusDays(60), ids.get(0), ids.get(2), ids.get(4)));
+    }
+
+    private static List<Long> idsOf(List<TodoView> todos) {
+        return todos.stream().map(TodoView::id).toList();
+    }
+
+    private TodoArchiveReport archive() {
+        return todoArchiver.archiveCompletedBefore(LocalDateTime.now().minusDays(30));
+    }
+
+    @Test
+    void movesOldCompletedTodosOutOfTheHotListOnly() {
+        TodoStats before = todoStatsService.getStats(userId);
+        long version = todoStatsService.getListVersion(userId);
+        LocalDateTime since = LocalDateTime.now().minusSeconds(1);
+
+        TodoArchiveReport report = archive();
+        assertTrue(report.archived() >= 3);
+        assertFalse(report.hasMore());
+
+        // 一覧 (すべて) と未完了からは外れる
+        assertEquals(List.of(ids.get(3), ids.get(1)), idsOf(todoService.getTodosByUser(userId)));
+        assertEquals(List.of(ids.get(1)), idsOf(todoService.getTodosByUserAndStatus(userId, false)));
+
+        // 完了フィルタは両方のテーブルを新しい順に併合する (一覧・ページ・ストリーム)
+        List<Long> completed = List.of(ids.get(4), ids.get(3), ids.get(2), ids.get(0));
+        assertEquals(completed, idsOf(todoService.getTodosByUserAndStatus(userId, true)));
+
+        TodoPage<TodoView> first = todoService.getTodoPage(userId, true, null, 3);
+        assertEquals(completed.subList(0, 3), idsOf(first.items()));
+        TodoPage<TodoView> second = todoService.getTodoPage(userId, true, first.nextCursor(), 3);
+        assertEquals(completed.subList(3, 4), idsOf(second.items()));
+        assertNull(second.nextCursor());
+
+        List<TodoView> streamed = new ArrayList<>();
+        todoService.streamTodos(userId, true, streamed::add);
+        assertEquals(completed, idsOf(streamed));
+
+        // 件数は変わらず、整合チェックでもずれにならない。一覧のバージョンは上がる
+        assertEquals(before, todoStatsService.getStats(userId));
+        assertEquals(0, todoStatsService.reconcile().drift());
+        assertTrue(todoStatsService.getListVersion(userId) > version);
+
+        // 差分取得には削除として現れる
+        TodoDelta delta = todoService.getChangesSince(userId, since);
+        assertTrue(delta.deleted().containsAll(List.of(ids.get(0), ids.get(2), ids.get(4))));
+
+        assertTrue(todoService.existsById(ids.get(0)));
+    }
+
+    @Test
+    void updatingAnArchivedTodoRestoresItWithTheSameId() {
+        archive();
+        Long id = ids.get(2);
+
+        assertTrue(todoService.updateOwnedTodo(id, userId, new TodoUpdate(null, false, null, false)).isPresent());
+        assertEquals(List.of(ids.get(3), id, ids.get(1)), idsOf(todoService.getTodosByUser(userId)));
+        assertEquals(List.of(ids.get(4), ids.get(3), ids.get(0)), idsOf(todoService.getTodosByUserAndStatus(userId, true)));
+        assertEquals(new TodoStats(5, 3, 2, 0), todoStatsService.getStats(userId));
+
+        // 他のユーザーのアーカイブは戻さない
+        User other = userService.registerUser("archive-other-" + USER_SEQUENCE.incrementAndGet(), "password");
+        assertFalse(todoService.deleteOwnedTodo(ids.get(0), other.getId()));
+        assertTrue(todoService.deleteOwnedTodo(ids.get(0), userId));
+        assertFalse(todoService.existsById(ids.get(0)));
+        assertEquals(new TodoStats(4, 2, 2, 0), todoStatsService.getStats(userId));
+        assertEquals(0, todoStatsService.reconcile().drift());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.TodoView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoChangeFeedTest {
+
+    private static final Long USER_ID = 1L;
+
+    private final TodoChangeFeed feed = new TodoChangeFeed();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(feed, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(feed, "bufferSize", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.close();
+    }
+
+    private void save(long id, String text) {
+        feed.onTodoChanged(TodoChangedEvent.saved(USER_ID,
+            new TodoView(id, text, false, LocalDateTime.now(), null, null)));
+    }
+
+    private List<String> ids(TodoChangeFeed.Backlog backlog) {
+        return backlog.changes().stream().map(TodoChangeFeed.Change::id).toList();
+    }
+
+    @Test
+    void replaysChangesAfterLastEventId() {
+        String start = feed.position(USER_ID);
+        save(1, "牛乳を買う");
+        save(2, "パンを買う");
+        feed.onTodoChanged(TodoChangedEvent.deleted(USER_ID, 1L));
+
+        TodoChangeFeed.Backlog all = feed.backlog(USER_ID, start);
+        assertTrue(all.resumable());
+        assertEquals(3, all.changes().size());
+        assertTrue(all.changes().get(0).data().contains("\"type\":\"saved\""));
+        assertTrue(all.changes().get(2).data().contains("\"type\":\"deleted\""));
+
+        // 途中のイベントIDからはその後ろだけ
+        TodoChangeFeed.Backlog rest = feed.backlog(USER_ID, all.changes().get(1).id());
+        assertEquals(List.of(all.changes().get(2).id()), ids(rest));
+        assertEquals(all.position(), rest.position());
+
+        // 最新位置からは何も送らない
+        assertEquals(List.of(), ids(feed.backlog(USER_ID, all.position())));
+    }
+
+    @Test
+    void resetsWhenPositionCannotBeResumed() {
+        String start = feed.position(USER_ID);
+        for (long id = 1; id <= 5; id++) {
+            save(id, "タスク " + id);
+        }
+
+        // バッファ (4件) から溢れた位置
+        assertFalse(feed.backlog(USER_ID, start).resumable());
+        // 別の世代 (再起動前) のID、壊れたID
+        assertFalse(feed.backlog(USER_ID, "0-3").resumable());
+        assertFalse(feed.backlog(USER_ID, "abc").resumable());
+        // 溢れていない範囲なら再開できる
+        String generation = start.substring(0, start.lastIndexOf('-'));
+        assertEquals(4, feed.backlog(USER_ID, generation + "-1").changes().size());
+    }
+
+    @Test
+    void keepsSeparateSequencesPerUser() {
+        save(1, "牛乳を買う");
+        String user1 = feed.position(USER_ID);
+        String user2 = feed.position(2L);
+
+        assertNotEquals(user1, user2);
+        assertFalse(feed.backlog(2L, user1).resumable());
+        assertEquals(List.of(), ids(feed.backlog(2L, user2)));
+    }
+
+    @Test
+    void positionDoesNotCreateBuffer() throws Exception {
+        String before = feed.position(USER_ID);
+        assertEquals(0, ((Map<?, ?>) ReflectionTestUtils.getField(feed, "feeds")).size());
+
+        // バッファができる前の位置からは、後から作られたバッファの先頭から送る
+        save(1, "牛乳を買う");
+        save(2, "パンを買う");
+        assertEquals(2, feed.backlog(USER_ID, before).changes().size());
+
+        // 間にバッファが破棄された場合は再開できない
+        ReflectionTestUtils.setField(feed, "idleEviction", Duration.ZERO);
+        Thread.sleep(1);
+        feed.heartbeat();
+        save(3, "卵を買う");
+        assertFalse(feed.backlog(USER_ID, before).resumable());
+    }
+
+    @Test
+    void slowClientDoesNotBlockTheWriter() throws Exception {
+        ReflectionTestUtils.setField(feed, "maxPending", 8);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch received = new CountDownLatch(3);
+        List<String> events = new CopyOnWriteArrayList<>();
+        // 1件目の送信で止まる (応答を読まないクライアント)
+        SseEmitter stalled = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                StringBuilder text = new StringBuilder();
+                builder.build().forEach(part -> text.append(part.getData()));
+                events.add(text.toString());
+                received.countDown();
+            }
+        };
+        feed.subscribe(USER_ID, null, stalled);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            save(1, "牛乳を買う");
+            save(2, "パンを買う");
+            save(3, "卵を買う");
+        });
+
+        release.countDown();
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        String generation = feed.position(USER_ID).split("-")[0];
+        for (int i = 0; i < 3; i++) {
+            assertTrue(events.get(i).contains("id:" + generation + "-" + (i + 1)), events.get(i));
+        }
+    }
+}
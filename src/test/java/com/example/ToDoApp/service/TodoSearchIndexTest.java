@@ -0,0 +1,138 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.TodoSearchSource;
+import com.example.ToDoApp.dto.TodoView;
+import com.example.ToDoApp.repository.TodoRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoSearchIndexTest {
+
+    private static final Long USER_ID = 1L;
+
+    private final TodoSearchIndex index = new TodoSearchIndex();
+
+    private void save(long id, String text) {
+        index.onTodoChanged(TodoChangedEvent.saved(USER_ID,
+            new TodoView(id, text, false, LocalDateTime.now(), null, null)));
+    }
+
+    private List<Long> search(String query) {
+        return index.search(USER_ID, query, 50).ids();
+    }
+
+    @Test
+    void matchesWordPrefixesAndJapaneseSubstrings() {
+        save(1, "Meeting資料を作成する");
+        save(2, "会議の議事録");
+        save(3, "京都の宿を予約");
+        save(4, "ＡＰＩ仕様書のレビュー");
+
+        assertEquals(List.of(1L), search("meet"));
+        assertEquals(List.of(1L), search("資料"));
+        assertEquals(List.of(2L), search("議事録"));
+        assertEquals(List.of(4L, 3L, 2L), search("の"));
+        // 全角英字は正規化して半角と同じに扱う
+        assertEquals(List.of(4L), search("api"));
+        // 空白区切りはすべて含むものだけ
+        assertEquals(List.of(1L), search("mee 作成"));
+        assertEquals(List.of(), search("mee 議事録"));
+    }
+
+    @Test
+    void doesNotMatchWhenBigramsAppearOutOfOrder() {
+        // 「東京」と「京都」の2-gramは両方含むが「東京都」は含まない
+        save(1, "東京から京都へ");
+        save(2, "東京都の手続き");
+
+        assertEquals(List.of(2L), search("東京都"));
+    }
+
+    @Test
+    void appliesUpdatesAndDeletes() {
+        save(1, "牛乳を買う");
+        save(2, "牛乳を飲む");
+        save(1, "パンを買う");
+        index.onTodoChanged(TodoChangedEvent.deleted(USER_ID, 2L));
+
+        assertEquals(List.of(), search("牛乳"));
+        assertEquals(List.of(1L), search("パン"));
+        assertEquals(List.of(), index.search(2L, "パン", 50).ids());
+    }
+
+    @Test
+    void returnsNewestFirstAndReportsMore() {
+        for (long id = 1; id <= 10; id++) {
+            save(id, "タスク " + id);
+        }
+        TodoSearchIndex.Hits hits = index.search(USER_ID, "タスク", 3);
+        assertEquals(List.of(10L, 9L, 8L), hits.ids());
+        assertTrue(hits.hasMore());
+        assertFalse(index.search(USER_ID, "タスク", 10).hasMore());
+    }
+
+    @Test
+    void retriesTheBuildUntilItSucceeds() {
+        AtomicInteger calls = new AtomicInteger();
+        // 最初の2回の読み込みは失敗し、3回目で1件返す
+        TodoRepository repository = (TodoRepository) Proxy.newProxyInstance(TodoRepository.class.getClassLoader(),
+            new Class<?>[] {TodoRepository.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("findSearchSourcesAfter")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                int call = calls.incrementAndGet();
+                if (call <= 2) {
+                    throw new IllegalStateException("DBに接続できません");
+                }
+                return (Long) args[0] == 0L ? List.of(new TodoSearchSource(1L, USER_ID, "構築した資料")) : List.of();
+            });
+        ReflectionTestUtils.setField(index, "todoRepository", repository);
+        ReflectionTestUtils.setField(index, "buildChunkSize", 100);
+        ReflectionTestUtils.setField(index, "buildRetryBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(index, "buildRetryMaxBackoff", Duration.ofMillis(20));
+
+        assertFalse(index.isReady());
+        index.buildWithRetry();
+
+        assertTrue(index.isReady());
+        assertEquals(4, calls.get());
+        assertEquals(List.of(1L), search("資料"));
+    }
+
+    @Test
+    void searchesFiftyThousandTodosInMilliseconds() {
+        String[] words = {"買い物", "会議", "資料", "レビュー", "予約", "支払い", "掃除", "電話", "メール", "提出",
+            "report", "deploy", "review", "invoice", "backup"};
+        Random random = new Random(42);
+        for (long id = 1; id <= 50_000; id++) {
+            save(id, words[random.nextInt(words.length)] + "の" + words[random.nextInt(words.length)] + " " + id);
+        }
+
+        String[] queries = {"会議", "資料 レビュー", "rev", "支払い", "掃除の電話", "back", "提出"};
+        long[] nanos = new long[700];
+        for (int i = 0; i < nanos.length; i++) {
+            long start = System.nanoTime();
+            index.search(USER_ID, queries[i % queries.length], 50);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double p50 = nanos[nanos.length / 2] / 1_000_000.0;
+        double p99 = nanos[nanos.length * 99 / 100] / 1_000_000.0;
+        System.out.printf("検索インデックス: 50,000件 p50 %.3fms / p99 %.3fms%n", p50, p99);
+
+        assertEquals(50, search("会議").size());
+        assertTrue(p50 < 5, "p50 " + p50 + "ms");
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.ToDoApp.service;
+
+import com.example.ToDoApp.dto.StatsReconciliationReport;
+import com.example.ToDoApp.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 集計行の作成・整合チェックが、同じユーザーへの同時の変更と競合しても件数を失わないことを確認する
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "todoapp.stats.reconcile-chunk-size=2")
+class TodoStatsServiceTest {
+
+    private static final AtomicInteger USER_SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private TodoStatsService todoStatsService;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Long newUser() {
+        User user = userService.registerUser("stats-" + USER_SEQUENCE.incrementAndGet(), "password");
+        return user.getId();
+    }
+
+    private void update(String sql, Object... args) {
+        // プールは自動コミットを無効にしているためトランザクション内で更新する
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(sql, args));
+    }
+
+    private long actualCount(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM todos WHERE user_id = ?", Long.class, userId);
+    }
+
+    @Test
+    void concurrentFirstWritesCreateTheRowOnce() throws Exception {
+        Long userId = newUser();
+        update("DELETE FROM user_todo_stats WHERE user_id = ?", userId);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int n = i;
+            writes.add(executor.submit(() -> {
+                start.await();
+                return todoService.createTodo("同時の最初の変更 " + n, userId);
+            }));
+        }
+        start.countDown();
+        for (Future<?> write : writes) {
+            write.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(8, todoStatsService.getStats(userId).total());
+        assertTrue(todoStatsService.getListVersion(userId) >= 1);
+    }
+
+    @Test
+    void listVersionSeesChangesCommittedByOtherInstances() {
+        Long userId = newUser();
+        todoService.createTodo("タスク", userId);
+        long version = todoStatsService.getListVersion(userId);
+
+        // 別のインスタンスでの変更 (このインスタンスのイベントやキャッシュを通らない)
+        update("UPDATE user_todo_stats SET version = version + 1 WHERE user_id = ?", userId);
+
+        assertEquals(version + 1, todoStatsService.getListVersion(userId));
+    }
+
+    @Test
+    void reconcileWaitsForUncommittedDeltaInsteadOfOverwritingIt() throws Exception {
+        Long userId = newUser();
+        todoService.createTodo("既存", userId);
+
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            todoService.createTodo("整合チェック中の変更", userId);
+            written.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(written.await(30, TimeUnit.SECONDS));
+
+        // 書き込み中のトランザクションが集計行をロックしているため、そのユーザーのチャンクで待つ
+        Future<StatsReconciliationReport> reconcile = executor.submit(todoStatsService::reconcile);
+        Thread.sleep(300);
+        assertFalse(reconcile.isDone(), "整合チェックが集計行のロックを待っていません");
+
+        release.countDown();
+        writer.get(30, TimeUnit.SECONDS);
+        reconcile.get(30, TimeUnit.SECONDS);
+
+        assertEquals(2, actualCount(userId));
+        assertEquals(2, todoStatsService.getStats(userId).total());
+    }
+
+    @Test
+    void reconcileRepairsDriftChunkByChunk() {
+        Long drifted = newUser();
+        Long missing = newUser();
+        Long healthy = newUser();
+        for (Long userId : List.of(drifted, missing, healthy)) {
+            todoService.createTodo("タスク", userId);
+        }
+        update("UPDATE user_todo_stats SET total_count = 99 WHERE user_id = ?", drifted);
+        update("DELETE FROM user_todo_stats WHERE user_id = ?", missing);
+
+        StatsReconciliationReport report = todoStatsService.reconcile();
+
+        assertTrue(report.rowsRepaired() >= 1);
+        assertTrue(report.rowsCreated() >= 1);
+        for (Long userId : List.of(drifted, missing, healthy)) {
+            assertEquals(1, todoStatsService.getStats(userId).total());
+        }
+        assertEquals(0, todoStatsService.reconcile().drift());
+    }
+}